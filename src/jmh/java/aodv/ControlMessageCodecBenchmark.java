@@ -0,0 +1,88 @@
+package aodv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControlMessageCodecBenchmark {
+
+    private RouteRequest request;
+
+    private RouteReply reply;
+
+    private byte[] requestBytes;
+
+    private byte[] replyBytes;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(16);
+
+    private ByteBuffer requestFrame;
+
+    private ByteBuffer replyFrame;
+
+    private final RouteRequestView requestView = new RouteRequestView();
+
+    private final RouteReplyView replyView = new RouteReplyView();
+
+    @Setup
+    public void setup() throws IOException {
+        request = new RouteRequest(3, 17, 0x1234, 10, false, 0x4321, 20);
+        reply = new RouteReply(4000, 0x1234, 10, 0x4321, 3);
+        requestBytes = request.serialize();
+        replyBytes = reply.serialize();
+        requestFrame = ByteBuffer.wrap(requestBytes);
+        replyFrame = ByteBuffer.wrap(replyBytes);
+    }
+
+    @Benchmark
+    public byte[] serializeRouteRequest() throws IOException {
+        return request.serialize();
+    }
+
+    @Benchmark
+    public int encodeRouteRequest() {
+        buffer.clear();
+        return request.encodeTo(buffer);
+    }
+
+    @Benchmark
+    public RouteRequest parseRouteRequest() throws IOException {
+        return RouteRequest.parse(requestBytes);
+    }
+
+    @Benchmark
+    public int viewRouteRequest() {
+        final RouteRequestView view = requestView.wrap(requestFrame, 0);
+        return view.getDestinationAddress() + view.getOriginatorAddress() + view.getRequestId() + view.getHopCount();
+    }
+
+    @Benchmark
+    public byte[] serializeRouteReply() throws IOException {
+        return reply.serialize();
+    }
+
+    @Benchmark
+    public int encodeRouteReply() {
+        buffer.clear();
+        return reply.encodeTo(buffer);
+    }
+
+    @Benchmark
+    public RouteReply parseRouteReply() throws IOException {
+        return RouteReply.parse(replyBytes);
+    }
+
+    @Benchmark
+    public int viewRouteReply() {
+        final RouteReplyView view = replyView.wrap(replyFrame, 0);
+        return view.getDestinationAddress() + view.getOriginatorAddress() + view.getLifetime() + view.getHopCount();
+    }
+}
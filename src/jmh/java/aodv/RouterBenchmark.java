@@ -0,0 +1,95 @@
+package aodv;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sim.VirtualClock;
+
+import java.util.concurrent.TimeUnit;
+
+import static aodv.Utils.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouterBenchmark {
+
+    private static final int SELF = 0x0001;
+
+    private static final int NEIGHBOR = 0x0002;
+
+    private static final int UNKNOWN = 0xF000;
+
+    private static final int FIRST_DESTINATION = 0x1000;
+
+    @Param({ "10", "100", "1000", "10000" })
+    private int routes;
+
+    private VirtualClock clock;
+
+    private AodvRouterImpl router;
+
+    private RouteReply[] replies;
+
+    private UserData[] data;
+
+    private long counter;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        clock = new VirtualClock(0);
+        router = new AodvRouterImpl(new RoutingCallback() {
+            @Override
+            public void send(Message message, int destination) {
+                blackhole.consume(message);
+                blackhole.consume(destination);
+            }
+
+            @Override
+            public void onError(String msg) {
+                blackhole.consume(msg);
+            }
+        }, clock, (task, delayMillis) -> () -> { });
+        router.setAddress(SELF);
+        router.setBroadcastJitter(0, RREQ_COPY_THRESHOLD);                                                                      // The timers never fire, jittered RREQs would only pile up as pending broadcasts
+
+        replies = new RouteReply[routes];
+        data = new UserData[routes];
+        for (int i = 0; i < routes; i++) {
+            replies[i] = new RouteReply(MAX_18_BITS, FIRST_DESTINATION + i, 1, SELF, 1);
+            data[i] = new UserData(FIRST_DESTINATION + i, new byte[32]);
+            router.processRouteReply(replies[i], NEIGHBOR);                                                                     // Fills the table with one forward route per destination
+        }
+    }
+
+    // Builds a fresh (originator, request id) pair per call so the duplicate check never short-circuits the request.
+    private RouteRequest nextRequest(int destination) {
+        final long k = counter++;
+        if (k % (63L * routes) == 0) {
+            clock.advanceTo(clock.millis() + PATH_DISCOVERY_TIME + 1);                                                          // Let buffered request ids age out before pairs repeat
+        }
+        return new RouteRequest(1, (int)(k % 63) + 1, destination, 0, true, FIRST_DESTINATION + (int)(k % routes), 1);
+    }
+
+    @Benchmark
+    public void processRouteRequestForSelf() {
+        router.processRouteRequest(nextRequest(SELF), NEIGHBOR);
+    }
+
+    @Benchmark
+    public void processRouteRequestForwarded() {
+        router.processRouteRequest(nextRequest(UNKNOWN), NEIGHBOR);
+    }
+
+    @Benchmark
+    public void processRouteReply() {
+        router.processRouteReply(replies[(int)(counter++ % routes)], NEIGHBOR);
+    }
+
+    @Benchmark
+    public void processUserData() {
+        router.processUserData(data[(int)(counter++ % routes)], NEIGHBOR);
+    }
+}
@@ -0,0 +1,50 @@
+package aodv;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserDataCodecBenchmark {
+
+    @Param({ "0", "16", "64", "128", "228" })
+    private int payloadSize;
+
+    private UserData data;
+
+    private byte[] dataBytes;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    @Setup
+    public void setup() throws IOException {
+        final byte[] payload = new byte[payloadSize];
+        new Random(1).nextBytes(payload);
+        data = new UserData(0x1234, payload);
+        dataBytes = data.serialize();
+    }
+
+    @Benchmark
+    public byte[] serializeUserData() throws IOException {
+        return data.serialize();
+    }
+
+    @Benchmark
+    public int encodeUserData() {
+        buffer.clear();
+        return data.encodeTo(buffer);
+    }
+
+    @Benchmark
+    public UserData parseUserData() throws IOException {
+        return UserData.parse(dataBytes);
+    }
+}
@@ -0,0 +1,111 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+
+import static aodv.Utils.*;
+
+// Reusable view over an aggregate frame, a container for several encoded UD frames bound for the same next hop:
+//
+//   block 1: type (6 bits) | reserved (10 bits) | entry count (8 bits)
+//   per entry: length (8 bits) | encoded UD frame
+//
+// Entries are found by walking the length prefixes, aggregates only hold a handful of them.
+public class AggregateView implements Message {
+
+    static final int TYPE = 4;
+
+    public static final int HEADER_LENGTH = 3;
+
+    public static final int ENTRY_HEADER_LENGTH = 1;
+
+    public static final int MAX_ENTRIES = 255;
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int length;
+
+    public AggregateView wrap(ByteBuffer buffer, int offset, int length) {
+        if (length < HEADER_LENGTH || buffer.limit() - offset < length) {
+            throw new RuntimeException("Failed to wrap aggregate: Invalid length (" + length + ")");
+        }
+        if (!isAggregate(buffer, offset)) {
+            throw new RuntimeException("Failed to wrap aggregate: Invalid type (" + messageType(buffer, offset) + ")");
+        }
+        final int count = buffer.get(offset + 2) & 0xFF;
+        int entry = offset + HEADER_LENGTH;
+        for (int i = 0; i < count; i++) {
+            if (entry >= offset + length) {
+                throw new RuntimeException("Failed to wrap aggregate: Invalid entry count (" + count + ")");
+            }
+            final int entryLength = buffer.get(entry) & 0xFF;
+            entry += ENTRY_HEADER_LENGTH + entryLength;
+            if (entryLength < UserData.HEADER_LENGTH || entry > offset + length) {
+                throw new RuntimeException("Failed to wrap aggregate: Invalid entry length (" + entryLength + ")");
+            }
+        }
+        if (entry != offset + length) {
+            throw new RuntimeException("Failed to wrap aggregate: Invalid length (" + length + ")");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public int getCount() {
+        return buffer.get(offset + 2) & 0xFF;
+    }
+
+    // Points the given view at the entry, it shares the buffer of this view.
+    public UserDataView getUserData(int index, UserDataView view) {
+        if (index < 0 || index >= getCount()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int entry = offset + HEADER_LENGTH;
+        for (int i = 0; i < index; i++) {
+            entry += ENTRY_HEADER_LENGTH + (buffer.get(entry) & 0xFF);
+        }
+        return view.wrap(buffer, entry + ENTRY_HEADER_LENGTH, buffer.get(entry) & 0xFF);
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return length;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer target) {
+        copy(buffer, offset, length, target);
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("count", getCount())
+                .append("length", length)
+                .toString();
+    }
+
+    // Writes the header in front of entries that have already been put into the buffer.
+    public static void putHeader(ByteBuffer buffer, int offset, int count) {
+        validate(count, 0, MAX_ENTRIES);
+        final int block1 = TYPE << 18 | count;
+        buffer.put(offset, (byte)(block1 >> 16));
+        buffer.put(offset + 1, (byte)(block1 >> 8));
+        buffer.put(offset + 2, (byte)block1);
+    }
+
+    public static boolean isAggregate(byte[] bytes) {
+        return ((bytes[0] >> 2) & 0xFF) == TYPE;
+    }
+
+    public static boolean isAggregate(ByteBuffer buffer, int offset) {
+        return messageType(buffer, offset) == TYPE;
+    }
+}
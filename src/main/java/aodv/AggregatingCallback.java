@@ -0,0 +1,124 @@
+package aodv;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static aodv.Utils.*;
+
+// Sits between the router and the transport. UD frames are held for a short window and packed into one aggregate
+// frame per next hop, which saves the AT round trips and the LoRa preamble of every single frame. A batch leaves when
+// the window expires or the next frame doesn't fit anymore, a batch of one leaves as a plain UD frame. Control
+// messages and broadcasts are passed on directly.
+public class AggregatingCallback implements RoutingCallback {
+
+    private final RoutingCallback callback;
+
+    private final Scheduler scheduler;
+
+    private final long windowMillis;
+
+    private final int maxFrameLength;
+
+    private final Map<Integer, Batch> batches = new HashMap<>();                                                                // Per next hop, the buffers are reused
+
+    private final AggregateView aggregateView = new AggregateView();
+
+    private final UserDataView userDataView = new UserDataView();
+
+    public AggregatingCallback(RoutingCallback callback, Scheduler scheduler) {
+        this(callback, scheduler, AGGREGATION_WINDOW, MAX_FRAME_LENGTH);
+    }
+
+    public AggregatingCallback(RoutingCallback callback, Scheduler scheduler, long windowMillis, int maxFrameLength) {
+        this.callback = callback;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxFrameLength = validate(maxFrameLength, AggregateView.HEADER_LENGTH, MAX_8_BITS);
+    }
+
+    @Override
+    public synchronized void send(Message message, int destination) {
+
+        final int entryLength = AggregateView.ENTRY_HEADER_LENGTH + message.getEncodedLength();
+        if (!(message instanceof UserDataMessage) || destination == BROADCAST_ADDRESS || AggregateView.HEADER_LENGTH + entryLength > maxFrameLength) {
+            if (message instanceof UserDataMessage) {
+                flush(destination);                                                                                             // Keep the order of the data to this next hop
+            }
+            callback.send(message, destination);
+            return;
+        }
+
+        Batch batch = batches.get(destination);
+        if (batch == null) {
+            batch = new Batch(maxFrameLength);
+            batches.put(destination, batch);
+        }
+        if (batch.buffer.remaining() < entryLength || batch.count == AggregateView.MAX_ENTRIES) {
+            send(batch, destination);
+        }
+
+        batch.buffer.put((byte)message.getEncodedLength());
+        message.encodeTo(batch.buffer);                                                                                         // Copied, views point into a reused frame buffer
+        batch.count++;
+
+        if (batch.timer == null) {
+            batch.timer = scheduler.schedule(() -> flush(destination), windowMillis);
+        }
+    }
+
+    @Override
+    public void onError(String msg) {
+        callback.onError(msg);
+    }
+
+    public synchronized void flush(int destination) {
+        final Batch batch = batches.get(destination);
+        if (batch != null) {
+            send(batch, destination);
+        }
+    }
+
+    public synchronized void flushAll() {
+        for (Map.Entry<Integer, Batch> entry : batches.entrySet()) {
+            send(entry.getValue(), entry.getKey());
+        }
+    }
+
+    private void send(Batch batch, int destination) {
+
+        if (batch.timer != null) {
+            batch.timer.cancel();
+            batch.timer = null;
+        }
+        if (batch.count == 0) {
+            return;
+        }
+
+        final int length = batch.buffer.position();
+        if (batch.count == 1) {
+            final int entry = AggregateView.HEADER_LENGTH + AggregateView.ENTRY_HEADER_LENGTH;
+            callback.send(userDataView.wrap(batch.buffer, entry, length - entry), destination);
+        } else {
+            AggregateView.putHeader(batch.buffer, 0, batch.count);
+            callback.send(aggregateView.wrap(batch.buffer, 0, length), destination);
+        }
+
+        batch.buffer.clear().position(AggregateView.HEADER_LENGTH);
+        batch.count = 0;
+    }
+
+    private static class Batch {
+
+        private final ByteBuffer buffer;
+
+        private int count = 0;
+
+        private Scheduler.Cancellable timer;
+
+        private Batch(int maxFrameLength) {
+            this.buffer = ByteBuffer.allocate(maxFrameLength);
+            this.buffer.position(AggregateView.HEADER_LENGTH);
+        }
+    }
+}
@@ -1,18 +1,31 @@
 package aodv;
 
+import java.util.List;
+
 public interface AodvRouter {
 
     int getAddress();
 
     void setAddress(int address);
 
-    void processRouteRequest(RouteRequest request, int prevHop);
+    void processRouteRequest(RouteRequestMessage request, int prevHop);
+
+    void processRouteReply(RouteReplyMessage reply, int prevHop);
+
+    void processRouteError(RouteErrorMessage error, int prevHop);
+
+    // Called by the transport when a frame could not be delivered to the neighbor.
+    void processLinkFailure(int nextHop);
+
+    // Called by the transport with the RSSI of a frame received from the neighbor, in dBm.
+    void processLinkQuality(int neighbor, int rssi);
 
-    void processRouteReply(RouteReply reply, int prevHop);
+    void processUserData(UserDataMessage data);
 
-    void processUserData(UserData data);
+    void processUserData(UserDataMessage data, int prevHop);
 
-    void processUserData(UserData data, int prevHop);
+    // Originates several payloads for one destination, they share one route lookup and are sent back to back.
+    void processUserData(List<? extends UserDataMessage> data);
 
     void printRoutes();
 }
@@ -1,15 +1,15 @@
 package aodv;
 
 import java.time.Clock;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 
+import static aodv.RoutingTable.NOT_FOUND;
 import static aodv.Utils.*;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 public class AodvRouterImpl implements AodvRouter {
 
@@ -19,19 +19,48 @@ public class AodvRouterImpl implements AodvRouter {
     
     private final Clock clock;
 
-    private final Map<Integer, Integer> receivedRequests = new HashMap<>();
+    private final DuplicateRequestCache receivedRequests = new DuplicateRequestCache(PATH_DISCOVERY_TIME, RREQ_BUFFER_CAPACITY);
 
-    private final Map<Integer, Route> routes = new LinkedHashMap<>();
+    private final RoutingTable routes = new PrimitiveRoutingTable();
+
+    private final Map<Integer, RouteDiscovery> discoveries = new HashMap<>();
 
     private int sequenceNumber = 0;
 
     private int requestId = 0;
 
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Scheduler scheduler;
+
+    private final TimingWheel expiry;
+
+    private boolean compactionScheduled = false;
+
+    private final Map<Integer, PendingBroadcast> pendingBroadcasts = new HashMap<>();
+
+    private final Random random;
+
+    private int broadcastJitter = BROADCAST_JITTER;
+
+    private int copyThreshold = RREQ_COPY_THRESHOLD;
+
+    private final RouterStats stats = new RouterStats();
+
+    private final LinkQuality linkQuality = new LinkQuality(LINK_QUALITY_CAPACITY);
 
     public AodvRouterImpl(RoutingCallback routingCallback, Clock clock) {
+        this(routingCallback, clock, Scheduler.of(Executors.newSingleThreadScheduledExecutor()));
+    }
+
+    public AodvRouterImpl(RoutingCallback routingCallback, Clock clock, Scheduler scheduler) {
+        this(routingCallback, clock, scheduler, new Random());
+    }
+
+    public AodvRouterImpl(RoutingCallback routingCallback, Clock clock, Scheduler scheduler, Random random) {
         this.routingCallback = routingCallback;
         this.clock = clock;
+        this.scheduler = scheduler;
+        this.random = random;
+        this.expiry = new TimingWheel(scheduler, clock, EXPIRY_TICK, EXPIRY_BUCKETS, this::onRouteExpiry);
     }
 
     @Override
@@ -44,30 +73,66 @@ public class AodvRouterImpl implements AodvRouter {
         this.address = address;
     }
 
+    public RouterStats getStats() {
+        return stats;
+    }
+
+    // Forwarded RREQs wait a random time below maxJitter ms and are dropped once copyThreshold copies have been heard.
+    // A jitter of 0 forwards them right away.
+    public void setBroadcastJitter(int maxJitter, int copyThreshold) {
+        this.broadcastJitter = maxJitter;
+        this.copyThreshold = copyThreshold;
+    }
+
     @Override
-    public void processRouteRequest(RouteRequest request, int prevHop) {
+    public void processRouteRequest(RouteRequestMessage request, int prevHop) {
+
+        stats.routeRequestsReceived.increment();
 
         createRouteToPreviousHop(prevHop);                                                                                      // Create or update route to the previous hop without a valid Sequence Number.
 
-        final Integer origAddr = receivedRequests.put(request.getRequestId(), request.getOriginatorAddress());
-        if (origAddr != null && origAddr == request.getOriginatorAddress()) {                                                   // Discard, if we have seen this RREQ before (compare RREQ_ID and Originator Address).
+        if (!receivedRequests.add(request.getOriginatorAddress(), request.getRequestId(), clock.millis())) {                    // Discard, if we have seen this RREQ before (compare RREQ_ID and Originator Address).
+            stats.duplicateRequests.increment();
+            RoutingEvents.routeRequest(RoutingEvents.DUPLICATE, request, prevHop);
+            countBroadcastCopy(request.getOriginatorAddress(), request.getRequestId());
+            final int reverseRoute = routes.find(request.getOriginatorAddress());
+            final int hopCount = request.getHopCount() + 1;
+            final int metric = addLinkCost(request.getMetric(), linkQuality.getCost(prevHop));
+            if ((improveReverseRoute(reverseRoute, prevHop, request.getOriginatorSequence(), hopCount, metric)                  // The copy took a better path, e.g. two strong links instead of a weak one
+                    || offerAlternate(reverseRoute, prevHop, request.getOriginatorSequence(), metric, minLifetime(hopCount)))   // The copy took another path back to the originator
+                    && request.getDestinationAddress() == address) {
+                replyToCopy(request, prevHop);                                                                                  // Lets the originator learn the other path, too
+            }
             return;
         }
 
-        request = request.incrementHopCount();                                                                                  // Increment the Hop Count on the RREQ.
+        request = request.incrementHopCount(linkQuality.getCost(prevHop));                                                      // Increment the Hop Count on the RREQ, the metric grows by the cost of the link it came over.
 
-        final Route reverseRoute = routes.computeIfAbsent(request.getOriginatorAddress(), Route::new);                          // Search for reverse route with matching Originator Address. If none exists, create a new one or update the current.
-        reverseRoute.setDestinationSequence(Math.max(reverseRoute.getDestinationSequence(), request.getOriginatorSequence()));  // The Originator Sequence Number from the RREQ is compared to the corresponding destination sequence number in the route table entry and copied if greater than the existing value there
-        reverseRoute.setDestinationSequenceValid(true);                                                                         // The valid sequence number field is set to true
-        reverseRoute.setNextHop(prevHop);                                                                                       // The next hop in the routing table becomes the node from which the RREQ was received
-        reverseRoute.setHopCount(request.getHopCount());                                                                        // The hop count is copied from the Hop Count in the RREQ message
-        reverseRoute.setLifetime(Math.max(reverseRoute.getLifetime(), minLifetime(request.getHopCount())));                     // The Lifetime of the reverse route entry for the Originator IP address is set to be the maximum of (ExistingLifetime, MinimalLifetime)
+        final boolean knownOriginator = routes.find(request.getOriginatorAddress()) != NOT_FOUND;
+        final int reverseRoute = routes.findOrCreate(request.getOriginatorAddress());                                           // Search for reverse route with matching Originator Address. If none exists, create a new one or update the current.
+        stats.routes = routes.size();
+        if (!routes.isDestinationSequenceValid(reverseRoute) || !isActive(reverseRoute)
+                || !isFresher(routes.getDestinationSequence(reverseRoute), request.getOriginatorSequence())) {                  // A jittered copy of an older RREQ from the same originator must not redirect a fresher reverse route
+            final int previousSequence = routes.getDestinationSequence(reverseRoute);
+            if (!routes.isDestinationSequenceValid(reverseRoute) || isFresher(request.getOriginatorSequence(), routes.getDestinationSequence(reverseRoute))) {
+                routes.setDestinationSequence(reverseRoute, request.getOriginatorSequence());                                   // The Originator Sequence Number from the RREQ is compared to the corresponding destination sequence number in the route table entry and copied if greater than the existing value there
+            }
+            routes.setDestinationSequenceValid(reverseRoute, true);                                                             // The valid sequence number field is set to true
+            routes.setNextHop(reverseRoute, prevHop);                                                                           // The next hop in the routing table becomes the node from which the RREQ was received
+            routes.setHopCount(reverseRoute, request.getHopCount());                                                            // The hop count is copied from the Hop Count in the RREQ message
+            routes.setMetric(reverseRoute, request.getMetric());
+            setLifetime(reverseRoute, Math.max(routes.getLifetime(reverseRoute), minLifetime(request.getHopCount())));          // The Lifetime of the reverse route entry for the Originator IP address is set to be the maximum of (ExistingLifetime, MinimalLifetime)
+            pruneAlternates(reverseRoute, previousSequence);
+            RoutingEvents.route(knownOriginator ? RoutingEvents.UPDATED : RoutingEvents.CREATED, routes, reverseRoute, clock.millis());
+        }
+
+        flushPendingData(request.getOriginatorAddress());                                                                       // The reverse route also serves data waiting for the originator
 
         // If we are the Destination Address or do have a valid route, generate a RREP else forward the RREQ.
         if (request.getDestinationAddress() == address) {
 
-            if (request.getDestinationSequence() == sequenceNumber + 1) {                                                       // If our own incremented sequence number (Sequence Number + 1) matches the Destination Sequence Number
-                sequenceNumber++;                                                                                               // persist the incremented value, otherwise don't change it.
+            if (request.getDestinationSequence() == nextSequence(sequenceNumber)) {                                             // If our own incremented sequence number (Sequence Number + 1) matches the Destination Sequence Number
+                sequenceNumber = nextSequence(sequenceNumber);                                                                  // persist the incremented value, otherwise don't change it.
             }
 
             final RouteReply reply = new RouteReply(
@@ -79,168 +144,634 @@ public class AodvRouterImpl implements AodvRouter {
             );
 
             routingCallback.send(reply, prevHop);
+            stats.routeRepliesSent.increment();
+            RoutingEvents.routeReply(RoutingEvents.GENERATED, reply, prevHop);
 
         } else if (hasValidRoute(request)) {
 
-            final Route forwardRoute = routes.get(request.getDestinationAddress());
+            final int forwardRoute = routes.find(request.getDestinationAddress());
 
-            forwardRoute.addPrecursor(prevHop);                                                                                 // Add the RREQ's sender to the Precursor-list of the forward route.
-            reverseRoute.addPrecursor(forwardRoute.getNextHop());                                                               // Add Next Hop from the forward route to the Precursor-list of the route to the Originator Adress of the RREQ (reverse route).
+            routes.addPrecursor(forwardRoute, prevHop);                                                                         // Add the RREQ's sender to the Precursor-list of the forward route.
+            routes.addPrecursor(reverseRoute, routes.getNextHop(forwardRoute));                                                 // Add Next Hop from the forward route to the Precursor-list of the route to the Originator Adress of the RREQ (reverse route).
 
-            final int lifetime = (int)(forwardRoute.getLifetime() - clock.millis());                                            // Set Lifetime in RREP to the difference between (forward Route Lifetime - Current Timestamp).
+            final int lifetime = (int)(routes.getLifetime(forwardRoute) - clock.millis());                                      // Set Lifetime in RREP to the difference between (forward Route Lifetime - Current Timestamp).
 
             final RouteReply reply = new RouteReply(
                     lifetime,
                     request.getDestinationAddress(),
-                    forwardRoute.getDestinationSequence(),                                                                      // Set Destination Sequence to value of sequence from the forward route.
+                    routes.getDestinationSequence(forwardRoute),                                                                // Set Destination Sequence to value of sequence from the forward route.
                     request.getOriginatorAddress(),
-                    forwardRoute.getHopCount()                                                                                  // Set Hop Count in RREP to the value in the route to the Destination Adress of the RREP (forward route).
+                    routes.getHopCount(forwardRoute),                                                                           // Set Hop Count in RREP to the value in the route to the Destination Adress of the RREP (forward route).
+                    routes.getMetric(forwardRoute)
             );
 
             routingCallback.send(reply, prevHop);
+            stats.routeRepliesSent.increment();
+            RoutingEvents.routeReply(RoutingEvents.GENERATED, reply, prevHop);
 
-        } else {
+        } else if (request.getTimeToLive() == UNLIMITED_TTL || request.getHopCount() < request.getTimeToLive()) {               // Don't forward beyond the ring of an expanding ring search
 
-            routingCallback.send(request, BROADCAST_ADDRESS);
+            if (broadcastJitter <= 0) {
+                routingCallback.send(request, BROADCAST_ADDRESS);
+                stats.routeRequestsForwarded.increment();
+                RoutingEvents.routeRequest(RoutingEvents.FORWARDED, request, prevHop);
+            } else {
+                scheduleBroadcast(request.toRouteRequest());                                                                    // Neighbors that heard the same copy would otherwise all rebroadcast at once
+            }
         }
     }
 
     @Override
-    public void processRouteReply(RouteReply reply, int prevHop) {
+    public void processRouteReply(RouteReplyMessage reply, int prevHop) {
+
+        stats.routeRepliesReceived.increment();
 
         createRouteToPreviousHop(prevHop);                                                                                      // Create or update route to the previous hop without a valid Sequence Number.
 
-        reply = reply.incrementHopCount();                                                                                      // Increment Hop Count in RREP.
+        reply = reply.incrementHopCount(linkQuality.getCost(prevHop));                                                          // Increment Hop Count in RREP, the metric grows by the cost of the link it came over.
 
-        final Route fr = routes.computeIfAbsent(reply.getDestinationAddress(), Route::new);                                     // Search for reverse route with matching Originator Address. If none exists, create a new one or update the current
-        if (!fr.isDestinationSequenceValid()                                                                                    // The sequence number in the routing table is marked as invalid in route table entry
-                || (reply.getDestinationSequence()  > fr.getDestinationSequence() && fr.isDestinationSequenceValid())           // The Destination Sequence Number in the RREP is greater than the node's copy of the destination sequence number and the known value is valid
-                || (reply.getDestinationSequence() == fr.getDestinationSequence() && !isActive(fr))                             // The sequence numbers are the same, but the route is marked as inactive
-                || (reply.getDestinationSequence() == fr.getDestinationSequence() && reply.getHopCount() < fr.getHopCount()))   // The sequence numbers are the same, and the New Hop Count is smaller than the hop count in route table entry
+        final boolean knownDestination = routes.find(reply.getDestinationAddress()) != NOT_FOUND;
+        final int fr = routes.findOrCreate(reply.getDestinationAddress());                                                      // Search for reverse route with matching Originator Address. If none exists, create a new one or update the current
+        stats.routes = routes.size();
+        boolean alternatePath = false;
+        if (!routes.isDestinationSequenceValid(fr)                                                                              // The sequence number in the routing table is marked as invalid in route table entry
+                || (isFresher(reply.getDestinationSequence(), routes.getDestinationSequence(fr)) && routes.isDestinationSequenceValid(fr)) // The Destination Sequence Number in the RREP is greater than the node's copy of the destination sequence number and the known value is valid
+                || (reply.getDestinationSequence() == routes.getDestinationSequence(fr) && !isActive(fr))                       // The sequence numbers are the same, but the route is marked as inactive
+                || (reply.getDestinationSequence() == routes.getDestinationSequence(fr) && reply.getMetric() < routes.getMetric(fr))) // The sequence numbers are the same, and the new metric is smaller than the metric in route table entry
         {
-            fr.setDestinationSequenceValid(true);                                                                               // The destination sequence number is marked as valid
-            fr.setNextHop(prevHop);                                                                                             // The next hop in the route entry is assigned to be the node from which the RREP is received
-            fr.setHopCount(reply.getHopCount());                                                                                // The hop count is set to the value of the New Hop Count
-            fr.setLifetime(clock.millis() + reply.getLifetime());                                                               // The expiry time is set to the current time plus the value of the Lifetime in the RREP message
-            fr.setDestinationSequence(reply.getDestinationSequence());                                                          // The destination sequence number is the Destination Sequence Number in the RREP message
+            final int previousSequence = routes.getDestinationSequence(fr);
+            routes.setDestinationSequenceValid(fr, true);                                                                       // The destination sequence number is marked as valid
+            routes.setNextHop(fr, prevHop);                                                                                     // The next hop in the route entry is assigned to be the node from which the RREP is received
+            routes.setHopCount(fr, reply.getHopCount());                                                                        // The hop count is set to the value of the New Hop Count
+            routes.setMetric(fr, reply.getMetric());
+            setLifetime(fr, clock.millis() + reply.getLifetime());                                                              // The expiry time is set to the current time plus the value of the Lifetime in the RREP message
+            routes.setDestinationSequence(fr, reply.getDestinationSequence());                                                  // The destination sequence number is the Destination Sequence Number in the RREP message
+            pruneAlternates(fr, previousSequence);
+            RoutingEvents.route(knownDestination ? RoutingEvents.UPDATED : RoutingEvents.CREATED, routes, fr, clock.millis());
+        } else {
+            alternatePath = offerAlternate(fr, prevHop, reply.getDestinationSequence(), reply.getMetric(), clock.millis() + reply.getLifetime()); // A path as good as the current one, kept for a failover
         }
 
         if (reply.getOriginatorAddress() != address) {                                                                          // If the current node is NOT the node indicated by the Originator IP Address in the RREP message
-            final Route reverseRoute = routes.get(reply.getOriginatorAddress());                                                // Then the node consults its route table entry for the originating node to determine the next hop for the RREP
-            routingCallback.send(reply, reverseRoute.getNextHop());                                                             // And then forwards the RREP towards the originator using the information in that route table entry
+            final int reverseRoute = routes.find(reply.getOriginatorAddress());                                                 // Then the node consults its route table entry for the originating node to determine the next hop for the RREP
+            if (reverseRoute != NOT_FOUND) {
+                final int alternate = alternatePath ? findAlternate(reverseRoute) : -1;
+                final int nextHop = alternate >= 0
+                        ? routes.getAlternateNextHop(reverseRoute, alternate)                                                   // Sent back along another path, so the nodes there learn an alternate as well
+                        : routes.getNextHop(reverseRoute);
+                routingCallback.send(reply, nextHop);                                                                           // And then forwards the RREP towards the originator using the information in that route table entry
+                stats.routeRepliesForwarded.increment();
+                RoutingEvents.routeReply(RoutingEvents.FORWARDED, reply, nextHop);
+                routes.addPrecursor(fr, nextHop);                                                                               // Add the Next Hop node (target of our RREP) to the Precursor-list for the Destination Address.
+                refreshLifetime(reverseRoute, clock.millis() + ACTIVE_ROUTE_TIMEOUT);                                           // Update the Lifetime for the reverse route to the max of (CurrentLifetime, CURRENT_TIMESTAMP + ACTIVE_ROUTE_TIMEOUT).
+                routes.addPrecursor(routes.find(prevHop), nextHop);                                                             // Add the next hop towards the originator to the Precursor-list of the next hop towards the destination.
+            } else {
+                stats.routeRepliesDropped.increment();
+                RoutingEvents.routeReply(RoutingEvents.DROPPED, reply, -1);
+            }
         }
+
+        cancelBroadcasts(reply.getOriginatorAddress(), reply.getDestinationAddress());                                          // The discovery has been answered, our rebroadcast of its RREQ is of no use anymore
+
+        flushPendingData(reply.getDestinationAddress());                                                                        // Data waiting for this route is sent right away instead of on the next retry
     }
 
     @Override
-    public void processUserData(UserData data) {
-        processUserData(data, -1, 0);
+    public void processRouteError(RouteErrorMessage error, int prevHop) {
+
+        stats.routeErrorsReceived.increment();
+
+        final UnreachableDestinations unreachable = new UnreachableDestinations();
+
+        for (int i = 0; i < error.getDestinationCount(); i++) {
+            final int route = routes.find(error.getDestinationAddress(i));
+            if (route == NOT_FOUND) {
+                continue;
+            }
+            removeAlternate(route, prevHop);                                                                                    // The sender of the RERR can't reach the destination anymore
+            if (routes.getNextHop(route) == prevHop && isActive(route) && !failOver(route)) {                                   // Only active routes using the sender of the RERR as next hop are affected
+                routes.setDestinationSequence(route, error.getDestinationSequence(i));                                          // The destination sequence number is copied from the RERR
+                invalidateRoute(route, unreachable);
+            }
+        }
+
+        sendRouteError(unreachable);                                                                                            // Propagate the RERR to the precursors of the invalidated routes
     }
 
     @Override
-    public void processUserData(UserData data, int prevHop) {
-        processUserData(data, prevHop, 0);
+    public void processLinkFailure(int nextHop) {
+
+        final UnreachableDestinations unreachable = new UnreachableDestinations();
+
+        routes.forEach(route -> {
+            removeAlternate(route, nextHop);
+            if (routes.getNextHop(route) == nextHop && isActive(route) && !failOver(route)) {                                   // Every active route using the broken link is affected, including the one to the neighbor itself
+                if (routes.isDestinationSequenceValid(route)) {
+                    final int sequence = routes.getDestinationSequence(route);
+                    routes.setDestinationSequence(route, nextSequence(sequence));                                               // Increment the destination sequence number of each unreachable destination
+                }
+                invalidateRoute(route, unreachable);
+            }
+        });
+
+        sendRouteError(unreachable);
     }
 
-    private void processUserData(UserData data, int prevHop, int retries) {
+    @Override
+    public void processLinkQuality(int neighbor, int rssi) {
+        linkQuality.update(neighbor, rssi, clock.millis());
+    }
+
+    public LinkQuality getLinkQuality() {
+        return linkQuality;
+    }
+
+    @Override
+    public void processUserData(UserDataMessage data) {
+        processUserData(data, -1);
+    }
+
+    @Override
+    public void processUserData(UserDataMessage data, int prevHop) {
+        processUserData(data, prevHop, clock.millis());
+    }
+
+    private void processUserData(UserDataMessage data, int prevHop, long arrivedAt) {
 
         if (data.getDestinationAddress() == address) {
+            stats.userDataDelivered.increment();
             return;
         }
 
-        final Route forwardRoute = routes.get(data.getDestinationAddress());
-        if (forwardRoute == null || !isActive(forwardRoute)) {
+        final int forwardRoute = routes.find(data.getDestinationAddress());
+        if (forwardRoute == NOT_FOUND || !isActive(forwardRoute)) {
+
+            RouteDiscovery discovery = discoveries.get(data.getDestinationAddress());                                           // Only one route discovery per destination is in flight, later data joins its queue.
+            if (discovery == null) {
+                discovery = new RouteDiscovery(clock.millis());
+                discovery.setTimeToLive(initialTimeToLive(data.getDestinationAddress()));
+                discoveries.put(data.getDestinationAddress(), discovery);
+                stats.pendingDiscoveries = discoveries.size();
+                stats.discoveriesStarted.increment();
+                sendRouteRequest(data.getDestinationAddress(), discovery);
+            }
 
-            if (retries > RREQ_RETRIES) {
-                routingCallback.onError("Destination unreachable");
-                return;
+            if (discovery.offer(data.toUserData(), prevHop, arrivedAt)) {                                                       // Views point into a reused frame buffer, detach the data before buffering it
+                stats.bufferedPackets++;
+                RoutingEvents.userData(RoutingEvents.BUFFERED, data, prevHop, -1, clock.millis() - arrivedAt);
+            } else {
+                stats.userDataDropped.increment();
+                RoutingEvents.userData(RoutingEvents.DROPPED, data, prevHop, -1, clock.millis() - arrivedAt);
+                routingCallback.onError("Route discovery queue full");
             }
+            return;
+        }
 
-            final RouteRequest request = new RouteRequest(
-                    0,                                                                                                          // Set the Hop Count value to 0.
-                    ++requestId,                                                                                                // Set the RREQ Request ID to increment of the last used Request ID.
-                    data.getDestinationAddress(),
-                    Optional.ofNullable(forwardRoute).map(Route::getDestinationSequence).orElse(0),                             // Set the RREQ Destination Sequence Number to the most up-to-date value.
-                    forwardRoute == null,                                                                                       // Or set the Unknown Sequence Number-flag, if none is available.
-                    address,
-                    ++sequenceNumber                                                                                            // Set the RREQ Originator Sequence Number to the own sequence number, after it has been incremented for this step.
-            );
+        sendUserData(data, refreshForwardRoute(forwardRoute, prevHop), prevHop, arrivedAt);
+    }
 
-            receivedRequests.put(data.getDestinationAddress(), address);                                                        // we don't want to process our own request
+    @Override
+    public void processUserData(List<? extends UserDataMessage> data) {
 
-            routingCallback.send(request, BROADCAST_ADDRESS);                                                                   // Send route request
+        if (data.isEmpty()) {
+            return;
+        }
 
-            final long delay = (long)Math.pow(2, retries) * NET_TRAVERSAL_TIME;
-            scheduler.schedule(() -> processUserData(data, prevHop, retries + 1), delay, MILLISECONDS);                         // Buffer data
+        final int destinationAddress = data.get(0).getDestinationAddress();
+        for (UserDataMessage message : data) {
+            if (message.getDestinationAddress() != destinationAddress) {
+                throw new RuntimeException("Failed to process user data: Different destinations");
+            }
+        }
+
+        if (destinationAddress == address) {
+            return;
+        }
+
+        final int forwardRoute = routes.find(destinationAddress);
+        if (forwardRoute == NOT_FOUND || !isActive(forwardRoute)) {
+            for (UserDataMessage message : data) {
+                processUserData(message, -1);                                                                                   // The first one starts the route discovery, the others join its queue
+            }
             return;
         }
 
+        final int nextHop = refreshForwardRoute(forwardRoute, -1);
+        final long now = clock.millis();
+        for (UserDataMessage message : data) {
+            sendUserData(message, nextHop, -1, now);
+        }
+    }
+
+    private void sendUserData(UserDataMessage data, int nextHop, int prevHop, long arrivedAt) {
+        routingCallback.send(data, nextHop);
+        stats.userDataSent.increment();
+        if (prevHop >= 0) {
+            stats.userDataForwarded.increment();
+        }
+        final long delay = clock.millis() - arrivedAt;
+        stats.forwardingDelay.record(delay);                                                                                    // Includes the wait for a route discovery
+        RoutingEvents.userData(RoutingEvents.SENT, data, prevHop, nextHop, delay);
+    }
+
+    // Refreshes the routes used to forward data and returns the next hop.
+    private int refreshForwardRoute(int forwardRoute, int prevHop) {
+
         final long newLifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT;
 
-        forwardRoute.setLifetime(Math.max(forwardRoute.getLifetime(), newLifetime));
+        refreshLifetime(forwardRoute, newLifetime);
 
         if (prevHop >= 0) {
-            final Route routeToPrevHop = routes.get(prevHop);
-            if (routeToPrevHop != null) {
-                routeToPrevHop.setLifetime(Math.max(routeToPrevHop.getLifetime(), newLifetime));
+            final int routeToPrevHop = routes.find(prevHop);
+            if (routeToPrevHop != NOT_FOUND) {
+                refreshLifetime(routeToPrevHop, newLifetime);
             }
         }
 
-        final Route routeToNextHop = routes.get(forwardRoute.getNextHop());
-        if (routeToNextHop != null) {
-            routeToNextHop.setLifetime(Math.max(routeToNextHop.getLifetime(), newLifetime));
+        final int nextHop = routes.getNextHop(forwardRoute);
+        final int routeToNextHop = routes.find(nextHop);
+        if (routeToNextHop != NOT_FOUND) {
+            refreshLifetime(routeToNextHop, newLifetime);
+        }
+
+        return nextHop;
+    }
+
+    private void sendRouteRequest(int destinationAddress, RouteDiscovery discovery) {
+
+        final int forwardRoute = routes.find(destinationAddress);
+
+        final RouteRequest request = new RouteRequest(
+                0,                                                                                                              // Set the Hop Count value to 0.
+                nextRequestId(),                                                                                                // Set the RREQ Request ID to increment of the last used Request ID.
+                destinationAddress,
+                forwardRoute == NOT_FOUND ? 0 : routes.getDestinationSequence(forwardRoute),                                    // Set the RREQ Destination Sequence Number to the most up-to-date value.
+                forwardRoute == NOT_FOUND,                                                                                      // Or set the Unknown Sequence Number-flag, if none is available.
+                address,
+                nextSequenceNumber(),                                                                                           // Set the RREQ Originator Sequence Number to the own sequence number, after it has been incremented for this step.
+                discovery.getTimeToLive()
+        );
+
+        receivedRequests.add(address, request.getRequestId(), clock.millis());                                                  // Buffer the (Request ID, Originator Address)-pair for PATH_DISCOVERY_TIME, we don't want to process our own request
+
+        routingCallback.send(request, BROADCAST_ADDRESS);                                                                       // Send route request
+        stats.routeRequestsSent.increment();
+        discovery.countRequest();
+        RoutingEvents.routeRequest(RoutingEvents.ORIGINATED, request, -1);
+
+        final long delay = discovery.getTimeToLive() == UNLIMITED_TTL
+                ? (long)Math.pow(2, discovery.getRetries()) * NET_TRAVERSAL_TIME                                                // Binary exponential backoff between the retries
+                : 2L * NODE_TRAVERSAL_TIME * (discovery.getTimeToLive() + TIMEOUT_BUFFER);                                      // Ring traversal time, a reply from within the ring arrives by then
+        discovery.setTimer(scheduler.schedule(() -> onDiscoveryTimeout(destinationAddress, discovery), delay));
+    }
+
+    private void scheduleBroadcast(RouteRequest request) {
+        final int key = DuplicateRequestCache.key(request.getOriginatorAddress(), request.getRequestId());
+        final PendingBroadcast pending = new PendingBroadcast(request);
+        pendingBroadcasts.put(key, pending);
+        pending.setTimer(scheduler.schedule(() -> onBroadcastJitter(key, pending), random.nextInt(broadcastJitter)));
+    }
+
+    private void onBroadcastJitter(int key, PendingBroadcast pending) {
+        if (pendingBroadcasts.remove(key, pending)) {
+            routingCallback.send(pending.getRequest(), BROADCAST_ADDRESS);
+            stats.routeRequestsForwarded.increment();
+            RoutingEvents.routeRequest(RoutingEvents.FORWARDED, pending.getRequest(), -1);
         }
+    }
 
-        routingCallback.send(data, forwardRoute.getNextHop());
+    private void countBroadcastCopy(int originatorAddress, int requestId) {
+        final int key = DuplicateRequestCache.key(originatorAddress, requestId);
+        final PendingBroadcast pending = pendingBroadcasts.get(key);
+        if (pending != null && pending.addCopy() >= copyThreshold) {                                                            // Enough neighbors have covered the area already
+            pendingBroadcasts.remove(key);
+            stats.suppressedBroadcasts.increment();
+            RoutingEvents.routeRequest(RoutingEvents.SUPPRESSED, pending.getRequest(), -1);
+            pending.cancelTimer();
+        }
+    }
+
+    private void cancelBroadcasts(int originatorAddress, int destinationAddress) {
+        if (pendingBroadcasts.isEmpty()) {
+            return;
+        }
+        pendingBroadcasts.values().removeIf(pending -> {
+            final RouteRequest request = pending.getRequest();
+            if (request.getOriginatorAddress() != originatorAddress || request.getDestinationAddress() != destinationAddress) {
+                return false;
+            }
+            pending.cancelTimer();
+            return true;
+        });
+    }
+
+    private void onDiscoveryTimeout(int destinationAddress, RouteDiscovery discovery) {
+
+        if (discoveries.get(destinationAddress) != discovery) {                                                                 // The discovery has been completed meanwhile
+            return;
+        }
+
+        if (flushPendingData(destinationAddress)) {                                                                             // A route may have been learned from other traffic, e.g. a RREQ of the destination
+            return;
+        }
+
+        if (discovery.getTimeToLive() != UNLIMITED_TTL) {                                                                       // Widen the ring, rounds within the threshold don't count as retries
+            discovery.setTimeToLive(limitTimeToLive(discovery.getTimeToLive() + TTL_INCREMENT));
+            sendRouteRequest(destinationAddress, discovery);
+            return;
+        }
+
+        if (discovery.nextRetry() > RREQ_RETRIES) {
+            discoveries.remove(destinationAddress);
+            stats.pendingDiscoveries = discoveries.size();
+            stats.discoveriesFailed.increment();
+            stats.userDataDropped.add(discovery.size());
+            stats.bufferedPackets -= discovery.size();
+            RoutingEvents.routeDiscovery(discovery.getEvent(), RoutingEvents.FAILED, destinationAddress, discovery);
+            final long now = clock.millis();
+            discovery.drain((data, prevHop, arrivedAt) -> RoutingEvents.userData(RoutingEvents.DROPPED, data, prevHop, -1, now - arrivedAt));
+            routingCallback.onError("Destination unreachable");                                                                 // Drop the whole queue with a single notification
+            return;
+        }
+
+        sendRouteRequest(destinationAddress, discovery);
+    }
+
+    // Starts the search just beyond the last known distance of the destination, or at TTL_START if it is unknown.
+    private int initialTimeToLive(int destinationAddress) {
+        final int route = routes.find(destinationAddress);
+        return limitTimeToLive(route == NOT_FOUND ? TTL_START : routes.getHopCount(route) + TTL_INCREMENT);
+    }
+
+    private int limitTimeToLive(int timeToLive) {
+        return timeToLive > TTL_THRESHOLD ? UNLIMITED_TTL : timeToLive;                                                         // Beyond the threshold the whole network is searched
+    }
+
+    private boolean flushPendingData(int destinationAddress) {
+
+        if (discoveries.isEmpty()) {
+            return false;
+        }
+
+        final int forwardRoute = routes.find(destinationAddress);
+        if (forwardRoute == NOT_FOUND || !isActive(forwardRoute)) {
+            return false;
+        }
+
+        final RouteDiscovery discovery = discoveries.remove(destinationAddress);
+        if (discovery == null) {
+            return false;
+        }
+
+        stats.pendingDiscoveries = discoveries.size();
+        discovery.cancelTimer();
+        stats.discoveriesSucceeded.increment();
+        stats.discoveryLatency.record(clock.millis() - discovery.getStartedAt());
+        stats.bufferedPackets -= discovery.size();
+        RoutingEvents.routeDiscovery(discovery.getEvent(), RoutingEvents.SUCCEEDED, destinationAddress, discovery);
+        discovery.drain(this::processUserData);                                                                                 // Send the buffered data in FIFO order
+        return true;
+    }
+
+    private int nextRequestId() {
+        requestId = requestId == MAX_6_BITS ? 1 : requestId + 1;                                                                // The request id field is 6 bits wide, wrap around instead of overflowing it
+        return requestId;
+    }
+
+    private int nextSequenceNumber() {
+        sequenceNumber = nextSequence(sequenceNumber);                                                                          // The sequence number field is 8 bits wide, wrap around instead of overflowing it
+        return sequenceNumber;
+    }
+
+    private void invalidateRoute(int route, UnreachableDestinations unreachable) {
+        unreachable.add(routes.getDestinationAddress(route), routes.getDestinationSequence(route));
+        for (int i = 0; i < routes.getPrecursorCount(route); i++) {
+            unreachable.addPrecursor(routes.getPrecursor(route, i));
+        }
+        setLifetime(route, clock.millis());                                                                                     // The route is invalid from now on and deleted after DELETE_PERIOD
+        if (unreachable.isFull()) {
+            sendRouteError(unreachable);
+        }
+    }
+
+    private void sendRouteError(UnreachableDestinations unreachable) {
+        if (unreachable.isReportable()) {
+            routingCallback.send(unreachable.toRouteError(), unreachable.getTarget());
+            stats.routeErrorsSent.increment();
+        }
+        unreachable.clear();
+    }
+
+    private void refreshLifetime(int route, long lifetime) {
+        setLifetime(route, Math.max(routes.getLifetime(route), lifetime));
+    }
+
+    private void setLifetime(int route, long lifetime) {
+        routes.setLifetime(route, lifetime);
+        expiry.schedule(route, lifetime);                                                                                       // O(1), a route already waiting for an earlier deadline is rescheduled when that one passes
+    }
+
+    private void onRouteExpiry(int route) {
+        final long lifetime = routes.getLifetime(route);
+        final long now = clock.millis();
+        if (lifetime > now) {                                                                                                   // The lifetime has been extended meanwhile
+            expiry.schedule(route, lifetime);
+        } else if (lifetime + DELETE_PERIOD > now) {                                                                            // The route is invalid now, keep it for DELETE_PERIOD before deleting it
+            expiry.schedule(route, lifetime + DELETE_PERIOD);
+            RoutingEvents.route(RoutingEvents.EXPIRED, routes, route, now);
+        } else {
+            RoutingEvents.route(RoutingEvents.DELETED, routes, route, now);
+            routes.remove(routes.getDestinationAddress(route));
+            stats.routes = routes.size();
+            if (!compactionScheduled) {
+                compactionScheduled = true;
+                scheduler.schedule(this::compactRoutes, 0);                                                                     // Entry handles must stay valid until the current tick is done
+            }
+        }
+    }
+
+    private void compactRoutes() {
+        compactionScheduled = false;
+        if (routes.compact()) {
+            expiry.clear();
+            routes.forEach(r -> expiry.schedule(r, routes.getLifetime(r)));
+        }
+    }
+
+    // Alternates are loop-free as long as the neighbor is closer to the destination than we are, so only paths with the
+    // same destination sequence and at most the metric of the route are kept. Every link costs at least 1, the metric
+    // grows along a path just like the hop count. A failover keeps the metric of the route, the distance we advertised
+    // to our precursors stays an upper bound.
+    private boolean offerAlternate(int route, int nextHop, int destinationSequence, int metric, long lifetime) {
+        if (route == NOT_FOUND || !routes.isDestinationSequenceValid(route) || !isActive(route)) {
+            return false;
+        }
+        if (destinationSequence != routes.getDestinationSequence(route) || metric > routes.getMetric(route)
+                || nextHop == routes.getNextHop(route)) {
+            return false;
+        }
+        return routes.addAlternate(route, nextHop, metric, lifetime);
+    }
+
+    // A later copy of a RREQ redirects the reverse route if it arrived over a path with a smaller metric.
+    private boolean improveReverseRoute(int route, int prevHop, int originatorSequence, int hopCount, int metric) {
+        if (route == NOT_FOUND || !routes.isDestinationSequenceValid(route) || !isActive(route)) {
+            return false;
+        }
+        if (originatorSequence != routes.getDestinationSequence(route) || metric >= routes.getMetric(route)) {
+            return false;
+        }
+        routes.setNextHop(route, prevHop);
+        routes.setHopCount(route, hopCount);
+        routes.setMetric(route, metric);
+        refreshLifetime(route, minLifetime(hopCount));
+        pruneAlternates(route, originatorSequence);
+        RoutingEvents.route(RoutingEvents.UPDATED, routes, route, clock.millis());
+        return true;
+    }
+
+    // Called after the route has been updated, a new destination sequence makes all alternates stale.
+    private void pruneAlternates(int route, int previousSequence) {
+        if (routes.getDestinationSequence(route) != previousSequence) {
+            routes.clearAlternates(route);
+            return;
+        }
+        for (int i = routes.getAlternateCount(route) - 1; i >= 0; i--) {
+            if (routes.getAlternateNextHop(route, i) == routes.getNextHop(route) || routes.getAlternateMetric(route, i) > routes.getMetric(route)) {
+                routes.removeAlternate(route, i);
+            }
+        }
+    }
+
+    private void removeAlternate(int route, int nextHop) {
+        for (int i = routes.getAlternateCount(route) - 1; i >= 0; i--) {
+            if (routes.getAlternateNextHop(route, i) == nextHop) {
+                routes.removeAlternate(route, i);
+            }
+        }
+    }
+
+    // Answers a copy of a RREQ already answered, with the same sequence number as the first RREP.
+    private void replyToCopy(RouteRequestMessage request, int prevHop) {
+        final RouteReply reply = new RouteReply(MY_ROUTE_TIMEOUT, address, sequenceNumber, request.getOriginatorAddress(), 0);
+        routingCallback.send(reply, prevHop);
+        stats.routeRepliesSent.increment();
+        RoutingEvents.routeReply(RoutingEvents.GENERATED, reply, prevHop);
+    }
+
+    // Returns the index of the best alternate that has not expired yet, or -1 if there is none.
+    private int findAlternate(int route) {
+        final long now = clock.millis();
+        for (int i = 0; i < routes.getAlternateCount(route); i++) {
+            if (routes.getAlternateLifetime(route, i) > now) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Switches the route to its best live alternate, returns false if there is none.
+    private boolean failOver(int route) {
+        final int alternate = findAlternate(route);
+        if (alternate < 0) {
+            return false;
+        }
+        routes.setNextHop(route, routes.getAlternateNextHop(route, alternate));
+        refreshLifetime(route, routes.getAlternateLifetime(route, alternate));
+        routes.removeAlternate(route, alternate);
+        stats.failovers.increment();
+        RoutingEvents.route(RoutingEvents.FAILED_OVER, routes, route, clock.millis());
+        return true;
     }
 
     private void createRouteToPreviousHop(int previousHopAddress) {
-        Route route = routes.get(previousHopAddress);
-        if (route == null) {
-            route = new Route(previousHopAddress);
-            route.setDestinationSequence(0);
-            route.setDestinationSequenceValid(false);
-            route.setHopCount(1);
-            route.setNextHop(previousHopAddress);
-            route.setLifetime(ACTIVE_ROUTE_TIMEOUT);
-            routes.put(previousHopAddress, route);
+        if (routes.find(previousHopAddress) == NOT_FOUND) {
+            final int route = routes.findOrCreate(previousHopAddress);
+            stats.routes = routes.size();
+            routes.setDestinationSequence(route, 0);
+            routes.setDestinationSequenceValid(route, false);
+            routes.setHopCount(route, 1);
+            routes.setMetric(route, linkQuality.getCost(previousHopAddress));
+            routes.setNextHop(route, previousHopAddress);
+            setLifetime(route, clock.millis() + ACTIVE_ROUTE_TIMEOUT);
+            RoutingEvents.route(RoutingEvents.CREATED, routes, route, clock.millis());
         }
     }
 
-    private boolean hasValidRoute(RouteRequest request) {
-        final Route forwardRoute = routes.get(request.getDestinationAddress());
-        return forwardRoute != null && isActive(forwardRoute)                                                                   // An active route to the destination exists
-                && forwardRoute.isDestinationSequenceValid()                                                                    // And the destination sequence in the route for the destination is valid
-                && forwardRoute.getDestinationSequence() >= request.getDestinationSequence();                                   // And the destination sequence in the route is greater than or equal to the destination sequence of the RREQ
+    private boolean hasValidRoute(RouteRequestMessage request) {
+        final int forwardRoute = routes.find(request.getDestinationAddress());
+        return forwardRoute != NOT_FOUND && isActive(forwardRoute)                                                              // An active route to the destination exists
+                && routes.isDestinationSequenceValid(forwardRoute)                                                              // And the destination sequence in the route for the destination is valid
+                && (request.isDestinationSequenceUnknown()                                                                      // And the RREQ knows no destination sequence
+                    || !isFresher(request.getDestinationSequence(), routes.getDestinationSequence(forwardRoute)));              // Or the destination sequence in the route is greater than or equal to the destination sequence of the RREQ
     }
 
     private long minLifetime(int hopCount) {
         return clock.millis() + 2 * NET_TRAVERSAL_TIME - 2L * hopCount * NODE_TRAVERSAL_TIME;
     }
 
-    private boolean isActive(Route route) {
-        return route.getLifetime() > clock.millis();
+    private boolean isActive(int route) {
+        return routes.getLifetime(route) > clock.millis();
+    }
+
+    public RouteSnapshot snapshot() {
+        final List<Route> copies = new ArrayList<>(routes.size());
+        routes.forEach(r -> copies.add(routes.getRoute(routes.getDestinationAddress(r))));
+        return new RouteSnapshot(clock.millis(), address, sequenceNumber, requestId, copies);
+    }
+
+    // Meant for startup once the address is known, returns the number of restored routes. Lifetimes are absolute, so routes that expired while the
+    // node was down are skipped, just like lifetimes further ahead than any RREP could grant, e.g. after a clock jump.
+    public int restore(RouteSnapshot snapshot) {
+
+        if (address == 0 || snapshot.getAddress() != address) {                                                                 // The state of another node is of no use, the address has to be known first
+            return 0;
+        }
+
+        sequenceNumber = snapshot.getSequenceNumber();                                                                          // Our RREPs would look stale to peers with a reset sequence number
+        requestId = snapshot.getRequestId();
+        for (int i = 0; i < RESTART_MARGIN; i++) {                                                                              // Numbers used after the snapshot was saved are lost, skip past them
+            nextSequenceNumber();                                                                                               // The margin stays below half the sequence number space, the result is still fresher
+            nextRequestId();
+        }
+
+        final long now = clock.millis();
+        int restored = 0;
+        for (Route route : snapshot.getRoutes()) {
+            if (route.getLifetime() <= now || route.getLifetime() > now + MAX_18_BITS) {
+                continue;
+            }
+            routes.putRoute(route);
+            stats.routes = routes.size();
+            final int restoredRoute = routes.find(route.getDestinationAddress());
+            setLifetime(restoredRoute, route.getLifetime());                                                                    // Schedules the expiry
+            RoutingEvents.route(RoutingEvents.CREATED, routes, restoredRoute, now);
+            restored++;
+        }
+        return restored;
     }
 
     @Override
     public void printRoutes() {
         final StringBuilder b = new StringBuilder();
-        b.append("+--------------------------------------------------+\n");
-        b.append("| Addr | Seq | V | A | Hops | Next |      Lifetime |\n");
-        b.append("+--------------------------------------------------+\n");
-        routes.values().forEach(r -> b.append(formatRoute(r)).append('\n'));
-        b.append("+--------------------------------------------------+\n");
+        b.append("+---------------------------------------------------------+\n");
+        b.append("| Addr | Seq | V | A | Hops | Cost | Next |      Lifetime |\n");
+        b.append("+---------------------------------------------------------+\n");
+        routes.forEach(r -> b.append(formatRoute(r)).append('\n'));
+        b.append("+---------------------------------------------------------+\n");
         System.out.print(b);
     }
 
-    private String formatRoute(Route r) {
-        return String.format("| %04X | %3d | %s | %s | %4d | %04X | %13d |",
-                r.getDestinationAddress(),
-                r.getDestinationSequence(),
-                r.isDestinationSequenceValid() ? "t" : "f",
+    private String formatRoute(int r) {
+        return String.format("| %04X | %3d | %s | %s | %4d | %4d | %04X | %13d |",
+                routes.getDestinationAddress(r),
+                routes.getDestinationSequence(r),
+                routes.isDestinationSequenceValid(r) ? "t" : "f",
                 isActive(r) ? "t" : "f",
-                r.getHopCount(),
-                r.getNextHop(),
-                r.getLifetime());
+                routes.getHopCount(r),
+                routes.getMetric(r),
+                routes.getNextHop(r),
+                routes.getLifetime(r));
     }
 
 }
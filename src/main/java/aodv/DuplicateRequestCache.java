@@ -0,0 +1,108 @@
+package aodv;
+
+// Remembers (originator, request id) pairs for a fixed time. Pairs are kept in a ring in insertion order, so expired
+// pairs are always at its head, and an open addressing index points from a pair into the ring.
+public class DuplicateRequestCache {
+
+    private final long retention;
+
+    private final int[] keys;
+
+    private final long[] expiries;
+
+    private final int[] slots;          // ring position + 1 per slot, 0 marks an empty slot
+
+    private final int slotShift;
+
+    private int head = 0;
+
+    private int count = 0;
+
+    public DuplicateRequestCache(long retention, int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Invalid capacity");
+        }
+        this.retention = retention;
+        this.keys = new int[capacity];
+        this.expiries = new long[capacity];
+        final int slotCount = Integer.highestOneBit(capacity) << 2;
+        this.slots = new int[slotCount];
+        this.slotShift = Integer.numberOfLeadingZeros(slotCount - 1);
+    }
+
+    // Returns false if the pair has been seen within the retention time, otherwise remembers it and returns true.
+    public boolean add(int originatorAddress, int requestId, long now) {
+        evictExpired(now);
+        final int key = key(originatorAddress, requestId);
+        final int mask = slots.length - 1;
+        int slot = slotOf(key);
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slots[slot] - 1] == key) {
+                return false;
+            }
+        }
+        if (count == keys.length) {
+            evictOldest();
+            slot = slotOf(key);                                                                                                 // The eviction may have shifted the free slot
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+        }
+        final int position = (head + count) % keys.length;
+        keys[position] = key;
+        expiries[position] = now + retention;
+        slots[slot] = position + 1;
+        count++;
+        return true;
+    }
+
+    public boolean contains(int originatorAddress, int requestId, long now) {
+        evictExpired(now);
+        final int key = key(originatorAddress, requestId);
+        final int mask = slots.length - 1;
+        for (int slot = slotOf(key); slots[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slots[slot] - 1] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private void evictExpired(long now) {
+        while (count > 0 && expiries[head] <= now) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        final int key = keys[head];
+        final int mask = slots.length - 1;
+        int hole = slotOf(key);
+        while (slots[hole] - 1 != head) {
+            hole = (hole + 1) & mask;
+        }
+        // Backward shift deletion keeps probe sequences intact without tombstones
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int home = slotOf(keys[slots[slot] - 1]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+        head = (head + 1) % keys.length;
+        count--;
+    }
+
+    private int slotOf(int key) {
+        return (key * 0x9E3779B9) >>> slotShift;
+    }
+
+    static int key(int originatorAddress, int requestId) {
+        return originatorAddress << 6 | requestId;                                                                              // 16 bit address and 6 bit request id
+    }
+}
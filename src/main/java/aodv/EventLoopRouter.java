@@ -0,0 +1,244 @@
+package aodv;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Runs an AodvRouterImpl on a single thread that owns all routing state. Inbound frames, application data and timer
+// expiries from any thread are queued and drained in order by that thread, so the router itself needs no locks.
+// Callbacks are invoked on the event loop thread.
+public class EventLoopRouter implements AodvRouter, AutoCloseable {
+
+    private final Queue<Runnable> events = new ConcurrentLinkedQueue<>();
+
+    private final AodvRouterImpl router;
+
+    private final RoutingCallback routingCallback;
+
+    private final ScheduledExecutorService timerExecutor;
+
+    private final Thread thread;
+
+    private volatile boolean running = true;
+
+    private volatile boolean parked = false;
+
+    private volatile int address;
+
+    public EventLoopRouter(RoutingCallback routingCallback, Clock clock) {
+        this.routingCallback = routingCallback;
+        this.timerExecutor = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "aodv-timer"));
+        this.router = new AodvRouterImpl(routingCallback, clock, this::schedule);
+        this.router.getStats().setQueuedEvents(this::getQueuedEvents);
+        this.thread = daemon(this::run, "aodv-event-loop");
+        this.thread.start();
+    }
+
+    @Override
+    public int getAddress() {
+        return address;
+    }
+
+    @Override
+    public void setAddress(int address) {
+        this.address = address;
+        post(() -> router.setAddress(address));
+    }
+
+    // Views point into frame buffers the caller reuses, so every message is detached before it is queued.
+    @Override
+    public void processRouteRequest(RouteRequestMessage request, int prevHop) {
+        final RouteRequest detached = request.toRouteRequest();
+        post(() -> router.processRouteRequest(detached, prevHop));
+    }
+
+    @Override
+    public void processRouteReply(RouteReplyMessage reply, int prevHop) {
+        final RouteReply detached = reply.toRouteReply();
+        post(() -> router.processRouteReply(detached, prevHop));
+    }
+
+    @Override
+    public void processRouteError(RouteErrorMessage error, int prevHop) {
+        final RouteError detached = error.toRouteError();
+        post(() -> router.processRouteError(detached, prevHop));
+    }
+
+    @Override
+    public void processLinkFailure(int nextHop) {
+        post(() -> router.processLinkFailure(nextHop));
+    }
+
+    @Override
+    public void processLinkQuality(int neighbor, int rssi) {
+        post(() -> router.processLinkQuality(neighbor, rssi));
+    }
+
+    @Override
+    public void processUserData(UserDataMessage data) {
+        final UserData detached = data.toUserData();
+        post(() -> router.processUserData(detached));
+    }
+
+    @Override
+    public void processUserData(UserDataMessage data, int prevHop) {
+        final UserData detached = data.toUserData();
+        post(() -> router.processUserData(detached, prevHop));
+    }
+
+    @Override
+    public void processUserData(List<? extends UserDataMessage> data) {
+        final List<UserData> detached = new ArrayList<>(data.size());
+        for (UserDataMessage message : data) {
+            detached.add(message.toUserData());
+        }
+        post(() -> router.processUserData(detached));                                                                           // One event, so no other data is interleaved
+    }
+
+    @Override
+    public void printRoutes() {
+        post(router::printRoutes);
+    }
+
+    // Taken on the event loop, so the copy is consistent.
+    public CompletableFuture<RouteSnapshot> snapshot() {
+        return query(router::snapshot);
+    }
+
+    public CompletableFuture<Integer> restore(RouteSnapshot snapshot) {
+        return query(() -> router.restore(snapshot));
+    }
+
+    public RouterStats getStats() {
+        return router.getStats();
+    }
+
+    public int getQueuedEvents() {
+        return events.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        timerExecutor.shutdownNow();
+    }
+
+    void post(Runnable event) {
+        if (!running) {
+            throw new RuntimeException("Router is closed");
+        }
+        events.offer(event);
+        if (!running && events.remove(event)) {                                                                                 // Closed meanwhile and the loop may have left already, nobody would run the event
+            throw new RuntimeException("Router is closed");
+        }
+        if (parked) {
+            LockSupport.unpark(thread);                                                                                         // Only wake the loop if it is idle, a busy loop picks the event up anyway
+        }
+    }
+
+    // The future fails instead of never completing if the router is closed before the query has run.
+    private <T> CompletableFuture<T> query(Supplier<T> supplier) {
+        final Query<T> query = new Query<>(supplier);
+        try {
+            post(query);
+        } catch (RuntimeException e) {
+            query.future.completeExceptionally(e);
+        }
+        return query.future;
+    }
+
+    private Scheduler.Cancellable schedule(Runnable task, long delayMillis) {
+        final Timer timer = new Timer(task);
+        timer.future = timerExecutor.schedule(() -> post(timer), delayMillis, TimeUnit.MILLISECONDS);
+        return timer;
+    }
+
+    private void run() {
+        while (running) {
+            Runnable event = events.poll();
+            if (event == null) {
+                parked = true;
+                if (events.isEmpty() && running) {                                                                              // Re-check after announcing the park, a producer may have missed it
+                    LockSupport.park(this);
+                }
+                parked = false;
+                continue;
+            }
+            for (; event != null; event = events.poll()) {                                                                      // Drain everything queued meanwhile in one go
+                try {
+                    event.run();
+                } catch (RuntimeException e) {
+                    routingCallback.onError("Failed to process event: " + e.getMessage());                                      // One malformed frame must not stop the loop
+                }
+            }
+        }
+        for (Runnable event = events.poll(); event != null; event = events.poll()) {                                            // Dropped at close, waiting queries fail instead of blocking their callers
+            if (event instanceof Query) {
+                ((Query<?>)event).future.completeExceptionally(new RuntimeException("Router is closed"));
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        final Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static class Query<T> implements Runnable {
+
+        private final Supplier<T> supplier;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private Query(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);                                                                                // The caller waits for the result, not the error callback
+            }
+        }
+    }
+
+    // Cancellation happens on the event loop, so a timer that has already been queued is skipped there.
+    private static class Timer implements Scheduler.Cancellable, Runnable {
+
+        private final Runnable task;
+
+        private ScheduledFuture<?> future;
+
+        private boolean cancelled = false;
+
+        private Timer(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            if (!cancelled) {
+                task.run();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            future.cancel(false);
+        }
+    }
+}
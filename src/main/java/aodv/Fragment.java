@@ -0,0 +1,71 @@
+package aodv;
+
+import java.nio.ByteBuffer;
+
+import static aodv.Utils.*;
+
+// Header of a message fragment, carried at the start of the user data of a UD frame of its own type:
+//
+//   block 1: source address (16 bits) | reserved (8 bits)
+//   block 2: message id (8 bits) | fragment index (8 bits) | fragment count (8 bits)
+//
+// Fragments are routed like any UD frame, only the type tells them apart from plain payloads.
+public final class Fragment {
+
+    static final int TYPE = 5;
+
+    public static final int HEADER_LENGTH = 6;
+
+    public static final int MAX_FRAGMENTS = 255;
+
+    private Fragment() {
+    }
+
+    public static byte[] encode(int sourceAddress, int messageId, int index, int count, byte[] message, int offset, int length) {
+
+        validate(sourceAddress, 0, MAX_16_BITS);
+        validate(messageId, 0, MAX_8_BITS);
+        validate(count, 1, MAX_FRAGMENTS);
+        validate(index, 0, count - 1);
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + length);
+
+        int block1 = 0;
+        // source address - 16 bits
+        block1 |= sourceAddress << 8;
+        putInt24(buffer, block1);
+
+        int block2 = 0;
+        // message id - 8 bits
+        block2 |= messageId << 16;
+        // fragment index - 8 bits
+        block2 |= index << 8;
+        // fragment count - 8 bits
+        block2 |= count;
+        putInt24(buffer, block2);
+
+        buffer.put(message, offset, length);
+
+        return buffer.array();
+    }
+
+    public static boolean isFragment(UserDataMessage data) {
+        return data.isFragment() && data.getDataLength() >= HEADER_LENGTH;
+    }
+
+    public static int getSourceAddress(UserDataMessage data) {
+        return ((data.getData(0) & 0xFF) << 8) | (data.getData(1) & 0xFF);
+    }
+
+    public static int getMessageId(UserDataMessage data) {
+        return data.getData(3) & 0xFF;
+    }
+
+    public static int getIndex(UserDataMessage data) {
+        return data.getData(4) & 0xFF;
+    }
+
+    public static int getCount(UserDataMessage data) {
+        return data.getData(5) & 0xFF;
+    }
+}
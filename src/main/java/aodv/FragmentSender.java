@@ -0,0 +1,76 @@
+package aodv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static aodv.Utils.*;
+
+// Splits application messages that don't fit into one UD frame into numbered fragments. All fragments of a message
+// are handed to the router at once, so they share one route lookup and leave back to back. Messages that fit are sent
+// as plain UD frames.
+public class FragmentSender {
+
+    private final AodvRouter router;
+
+    private final int fragmentDataLength;
+
+    private int messageId = 0;
+
+    public FragmentSender(AodvRouter router) {
+        this(router, FRAGMENT_DATA_LENGTH);
+    }
+
+    public FragmentSender(AodvRouter router, int fragmentDataLength) {
+        this.router = router;
+        this.fragmentDataLength = validate(fragmentDataLength, 1, MAX_16_BITS);
+    }
+
+    // The fragment data that fills a frame of the given length, e.g. 241 bytes for raw frames of 250 bytes and 177 bytes
+    // for the 186 bytes that a Base64 payload of 250 characters holds.
+    public static int dataLengthFor(int maxFrameLength) {
+        return maxFrameLength - UserData.HEADER_LENGTH - Fragment.HEADER_LENGTH;
+    }
+
+    // Returns the number of frames the message was split into.
+    public int send(int destinationAddress, byte[] message) {
+        return send(split(destinationAddress, message));
+    }
+
+    // Sends frames returned by split(), e.g. after they were captured.
+    public int send(List<UserData> frames) {
+        if (frames.size() == 1) {
+            router.processUserData(frames.get(0));
+        } else {
+            router.processUserData(frames);
+        }
+        return frames.size();
+    }
+
+    public List<UserData> split(int destinationAddress, byte[] message) {
+
+        if (message.length <= Fragment.HEADER_LENGTH + fragmentDataLength) {                                                    // Makes a frame no longer than a full fragment
+            return Collections.singletonList(new UserData(destinationAddress, message));                                        // No header needed, the receiver takes it as a plain payload whatever its first byte
+        }
+
+        final int count = Math.max(1, (message.length + fragmentDataLength - 1) / fragmentDataLength);
+        if (count > Fragment.MAX_FRAGMENTS) {
+            throw new RuntimeException("Failed to fragment message: Too long (" + message.length + ")");
+        }
+
+        final int id = nextMessageId();
+        final int sourceAddress = router.getAddress();
+        final List<UserData> fragments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int offset = i * fragmentDataLength;
+            final int length = Math.min(fragmentDataLength, message.length - offset);
+            fragments.add(new UserData(destinationAddress, Fragment.encode(sourceAddress, id, i, count, message, offset, length), true));
+        }
+        return fragments;
+    }
+
+    private synchronized int nextMessageId() {
+        messageId = (messageId + 1) & MAX_8_BITS;
+        return messageId;
+    }
+}
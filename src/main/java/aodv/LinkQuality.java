@@ -0,0 +1,81 @@
+package aodv;
+
+import static aodv.Utils.*;
+
+// Estimates the quality of the links to the neighbors from the RSSI of the frames received from them, smoothed by an
+// exponentially weighted moving average. A link at or above GOOD_LINK_RSSI costs 1, every LINK_COST_STEP dB below adds
+// 1 up to MAX_LINK_COST, so a path over a marginal link that needs retries costs as much as a few hops over strong ones.
+// Neighbors without a sample cost 1, which makes the metric a plain hop count until the first RSSI arrives.
+public class LinkQuality {
+
+    public static final int UNKNOWN_RSSI = Integer.MIN_VALUE;
+
+    private final int[] neighbors;
+
+    private final int[] averages;       // dBm * 16, keeps the fractions of the average
+
+    private final long[] updatedAt;
+
+    private int count = 0;
+
+    public LinkQuality(int capacity) {
+        if (capacity < 1) {
+            throw new RuntimeException("Invalid capacity");
+        }
+        this.neighbors = new int[capacity];
+        this.averages = new int[capacity];
+        this.updatedAt = new long[capacity];
+    }
+
+    // A linear scan, there are only a few dozen neighbors within radio range.
+    public void update(int neighbor, int rssi, long now) {
+        int index = indexOf(neighbor);
+        if (index < 0) {
+            index = count < neighbors.length ? count++ : leastRecentlyUpdated();                                                // The neighbor heard from the longest time ago has most likely left
+            neighbors[index] = neighbor;
+            averages[index] = rssi * 16;
+        } else {
+            averages[index] += (rssi * 16 - averages[index]) / RSSI_AVERAGING_WEIGHT;
+        }
+        updatedAt[index] = now;
+    }
+
+    public int getRssi(int neighbor) {
+        final int index = indexOf(neighbor);
+        return index < 0 ? UNKNOWN_RSSI : Math.round(averages[index] / 16f);
+    }
+
+    public int getCost(int neighbor) {
+        return costOf(getRssi(neighbor));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    static int costOf(int rssi) {
+        if (rssi == UNKNOWN_RSSI || rssi >= GOOD_LINK_RSSI) {
+            return 1;
+        }
+        return Math.min(1 + (GOOD_LINK_RSSI - rssi + LINK_COST_STEP - 1) / LINK_COST_STEP, MAX_LINK_COST);
+    }
+
+    private int indexOf(int neighbor) {
+        for (int i = 0; i < count; i++) {
+            if (neighbors[i] == neighbor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int leastRecentlyUpdated() {
+        int oldest = 0;
+        for (int i = 1; i < count; i++) {
+            if (updatedAt[i] < updatedAt[oldest]) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+}
@@ -1,9 +1,19 @@
 package aodv;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public interface Message {
 
-    byte[] serialize() throws IOException;
+    int getEncodedLength();
+
+    // Writes the message at the buffer's position and returns the number of bytes written.
+    int encodeTo(ByteBuffer buffer);
+
+    default byte[] serialize() throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(getEncodedLength());
+        encodeTo(buffer);
+        return buffer.array();
+    }
 
 }
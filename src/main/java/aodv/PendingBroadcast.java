@@ -0,0 +1,33 @@
+package aodv;
+
+// A forwarded RREQ waiting for its jitter to pass, together with the number of copies heard meanwhile.
+class PendingBroadcast {
+
+    private final RouteRequest request;
+
+    private int copies = 1;
+
+    private Scheduler.Cancellable timer;
+
+    PendingBroadcast(RouteRequest request) {
+        this.request = request;
+    }
+
+    RouteRequest getRequest() {
+        return request;
+    }
+
+    int addCopy() {
+        return ++copies;
+    }
+
+    void setTimer(Scheduler.Cancellable timer) {
+        this.timer = timer;
+    }
+
+    void cancelTimer() {
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+}
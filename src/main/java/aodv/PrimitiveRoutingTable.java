@@ -0,0 +1,457 @@
+package aodv;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static aodv.Utils.*;
+
+// Open addressing index over struct-of-arrays entries, lookups neither box addresses nor allocate.
+public class PrimitiveRoutingTable implements RoutingTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int FLAG_IN_USE = 1;
+
+    private static final int FLAG_SEQUENCE_VALID = 1 << 1;
+
+    private int[] slots;                // entry + 1 per slot, 0 marks an empty slot
+
+    private int slotShift;
+
+    private char[] destinations;
+
+    private byte[] sequences;
+
+    private byte[] flags;
+
+    private byte[] hopCounts;
+
+    private byte[] metrics;
+
+    private char[] nextHops;
+
+    private long[] lifetimes;
+
+    private int[][] precursors;
+
+    private int[] precursorCounts;
+
+    private int[][] alternates;         // next hop << 8 | metric, ordered by metric
+
+    private long[][] alternateLifetimes;
+
+    private int[] alternateCounts;
+
+    private int[] freeEntries;
+
+    private int freeCount;
+
+    private int usedEntries;
+
+    private int size;
+
+    public PrimitiveRoutingTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PrimitiveRoutingTable(int expectedRoutes) {
+        final int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, expectedRoutes - 1)) << 1);
+        destinations = new char[capacity];
+        sequences = new byte[capacity];
+        flags = new byte[capacity];
+        hopCounts = new byte[capacity];
+        metrics = new byte[capacity];
+        nextHops = new char[capacity];
+        lifetimes = new long[capacity];
+        precursors = new int[capacity][];
+        precursorCounts = new int[capacity];
+        alternates = new int[capacity][];
+        alternateLifetimes = new long[capacity][];
+        alternateCounts = new int[capacity];
+        freeEntries = new int[capacity];
+        resize(capacity * 2);
+    }
+
+    @Override
+    public int find(int destinationAddress) {
+        final int mask = slots.length - 1;
+        for (int slot = slotOf(destinationAddress); ; slot = (slot + 1) & mask) {
+            final int entry = slots[slot] - 1;
+            if (entry < 0) {
+                return NOT_FOUND;
+            }
+            if (destinations[entry] == destinationAddress) {
+                return entry;
+            }
+        }
+    }
+
+    @Override
+    public int findOrCreate(int destinationAddress) {
+        validate(destinationAddress, 0, MAX_16_BITS);
+        final int mask = slots.length - 1;
+        int slot = slotOf(destinationAddress);
+        for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int entry = slots[slot] - 1;
+            if (destinations[entry] == destinationAddress) {
+                return entry;
+            }
+        }
+        final int entry = allocateEntry();
+        destinations[entry] = (char)destinationAddress;
+        flags[entry] = FLAG_IN_USE;
+        slots[slot] = entry + 1;
+        if (++size * 2 > slots.length) {
+            resize(slots.length * 2);
+        }
+        return entry;
+    }
+
+    @Override
+    public boolean remove(int destinationAddress) {
+        final int mask = slots.length - 1;
+        int hole = slotOf(destinationAddress);
+        for (; ; hole = (hole + 1) & mask) {
+            if (slots[hole] == 0) {
+                return false;
+            }
+            if (destinations[slots[hole] - 1] == destinationAddress) {
+                break;
+            }
+        }
+        final int entry = slots[hole] - 1;
+        // Backward shift deletion keeps probe sequences intact without tombstones
+        for (int slot = (hole + 1) & mask; slots[slot] != 0; slot = (slot + 1) & mask) {
+            final int home = slotOf(destinations[slots[slot] - 1]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                slots[hole] = slots[slot];
+                hole = slot;
+            }
+        }
+        slots[hole] = 0;
+        releaseEntry(entry);
+        size--;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void forEach(IntConsumer entryConsumer) {
+        for (int entry = 0; entry < usedEntries; entry++) {
+            if ((flags[entry] & FLAG_IN_USE) != 0) {
+                entryConsumer.accept(entry);
+            }
+        }
+    }
+
+    @Override
+    public boolean compact() {
+        final int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size)) << 2);
+        if (capacity >= destinations.length) {                                                                                  // Only shrink once three quarters of the storage are unused
+            return false;
+        }
+        int target = 0;
+        for (int entry = 0; entry < usedEntries; entry++) {
+            if ((flags[entry] & FLAG_IN_USE) != 0) {
+                destinations[target] = destinations[entry];
+                sequences[target] = sequences[entry];
+                flags[target] = flags[entry];
+                hopCounts[target] = hopCounts[entry];
+                metrics[target] = metrics[entry];
+                nextHops[target] = nextHops[entry];
+                lifetimes[target] = lifetimes[entry];
+                precursors[target] = precursors[entry];
+                precursorCounts[target] = precursorCounts[entry];
+                alternates[target] = alternates[entry];
+                alternateLifetimes[target] = alternateLifetimes[entry];
+                alternateCounts[target] = alternateCounts[entry];
+                target++;
+            }
+        }
+        usedEntries = target;
+        freeCount = 0;
+        setCapacity(capacity);
+        Arrays.fill(flags, target, capacity, (byte)0);                                                                          // Entries behind the moved ones are fresh again
+        Arrays.fill(sequences, target, capacity, (byte)0);
+        Arrays.fill(hopCounts, target, capacity, (byte)0);
+        Arrays.fill(metrics, target, capacity, (byte)0);
+        Arrays.fill(nextHops, target, capacity, (char)0);
+        Arrays.fill(lifetimes, target, capacity, 0);
+        Arrays.fill(precursors, target, capacity, null);
+        Arrays.fill(precursorCounts, target, capacity, 0);
+        Arrays.fill(alternates, target, capacity, null);
+        Arrays.fill(alternateLifetimes, target, capacity, null);
+        Arrays.fill(alternateCounts, target, capacity, 0);
+        resize(capacity * 2);
+        return true;
+    }
+
+    @Override
+    public int getDestinationAddress(int entry) {
+        return destinations[entry];
+    }
+
+    @Override
+    public int getDestinationSequence(int entry) {
+        return sequences[entry] & 0xFF;
+    }
+
+    @Override
+    public void setDestinationSequence(int entry, int destinationSequence) {
+        sequences[entry] = (byte)validate(destinationSequence, 0, MAX_8_BITS);
+    }
+
+    @Override
+    public boolean isDestinationSequenceValid(int entry) {
+        return (flags[entry] & FLAG_SEQUENCE_VALID) != 0;
+    }
+
+    @Override
+    public void setDestinationSequenceValid(int entry, boolean destinationSequenceValid) {
+        flags[entry] = (byte)(destinationSequenceValid ? flags[entry] | FLAG_SEQUENCE_VALID : flags[entry] & ~FLAG_SEQUENCE_VALID);
+    }
+
+    @Override
+    public int getHopCount(int entry) {
+        return hopCounts[entry] & 0xFF;
+    }
+
+    @Override
+    public void setHopCount(int entry, int hopCount) {
+        hopCounts[entry] = (byte)validate(hopCount, 0, MAX_8_BITS);
+    }
+
+    @Override
+    public int getMetric(int entry) {
+        return metrics[entry] & 0xFF;
+    }
+
+    @Override
+    public void setMetric(int entry, int metric) {
+        metrics[entry] = (byte)validate(metric, 0, MAX_8_BITS);
+    }
+
+    @Override
+    public int getNextHop(int entry) {
+        return nextHops[entry];
+    }
+
+    @Override
+    public void setNextHop(int entry, int nextHop) {
+        nextHops[entry] = (char)validate(nextHop, 0, MAX_16_BITS);
+    }
+
+    @Override
+    public long getLifetime(int entry) {
+        return lifetimes[entry];
+    }
+
+    @Override
+    public void setLifetime(int entry, long lifetime) {
+        lifetimes[entry] = lifetime;
+    }
+
+    @Override
+    public void addPrecursor(int entry, int precursor) {
+        final int count = precursorCounts[entry];
+        int[] list = precursors[entry];
+        for (int i = 0; i < count; i++) {
+            if (list[i] == precursor) {
+                return;
+            }
+        }
+        if (list == null) {
+            list = precursors[entry] = new int[4];
+        } else if (count == list.length) {
+            list = precursors[entry] = Arrays.copyOf(list, count * 2);
+        }
+        list[count] = precursor;
+        precursorCounts[entry] = count + 1;
+    }
+
+    @Override
+    public int getPrecursorCount(int entry) {
+        return precursorCounts[entry];
+    }
+
+    @Override
+    public int getPrecursor(int entry, int index) {
+        if (index >= precursorCounts[entry]) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return precursors[entry][index];
+    }
+
+    @Override
+    public boolean addAlternate(int entry, int nextHop, int metric, long lifetime) {
+        validate(nextHop, 0, MAX_16_BITS);
+        validate(metric, 0, MAX_8_BITS);
+        int count = alternateCounts[entry];
+        int[] list = alternates[entry];
+        for (int i = 0; i < count; i++) {
+            if (list[i] >>> 8 == nextHop) {
+                removeAlternate(entry, i);                                                                                      // Inserted again with the new metric and lifetime
+                count--;
+                break;
+            }
+        }
+        if (list == null) {
+            list = alternates[entry] = new int[MAX_ALTERNATE_HOPS];
+            alternateLifetimes[entry] = new long[MAX_ALTERNATE_HOPS];
+        }
+        final long[] lifetimes = alternateLifetimes[entry];
+        int index = count;
+        while (index > 0 && (list[index - 1] & 0xFF) > metric) {
+            index--;
+        }
+        if (index == MAX_ALTERNATE_HOPS) {                                                                                      // Not better than any of a full list
+            return false;
+        }
+        final int moved = Math.min(count, MAX_ALTERNATE_HOPS - 1) - index;
+        System.arraycopy(list, index, list, index + 1, moved);
+        System.arraycopy(lifetimes, index, lifetimes, index + 1, moved);
+        list[index] = nextHop << 8 | metric;
+        lifetimes[index] = lifetime;
+        alternateCounts[entry] = Math.min(count + 1, MAX_ALTERNATE_HOPS);
+        return true;
+    }
+
+    @Override
+    public int getAlternateCount(int entry) {
+        return alternateCounts[entry];
+    }
+
+    @Override
+    public int getAlternateNextHop(int entry, int index) {
+        if (index >= alternateCounts[entry]) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return alternates[entry][index] >>> 8;
+    }
+
+    @Override
+    public int getAlternateMetric(int entry, int index) {
+        if (index >= alternateCounts[entry]) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return alternates[entry][index] & 0xFF;
+    }
+
+    @Override
+    public long getAlternateLifetime(int entry, int index) {
+        if (index >= alternateCounts[entry]) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return alternateLifetimes[entry][index];
+    }
+
+    @Override
+    public void removeAlternate(int entry, int index) {
+        final int count = alternateCounts[entry];
+        if (index >= count) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        System.arraycopy(alternates[entry], index + 1, alternates[entry], index, count - index - 1);
+        System.arraycopy(alternateLifetimes[entry], index + 1, alternateLifetimes[entry], index, count - index - 1);
+        alternateCounts[entry] = count - 1;
+    }
+
+    @Override
+    public void clearAlternates(int entry) {
+        alternateCounts[entry] = 0;
+    }
+
+    @Override
+    public Route getRoute(int destinationAddress) {
+        final int entry = find(destinationAddress);
+        if (entry == NOT_FOUND) {
+            return null;
+        }
+        final Route route = new Route(destinationAddress);
+        route.setDestinationSequence(getDestinationSequence(entry));
+        route.setDestinationSequenceValid(isDestinationSequenceValid(entry));
+        route.setHopCount(getHopCount(entry));
+        route.setMetric(getMetric(entry));
+        route.setNextHop(getNextHop(entry));
+        route.setLifetime(getLifetime(entry));
+        for (int i = 0; i < precursorCounts[entry]; i++) {
+            route.addPrecursor(precursors[entry][i]);
+        }
+        return route;
+    }
+
+    @Override
+    public void putRoute(Route route) {
+        final int entry = findOrCreate(route.getDestinationAddress());
+        setDestinationSequence(entry, route.getDestinationSequence());
+        setDestinationSequenceValid(entry, route.isDestinationSequenceValid());
+        setHopCount(entry, route.getHopCount());
+        setMetric(entry, route.getMetric());
+        setNextHop(entry, route.getNextHop());
+        setLifetime(entry, route.getLifetime());
+        precursorCounts[entry] = 0;
+        alternateCounts[entry] = 0;
+        route.getPrecursors().forEach(p -> addPrecursor(entry, p));
+    }
+
+    private int slotOf(int destinationAddress) {
+        return (destinationAddress * 0x9E3779B9) >>> slotShift;                                                                 // Fibonacci hashing spreads sequential addresses over the slots
+    }
+
+    private int allocateEntry() {
+        if (freeCount > 0) {
+            return freeEntries[--freeCount];
+        }
+        if (usedEntries == destinations.length) {
+            setCapacity(destinations.length * 2);
+        }
+        return usedEntries++;
+    }
+
+    private void releaseEntry(int entry) {
+        flags[entry] = 0;
+        sequences[entry] = 0;
+        hopCounts[entry] = 0;
+        metrics[entry] = 0;
+        nextHops[entry] = 0;
+        lifetimes[entry] = 0;
+        precursorCounts[entry] = 0;
+        alternateCounts[entry] = 0;
+        freeEntries[freeCount++] = entry;
+    }
+
+    private void setCapacity(int capacity) {
+        destinations = Arrays.copyOf(destinations, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        hopCounts = Arrays.copyOf(hopCounts, capacity);
+        metrics = Arrays.copyOf(metrics, capacity);
+        nextHops = Arrays.copyOf(nextHops, capacity);
+        lifetimes = Arrays.copyOf(lifetimes, capacity);
+        precursors = Arrays.copyOf(precursors, capacity);
+        precursorCounts = Arrays.copyOf(precursorCounts, capacity);
+        alternates = Arrays.copyOf(alternates, capacity);
+        alternateLifetimes = Arrays.copyOf(alternateLifetimes, capacity);
+        alternateCounts = Arrays.copyOf(alternateCounts, capacity);
+        freeEntries = Arrays.copyOf(freeEntries, capacity);
+    }
+
+    private void resize(int slotCount) {
+        slots = new int[slotCount];
+        slotShift = Integer.numberOfLeadingZeros(slotCount - 1);
+        final int mask = slotCount - 1;
+        for (int entry = 0; entry < usedEntries; entry++) {
+            if ((flags[entry] & FLAG_IN_USE) != 0) {
+                int slot = slotOf(destinations[entry]);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = entry + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package aodv;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static aodv.Utils.*;
+
+// Reassembles fragmented messages at the destination as a stream: fragments are handed to the listener in order as
+// soon as they arrive, only fragments that overtook a missing one are buffered. Both the number of messages in
+// reassembly and the buffered fragments per message are bounded, and a message that makes no progress within the
+// timeout is aborted. When full, the message that made no progress for the longest time is aborted first.
+public class Reassembler {
+
+    private final Scheduler scheduler;
+
+    private final Listener listener;
+
+    private final int capacity;
+
+    private final int maxBufferedFragments;
+
+    private final long timeoutMillis;
+
+    private final LinkedHashMap<Integer, Reassembly> reassemblies = new LinkedHashMap<>(16, 0.75f, true);                       // Access order, the eldest entry made no progress for the longest time
+
+    private byte[] scratch = new byte[FRAGMENT_DATA_LENGTH];
+
+    public Reassembler(Scheduler scheduler, Listener listener) {
+        this(scheduler, listener, REASSEMBLY_CAPACITY, REASSEMBLY_BUFFERED_FRAGMENTS, REASSEMBLY_TIMEOUT);
+    }
+
+    public Reassembler(Scheduler scheduler, Listener listener, int capacity, int maxBufferedFragments, long timeoutMillis) {
+        this.scheduler = scheduler;
+        this.listener = listener;
+        this.capacity = capacity;
+        this.maxBufferedFragments = maxBufferedFragments;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    // Returns false if the data is no fragment, i.e. a plain payload.
+    public synchronized boolean accept(UserDataMessage data) {
+
+        if (!Fragment.isFragment(data)) {
+            return false;
+        }
+
+        final int sourceAddress = Fragment.getSourceAddress(data);
+        final int messageId = Fragment.getMessageId(data);
+        final int index = Fragment.getIndex(data);
+        final int count = Fragment.getCount(data);
+        final int key = sourceAddress << 8 | messageId;
+
+        Reassembly reassembly = reassemblies.get(key);
+        if (reassembly != null && reassembly.count != count) {
+            abort(reassembly, "Fragment count changed");                                                                        // The message id wrapped around onto a stale reassembly
+            reassembly = null;
+        }
+        if (reassembly == null) {
+            if (count == 0 || index >= count) {
+                return true;
+            }
+            if (reassemblies.size() >= capacity) {
+                abort(reassemblies.values().iterator().next(), "Reassembly capacity exceeded");
+            }
+            reassembly = new Reassembly(key, sourceAddress, messageId, count);
+            reassemblies.put(key, reassembly);
+        }
+
+        if (index == reassembly.next) {
+            final int length = data.getDataLength() - Fragment.HEADER_LENGTH;
+            if (length > scratch.length) {
+                scratch = new byte[length];
+            }
+            for (int i = 0; i < length; i++) {
+                scratch[i] = data.getData(Fragment.HEADER_LENGTH + i);
+            }
+            deliver(reassembly, scratch, length);
+            byte[] buffered;
+            while ((buffered = reassembly.buffered.remove(reassembly.next)) != null) {
+                deliver(reassembly, buffered, buffered.length);
+            }
+            if (reassembly.next == reassembly.count) {
+                if (reassembly.timer != null) {
+                    reassembly.timer.cancel();
+                }
+                reassemblies.remove(key);
+                listener.onMessageComplete(sourceAddress, messageId);
+                return true;
+            }
+        } else if (index > reassembly.next && index < reassembly.count && !reassembly.buffered.containsKey(index)) {
+            if (reassembly.buffered.size() >= maxBufferedFragments) {
+                abort(reassembly, "Reassembly buffer full");
+                return true;
+            }
+            final byte[] buffered = new byte[data.getDataLength() - Fragment.HEADER_LENGTH];
+            for (int i = 0; i < buffered.length; i++) {
+                buffered[i] = data.getData(Fragment.HEADER_LENGTH + i);
+            }
+            reassembly.buffered.put(index, buffered);
+        }                                                                                                                       // Duplicates of handed out fragments are ignored
+
+        restartTimer(reassembly);
+        return true;
+    }
+
+    public synchronized int getReassemblies() {
+        return reassemblies.size();
+    }
+
+    public synchronized void clear() {
+        for (Iterator<Reassembly> it = reassemblies.values().iterator(); it.hasNext(); ) {
+            final Reassembly reassembly = it.next();
+            if (reassembly.timer != null) {
+                reassembly.timer.cancel();
+            }
+            it.remove();
+        }
+    }
+
+    private void deliver(Reassembly reassembly, byte[] data, int length) {
+        listener.onFragment(reassembly.sourceAddress, reassembly.messageId, reassembly.next, data, 0, length);
+        reassembly.next++;
+    }
+
+    private void restartTimer(Reassembly reassembly) {
+        if (reassembly.timer != null) {
+            reassembly.timer.cancel();
+        }
+        reassembly.timer = scheduler.schedule(() -> onTimeout(reassembly), timeoutMillis);
+    }
+
+    private synchronized void onTimeout(Reassembly reassembly) {
+        if (reassemblies.get(reassembly.key) == reassembly) {
+            abort(reassembly, "Reassembly timed out");
+        }
+    }
+
+    private void abort(Reassembly reassembly, String reason) {
+        if (reassembly.timer != null) {
+            reassembly.timer.cancel();
+        }
+        reassemblies.remove(reassembly.key);
+        listener.onMessageAborted(reassembly.sourceAddress, reassembly.messageId, reason);
+    }
+
+    // Called with the lock held, the data is only valid until the call returns.
+    public interface Listener {
+
+        void onFragment(int sourceAddress, int messageId, int index, byte[] data, int offset, int length);
+
+        void onMessageComplete(int sourceAddress, int messageId);
+
+        void onMessageAborted(int sourceAddress, int messageId, String reason);
+    }
+
+    private static class Reassembly {
+
+        private final int key;
+
+        private final int sourceAddress;
+
+        private final int messageId;
+
+        private final int count;
+
+        private final Map<Integer, byte[]> buffered = new HashMap<>();
+
+        private int next = 0;
+
+        private Scheduler.Cancellable timer;
+
+        private Reassembly(int key, int sourceAddress, int messageId, int count) {
+            this.key = key;
+            this.sourceAddress = sourceAddress;
+            this.messageId = messageId;
+            this.count = count;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -18,6 +19,8 @@ public class Route {
 
     private int hopCount;
 
+    private int metric = -1;            // below 0 while it is not set, the hop count stands in for it
+
     private int nextHop;
 
     private long lifetime;
@@ -56,6 +59,14 @@ public class Route {
         this.hopCount = hopCount;
     }
 
+    public int getMetric() {
+        return metric < 0 ? hopCount : metric;
+    }
+
+    public void setMetric(int metric) {
+        this.metric = metric;
+    }
+
     public int getNextHop() {
         return nextHop;
     }
@@ -76,6 +87,10 @@ public class Route {
         precursors.add(precursor);
     }
 
+    public Set<Integer> getPrecursors() {
+        return Collections.unmodifiableSet(precursors);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -90,6 +105,7 @@ public class Route {
                 .append(destinationSequence, route.destinationSequence)
                 .append(destinationSequenceValid, route.destinationSequenceValid)
                 .append(hopCount, route.hopCount)
+                .append(getMetric(), route.getMetric())
                 .append(nextHop, route.nextHop)
                 .append(lifetime, route.lifetime)
                 .append(precursors, route.precursors)
@@ -103,6 +119,7 @@ public class Route {
                 .append(destinationSequence)
                 .append(destinationSequenceValid)
                 .append(hopCount)
+                .append(getMetric())
                 .append(nextHop)
                 .append(lifetime)
                 .append(precursors)
@@ -116,6 +133,7 @@ public class Route {
                 .append("destinationSequence", destinationSequence)
                 .append("destinationSequenceValid", destinationSequenceValid)
                 .append("hopCount", hopCount)
+                .append("metric", getMetric())
                 .append("nextHop", nextHop)
                 .append("lifetime", lifetime)
                 .append("precursors", precursors)
@@ -0,0 +1,109 @@
+package aodv;
+
+import java.util.ArrayDeque;
+
+import static aodv.Utils.PENDING_PACKETS_CAPACITY;
+
+// A route discovery in flight for one destination and the user data waiting for its outcome.
+class RouteDiscovery {
+
+    private final ArrayDeque<Pending> packets = new ArrayDeque<>();
+
+    private final long startedAt;
+
+    private final RoutingEvents.RouteDiscoveryEvent event = new RoutingEvents.RouteDiscoveryEvent();
+
+    private int requests = 0;
+
+    private int retries = 0;
+
+    private int timeToLive;
+
+    private Scheduler.Cancellable timer;
+
+    RouteDiscovery(long startedAt) {
+        this.startedAt = startedAt;
+        this.event.begin();
+    }
+
+    boolean offer(UserData data, int prevHop, long arrivedAt) {
+        if (packets.size() == PENDING_PACKETS_CAPACITY) {
+            return false;
+        }
+        packets.add(new Pending(data, prevHop, arrivedAt));
+        return true;
+    }
+
+    void drain(PendingConsumer consumer) {
+        for (Pending pending = packets.poll(); pending != null; pending = packets.poll()) {
+            consumer.accept(pending.data, pending.prevHop, pending.arrivedAt);
+        }
+    }
+
+    long getStartedAt() {
+        return startedAt;
+    }
+
+    RoutingEvents.RouteDiscoveryEvent getEvent() {
+        return event;
+    }
+
+    int getRequests() {
+        return requests;
+    }
+
+    void countRequest() {
+        requests++;
+    }
+
+    int size() {
+        return packets.size();
+    }
+
+    int getRetries() {
+        return retries;
+    }
+
+    int nextRetry() {
+        return ++retries;
+    }
+
+    int getTimeToLive() {
+        return timeToLive;
+    }
+
+    void setTimeToLive(int timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    void setTimer(Scheduler.Cancellable timer) {
+        this.timer = timer;
+    }
+
+    void cancelTimer() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    private static class Pending {
+
+        private final UserData data;
+
+        private final int prevHop;
+
+        private final long arrivedAt;
+
+        private Pending(UserData data, int prevHop, long arrivedAt) {
+            this.data = data;
+            this.prevHop = prevHop;
+            this.arrivedAt = arrivedAt;
+        }
+    }
+
+    interface PendingConsumer {
+
+        void accept(UserData data, int prevHop, long arrivedAt);
+    }
+}
@@ -0,0 +1,160 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static aodv.Utils.*;
+
+public class RouteError implements RouteErrorMessage {
+
+    static final int TYPE = 3;
+
+    static final int HEADER_LENGTH = 3;
+
+    static final int DESTINATION_LENGTH = 3;
+
+    public static final int MAX_DESTINATIONS = 61;                                                                              // Keeps the Base64 encoded frame within the 250 bytes of AT+SEND
+
+    private final int[] destinationAddresses;
+
+    private final int[] destinationSequences;
+
+    public RouteError(int destinationAddress, int destinationSequence) {
+        this(new int[] { destinationAddress }, new int[] { destinationSequence });
+    }
+
+    public RouteError(int[] destinationAddresses, int[] destinationSequences) {
+        if (destinationAddresses.length != destinationSequences.length) {
+            throw new RuntimeException("Invalid destinations");
+        }
+        validate(destinationAddresses.length, 1, MAX_DESTINATIONS);
+        for (int i = 0; i < destinationAddresses.length; i++) {
+            validate(destinationAddresses[i], 0, MAX_16_BITS);
+            validate(destinationSequences[i], 0, MAX_8_BITS);
+        }
+        this.destinationAddresses = destinationAddresses.clone();
+        this.destinationSequences = destinationSequences.clone();
+    }
+
+    public int getDestinationCount() {
+        return destinationAddresses.length;
+    }
+
+    public int getDestinationAddress(int index) {
+        return destinationAddresses[index];
+    }
+
+    public int getDestinationSequence(int index) {
+        return destinationSequences[index];
+    }
+
+    public RouteError toRouteError() {
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        RouteError error = (RouteError)o;
+        return new EqualsBuilder()
+                .append(destinationAddresses, error.destinationAddresses)
+                .append(destinationSequences, error.destinationSequences)
+                .isEquals();
+    }
+
+    @Override
+    public int hashCode() {
+        return new HashCodeBuilder(17, 37)
+                .append(destinationAddresses)
+                .append(destinationSequences)
+                .toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("destinationAddresses", Arrays.toString(destinationAddresses))
+                .append("destinationSequences", Arrays.toString(destinationSequences))
+                .toString();
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return HEADER_LENGTH + destinationAddresses.length * DESTINATION_LENGTH;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer buffer) {
+
+        int block1 = 0;
+        // type - 6 bits
+        block1 |= (TYPE & INT_MASK) << 18;
+        // reserved - 10 bits, destination count - 8 bits
+        block1 |= destinationAddresses.length & INT_MASK;
+        putInt24(buffer, block1);
+
+        for (int i = 0; i < destinationAddresses.length; i++) {
+            int block = 0;
+            // unreachable destination address - 16 bits
+            block |= (destinationAddresses[i] & INT_MASK) << 8;
+            // unreachable destination sequence - 8 bits
+            block |= destinationSequences[i] & INT_MASK;
+            putInt24(buffer, block);
+        }
+
+        return getEncodedLength();
+    }
+
+    public static RouteError parse(byte[] bytes) throws IOException {
+
+        if (bytes.length < HEADER_LENGTH + DESTINATION_LENGTH || (bytes.length - HEADER_LENGTH) % DESTINATION_LENGTH != 0) {
+            throw new RuntimeException("'Failed to parse error: Invalid length (" + bytes.length + ")");
+        }
+
+        final ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        final DataInput input = new DataInputStream(in);
+
+        byte[] tmp = new byte[3];
+
+        input.readFully(tmp);
+        final int block1 = toInt(tmp);
+        final int destinationCount = block1 & 0xFF;
+
+        if (destinationCount != (bytes.length - HEADER_LENGTH) / DESTINATION_LENGTH) {
+            throw new RuntimeException("'Failed to parse error: Invalid destination count (" + destinationCount + ")");
+        }
+
+        final int[] destinationAddresses = new int[destinationCount];
+        final int[] destinationSequences = new int[destinationCount];
+
+        for (int i = 0; i < destinationCount; i++) {
+            input.readFully(tmp);
+            final int block = toInt(tmp);
+            destinationAddresses[i] = (block >> 8) & 0xFFFF;
+            destinationSequences[i] = block & 0xFF;
+        }
+
+        return new RouteError(destinationAddresses, destinationSequences);
+    }
+
+    public static boolean isRouteError(byte[] bytes) {
+        return ((bytes[0] >> 2) & 0xFF) == TYPE;
+    }
+
+    public static boolean isRouteError(ByteBuffer buffer, int offset) {
+        return messageType(buffer, offset) == TYPE;
+    }
+
+}
@@ -0,0 +1,14 @@
+package aodv;
+
+public interface RouteErrorMessage extends Message {
+
+    int getDestinationCount();
+
+    int getDestinationAddress(int index);
+
+    int getDestinationSequence(int index);
+
+    // Detaches the message from any shared frame buffer, e.g. before it is queued.
+    RouteError toRouteError();
+
+}
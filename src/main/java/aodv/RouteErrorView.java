@@ -0,0 +1,88 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static aodv.Utils.*;
+
+// Reusable read view over an encoded RERR, the unreachable destinations are decoded on access.
+public class RouteErrorView implements RouteErrorMessage {
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    public RouteErrorView wrap(ByteBuffer buffer, int offset, int length) {
+        if (length < RouteError.HEADER_LENGTH + RouteError.DESTINATION_LENGTH || buffer.limit() - offset < length) {
+            throw new RuntimeException("Failed to wrap error: Invalid length (" + length + ")");
+        }
+        if (!RouteError.isRouteError(buffer, offset)) {
+            throw new RuntimeException("Failed to wrap error: Invalid type (" + messageType(buffer, offset) + ")");
+        }
+        final int destinationCount = buffer.get(offset + 2) & 0xFF;
+        if (length != RouteError.HEADER_LENGTH + destinationCount * RouteError.DESTINATION_LENGTH) {
+            throw new RuntimeException("Failed to wrap error: Invalid destination count (" + destinationCount + ")");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    public int getDestinationCount() {
+        return buffer.get(offset + 2) & 0xFF;
+    }
+
+    public int getDestinationAddress(int index) {
+        return (getInt24(buffer, destinationOffset(index)) >> 8) & 0xFFFF;
+    }
+
+    public int getDestinationSequence(int index) {
+        return buffer.get(destinationOffset(index) + 2) & 0xFF;
+    }
+
+    public RouteError toRouteError() {
+        final int[] destinationAddresses = new int[getDestinationCount()];
+        final int[] destinationSequences = new int[destinationAddresses.length];
+        for (int i = 0; i < destinationAddresses.length; i++) {
+            destinationAddresses[i] = getDestinationAddress(i);
+            destinationSequences[i] = getDestinationSequence(i);
+        }
+        return new RouteError(destinationAddresses, destinationSequences);
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return RouteError.HEADER_LENGTH + getDestinationCount() * RouteError.DESTINATION_LENGTH;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer target) {
+        final int length = getEncodedLength();
+        copy(buffer, offset, length, target);
+        return length;
+    }
+
+    private int destinationOffset(int index) {
+        if (index < 0 || index >= getDestinationCount()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return offset + RouteError.HEADER_LENGTH + index * RouteError.DESTINATION_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        final int[] destinationAddresses = new int[getDestinationCount()];
+        final int[] destinationSequences = new int[destinationAddresses.length];
+        for (int i = 0; i < destinationAddresses.length; i++) {
+            destinationAddresses[i] = getDestinationAddress(i);
+            destinationSequences[i] = getDestinationSequence(i);
+        }
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("destinationAddresses", Arrays.toString(destinationAddresses))
+                .append("destinationSequences", Arrays.toString(destinationSequences))
+                .toString();
+    }
+}
@@ -6,12 +6,17 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import static aodv.Utils.*;
 
-public class RouteReply implements Message {
+public class RouteReply implements RouteReplyMessage {
 
-    private static final int TYPE = 2;
+    static final int TYPE = 2;
+
+    static final int LENGTH = 9;
+
+    static final int EXTENDED_LENGTH = 12;
 
     private final int lifetime;
 
@@ -23,12 +28,20 @@ public class RouteReply implements Message {
 
     private final int hopCount;
 
+    private final int metric;
+
     public RouteReply(int lifetime, int destinationAddress, int destinationSequence, int originatorAddress, int hopCount) {
+        this(lifetime, destinationAddress, destinationSequence, originatorAddress, hopCount, hopCount);
+    }
+
+    // The metric sums up the link costs to the destination, it equals the hop count as long as every link costs 1.
+    public RouteReply(int lifetime, int destinationAddress, int destinationSequence, int originatorAddress, int hopCount, int metric) {
         this.lifetime = validate(lifetime, 0, MAX_18_BITS);
         this.destinationAddress = validate(destinationAddress, 0, MAX_16_BITS);
         this.destinationSequence = validate(destinationSequence, 0, MAX_8_BITS);
         this.originatorAddress = validate(originatorAddress, 0, MAX_16_BITS);
         this.hopCount = validate(hopCount, 0, MAX_8_BITS);
+        this.metric = validate(metric, 0, MAX_8_BITS);
     }
 
     public int getLifetime() {
@@ -51,8 +64,20 @@ public class RouteReply implements Message {
         return hopCount;
     }
 
+    public int getMetric() {
+        return metric;
+    }
+
     public RouteReply incrementHopCount() {
-        return new RouteReply(lifetime, destinationAddress, destinationSequence, originatorAddress, hopCount + 1);
+        return incrementHopCount(1);
+    }
+
+    public RouteReply incrementHopCount(int linkCost) {
+        return new RouteReply(lifetime, destinationAddress, destinationSequence, originatorAddress, hopCount + 1, addLinkCost(metric, linkCost));
+    }
+
+    public RouteReply toRouteReply() {
+        return this;
     }
 
     @Override
@@ -70,6 +95,7 @@ public class RouteReply implements Message {
                 .append(destinationSequence, reply.destinationSequence)
                 .append(originatorAddress, reply.originatorAddress)
                 .append(hopCount, reply.hopCount)
+                .append(metric, reply.metric)
                 .isEquals();
     }
 
@@ -81,6 +107,7 @@ public class RouteReply implements Message {
                 .append(destinationSequence)
                 .append(originatorAddress)
                 .append(hopCount)
+                .append(metric)
                 .toHashCode();
     }
 
@@ -92,42 +119,52 @@ public class RouteReply implements Message {
                 .append("destinationSequence", destinationSequence)
                 .append("originatorAddress", originatorAddress)
                 .append("hopCount", hopCount)
+                .append("metric", metric)
                 .toString();
     }
 
-    public byte[] serialize() throws IOException {
-
-        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    @Override
+    public int getEncodedLength() {
+        return metric == hopCount ? LENGTH : EXTENDED_LENGTH;
+    }
 
-        final DataOutput output = new DataOutputStream(bos);
+    @Override
+    public int encodeTo(ByteBuffer buffer) {
 
         int block1 = 0;
         // type - 6 bits
         block1 |= (TYPE & INT_MASK) << 18;
         // lifetime - 18 bits
         block1 |= lifetime & INT_MASK;
-        output.write(toBytes(block1, 3));
+        putInt24(buffer, block1);
 
         int block2 = 0;
         // destination address - 16 bits
         block2 |= (destinationAddress & INT_MASK) << 8;
         // destination sequence - 8 bits
         block2 |= destinationSequence & INT_MASK;
-        output.write(toBytes(block2, 3));
+        putInt24(buffer, block2);
 
         int block3 = 0;
         // originator address - 16 bits
         block3 |= (originatorAddress & INT_MASK) << 8;
         // hop count - 8 bits
         block3 |= hopCount & INT_MASK;
-        output.write(toBytes(block3, 3));
+        putInt24(buffer, block3);
+
+        if (metric == hopCount) {
+            return LENGTH;                                                                                                      // The metric block is left out while the metric tells nothing beyond the hop count
+        }
 
-        return bos.toByteArray();
+        // metric - 8 bits, 16 bits reserved
+        putInt24(buffer, (metric & INT_MASK) << 16);
+
+        return EXTENDED_LENGTH;
     }
 
     public static RouteReply parse(byte[] bytes) throws IOException {
 
-        if (bytes.length != 9) {
+        if (bytes.length != LENGTH && bytes.length != EXTENDED_LENGTH) {
             throw new RuntimeException("'Failed to parse request: Invalid length (" + bytes.length + ")");
         }
 
@@ -151,11 +188,21 @@ public class RouteReply implements Message {
         final int originatorAddress = (block3 >> 8) & 0xFFFF;
         final int hopCount = block3 & 0xFF;
 
-        return new RouteReply(lifeTime, destinationAddress, destinationSequence, originatorAddress, hopCount);
+        int metric = hopCount;
+        if (bytes.length == EXTENDED_LENGTH) {
+            input.readFully(tmp);
+            metric = (toInt(tmp) >> 16) & 0xFF;
+        }
+
+        return new RouteReply(lifeTime, destinationAddress, destinationSequence, originatorAddress, hopCount, metric);
     }
 
     public static boolean isRouteReply(byte[] bytes) {
         return ((bytes[0] >> 2) & 0xFF) == TYPE;
     }
 
+    public static boolean isRouteReply(ByteBuffer buffer, int offset) {
+        return messageType(buffer, offset) == TYPE;
+    }
+
 }
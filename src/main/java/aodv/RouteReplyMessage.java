@@ -0,0 +1,27 @@
+package aodv;
+
+public interface RouteReplyMessage extends Message {
+
+    int getLifetime();
+
+    int getDestinationAddress();
+
+    int getDestinationSequence();
+
+    int getOriginatorAddress();
+
+    int getHopCount();
+
+    // The sum of the link costs to the destination, see LinkQuality.
+    int getMetric();
+
+    // Immutable replies return a copy, views update the frame in place and return themselves.
+    RouteReplyMessage incrementHopCount();
+
+    // Adds a hop that cost linkCost to the metric.
+    RouteReplyMessage incrementHopCount(int linkCost);
+
+    // Detaches the message from any shared frame buffer, e.g. before it is queued.
+    RouteReply toRouteReply();
+
+}
@@ -0,0 +1,105 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+
+import static aodv.Utils.*;
+
+// Reusable read view over an encoded RREP, the hop count is the only field that is written back. The metric is held by
+// the view, as a frame without the metric block has no room for it.
+public class RouteReplyView implements RouteReplyMessage {
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int metric;
+
+    // Without the length of the frame, a metric block is not looked for.
+    public RouteReplyView wrap(ByteBuffer buffer, int offset) {
+        return wrap(buffer, offset, RouteReply.LENGTH);
+    }
+
+    public RouteReplyView wrap(ByteBuffer buffer, int offset, int length) {
+        if ((length != RouteReply.LENGTH && length != RouteReply.EXTENDED_LENGTH) || buffer.limit() - offset < length) {
+            throw new RuntimeException("Failed to wrap reply: Invalid length (" + length + ")");
+        }
+        if (!RouteReply.isRouteReply(buffer, offset)) {
+            throw new RuntimeException("Failed to wrap reply: Invalid type (" + messageType(buffer, offset) + ")");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.metric = length == RouteReply.EXTENDED_LENGTH ? buffer.get(offset + RouteReply.LENGTH) & 0xFF : getHopCount();
+        return this;
+    }
+
+    public int getLifetime() {
+        return getInt24(buffer, offset) & 0x3FFFF;
+    }
+
+    public int getDestinationAddress() {
+        return (getInt24(buffer, offset + 3) >> 8) & 0xFFFF;
+    }
+
+    public int getDestinationSequence() {
+        return buffer.get(offset + 5) & 0xFF;
+    }
+
+    public int getOriginatorAddress() {
+        return (getInt24(buffer, offset + 6) >> 8) & 0xFFFF;
+    }
+
+    public int getHopCount() {
+        return buffer.get(offset + 8) & 0xFF;
+    }
+
+    public int getMetric() {
+        return metric;
+    }
+
+    @Override
+    public RouteReplyView incrementHopCount() {
+        return incrementHopCount(1);
+    }
+
+    @Override
+    public RouteReplyView incrementHopCount(int linkCost) {
+        final int hopCount = validate(getHopCount() + 1, 0, MAX_8_BITS);
+        buffer.put(offset + 8, (byte)hopCount);
+        metric = addLinkCost(metric, linkCost);
+        return this;
+    }
+
+    public RouteReply toRouteReply() {
+        return new RouteReply(getLifetime(), getDestinationAddress(), getDestinationSequence(), getOriginatorAddress(), getHopCount(), metric);
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return metric == getHopCount() ? RouteReply.LENGTH : RouteReply.EXTENDED_LENGTH;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer target) {
+        copy(buffer, offset, RouteReply.LENGTH, target);
+        if (metric == getHopCount()) {
+            return RouteReply.LENGTH;
+        }
+        putInt24(target, metric << 16);
+        return RouteReply.EXTENDED_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("lifetime", getLifetime())
+                .append("destinationAddress", getDestinationAddress())
+                .append("destinationSequence", getDestinationSequence())
+                .append("originatorAddress", getOriginatorAddress())
+                .append("hopCount", getHopCount())
+                .append("metric", metric)
+                .toString();
+    }
+}
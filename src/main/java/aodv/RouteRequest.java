@@ -6,12 +6,17 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 import static aodv.Utils.*;
 
-public class RouteRequest implements Message {
+public class RouteRequest implements RouteRequestMessage {
 
-    private static final int TYPE = 1;
+    static final int TYPE = 1;
+
+    static final int LENGTH = 9;
+
+    static final int EXTENDED_LENGTH = 12;
 
     private final int hopCount;
 
@@ -27,7 +32,20 @@ public class RouteRequest implements Message {
 
     private final int originatorSequence;
 
+    private final int timeToLive;
+
+    private final int metric;
+
     public RouteRequest(int hopCount, int requestId, int destinationAddress, int destinationSequence, boolean destinationSequenceUnknown, int originatorAddress, int originatorSequence) {
+        this(hopCount, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence, UNLIMITED_TTL);
+    }
+
+    public RouteRequest(int hopCount, int requestId, int destinationAddress, int destinationSequence, boolean destinationSequenceUnknown, int originatorAddress, int originatorSequence, int timeToLive) {
+        this(hopCount, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence, timeToLive, hopCount);
+    }
+
+    // The metric sums up the link costs from the originator, it equals the hop count as long as every link costs 1.
+    public RouteRequest(int hopCount, int requestId, int destinationAddress, int destinationSequence, boolean destinationSequenceUnknown, int originatorAddress, int originatorSequence, int timeToLive, int metric) {
         this.hopCount = validate(hopCount, 0, MAX_6_BITS);
         this.requestId =  validate(requestId, 0, MAX_6_BITS);
         this.destinationAddress = validate(destinationAddress, 0, MAX_16_BITS);
@@ -35,6 +53,8 @@ public class RouteRequest implements Message {
         this.destinationSequenceUnknown = destinationSequenceUnknown;
         this.originatorAddress = validate(originatorAddress, 0, MAX_16_BITS);
         this.originatorSequence = validate(originatorSequence, 0, MAX_8_BITS);
+        this.timeToLive = validate(timeToLive, 0, MAX_5_BITS);
+        this.metric = validate(metric, 0, MAX_8_BITS);
     }
 
     public int getHopCount() {
@@ -65,8 +85,24 @@ public class RouteRequest implements Message {
         return originatorSequence;
     }
 
+    public int getTimeToLive() {
+        return timeToLive;
+    }
+
+    public int getMetric() {
+        return metric;
+    }
+
     public RouteRequest incrementHopCount() {
-        return new RouteRequest(hopCount + 1, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence);
+        return incrementHopCount(1);
+    }
+
+    public RouteRequest incrementHopCount(int linkCost) {
+        return new RouteRequest(hopCount + 1, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence, timeToLive, addLinkCost(metric, linkCost));
+    }
+
+    public RouteRequest toRouteRequest() {
+        return this;
     }
 
     @Override
@@ -87,6 +123,8 @@ public class RouteRequest implements Message {
                 .append(destinationSequenceUnknown, request.destinationSequenceUnknown)
                 .append(originatorAddress, request.originatorAddress)
                 .append(originatorSequence, request.originatorSequence)
+                .append(timeToLive, request.timeToLive)
+                .append(metric, request.metric)
                 .isEquals();
     }
 
@@ -100,6 +138,8 @@ public class RouteRequest implements Message {
                 .append(destinationSequenceUnknown)
                 .append(originatorAddress)
                 .append(originatorSequence)
+                .append(timeToLive)
+                .append(metric)
                 .toHashCode();
     }
 
@@ -113,14 +153,18 @@ public class RouteRequest implements Message {
                 .append("destinationSequenceUnknown", destinationSequenceUnknown)
                 .append("originatorAddress", originatorAddress)
                 .append("originatorSequence", originatorSequence)
+                .append("timeToLive", timeToLive)
+                .append("metric", metric)
                 .toString();
     }
 
-    public byte[] serialize() throws IOException {
-
-        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    @Override
+    public int getEncodedLength() {
+        return metric == hopCount ? LENGTH : EXTENDED_LENGTH;
+    }
 
-        final DataOutput output = new DataOutputStream(bos);
+    @Override
+    public int encodeTo(ByteBuffer buffer) {
 
         int block1 = 0;
         // type - 6 bits
@@ -129,32 +173,41 @@ public class RouteRequest implements Message {
         if (destinationSequenceUnknown) {
             block1 |= (1 & INT_MASK) << 17;
         }
+        // time to live - 5 bits, the remaining flag bits
+        block1 |= (timeToLive & INT_MASK) << 12;
         // hop count - 6 bits
         block1 |= (hopCount & INT_MASK) << 6;
         // request id - 6 bits
         block1 |= requestId & INT_MASK;
-        output.write(toBytes(block1, 3));
+        putInt24(buffer, block1);
 
         int block2 = 0;
         // destination address - 16 bits
         block2 |= (destinationAddress & INT_MASK) << 8;
         // destination sequence - 8 bits
         block2 |= destinationSequence & INT_MASK;
-        output.write(toBytes(block2, 3));
+        putInt24(buffer, block2);
 
         int block3 = 0;
         // originator address - 16 bits
         block3 |= (originatorAddress & INT_MASK) << 8;
         // originator sequence - 8 bits
         block3 |= originatorSequence & INT_MASK;
-        output.write(toBytes(block3, 3));
+        putInt24(buffer, block3);
 
-        return bos.toByteArray();
+        if (metric == hopCount) {
+            return LENGTH;                                                                                                      // The metric block is left out while the metric tells nothing beyond the hop count
+        }
+
+        // metric - 8 bits, 16 bits reserved
+        putInt24(buffer, (metric & INT_MASK) << 16);
+
+        return EXTENDED_LENGTH;
     }
 
     public static RouteRequest parse(byte[] bytes) throws IOException {
 
-        if (bytes.length != 9) {
+        if (bytes.length != LENGTH && bytes.length != EXTENDED_LENGTH) {
             throw new RuntimeException("'Failed to parse request: Invalid length (" + bytes.length + ")");
         }
 
@@ -167,6 +220,7 @@ public class RouteRequest implements Message {
         input.readFully(tmp);
         final int block1 = toInt(tmp);
         final boolean destinationSequenceUnknown = ((block1 >> 17) & 0x1) == 1;
+        final int timeToLive = (block1 >> 12) & 0x1F;
         final int hopCount = (block1 >> 6) & 0x3F;
         final int requestId = block1 & 0x3F;
 
@@ -180,11 +234,21 @@ public class RouteRequest implements Message {
         final int originatorAddress = (block3 >> 8) & 0xFFFF;
         final int originatorSequence = block3 & 0xFF;
 
-        return new RouteRequest(hopCount, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence);
+        int metric = hopCount;
+        if (bytes.length == EXTENDED_LENGTH) {
+            input.readFully(tmp);
+            metric = (toInt(tmp) >> 16) & 0xFF;
+        }
+
+        return new RouteRequest(hopCount, requestId, destinationAddress, destinationSequence, destinationSequenceUnknown, originatorAddress, originatorSequence, timeToLive, metric);
     }
 
     public static boolean isRouteRequest(byte[] bytes) {
         return ((bytes[0] >> 2) & 0xFF) == TYPE;
     }
 
+    public static boolean isRouteRequest(ByteBuffer buffer, int offset) {
+        return messageType(buffer, offset) == TYPE;
+    }
+
 }
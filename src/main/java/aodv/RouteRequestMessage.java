@@ -0,0 +1,34 @@
+package aodv;
+
+public interface RouteRequestMessage extends Message {
+
+    int getHopCount();
+
+    int getRequestId();
+
+    int getDestinationAddress();
+
+    int getDestinationSequence();
+
+    boolean isDestinationSequenceUnknown();
+
+    int getOriginatorAddress();
+
+    int getOriginatorSequence();
+
+    // The number of hops the request may travel from its originator, UNLIMITED_TTL floods the whole network.
+    int getTimeToLive();
+
+    // The sum of the link costs from the originator, see LinkQuality.
+    int getMetric();
+
+    // Immutable requests return a copy, views update the frame in place and return themselves.
+    RouteRequestMessage incrementHopCount();
+
+    // Adds a hop that cost linkCost to the metric.
+    RouteRequestMessage incrementHopCount(int linkCost);
+
+    // Detaches the message from any shared frame buffer, e.g. before it is queued.
+    RouteRequest toRouteRequest();
+
+}
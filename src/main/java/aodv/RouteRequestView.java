@@ -0,0 +1,121 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+
+import static aodv.Utils.*;
+
+// Reusable read view over an encoded RREQ, the hop count is the only field that is written back. The metric is held by
+// the view, as a frame without the metric block has no room for it.
+public class RouteRequestView implements RouteRequestMessage {
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int metric;
+
+    // Without the length of the frame, a metric block is not looked for.
+    public RouteRequestView wrap(ByteBuffer buffer, int offset) {
+        return wrap(buffer, offset, RouteRequest.LENGTH);
+    }
+
+    public RouteRequestView wrap(ByteBuffer buffer, int offset, int length) {
+        if ((length != RouteRequest.LENGTH && length != RouteRequest.EXTENDED_LENGTH) || buffer.limit() - offset < length) {
+            throw new RuntimeException("Failed to wrap request: Invalid length (" + length + ")");
+        }
+        if (!RouteRequest.isRouteRequest(buffer, offset)) {
+            throw new RuntimeException("Failed to wrap request: Invalid type (" + messageType(buffer, offset) + ")");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.metric = length == RouteRequest.EXTENDED_LENGTH ? buffer.get(offset + RouteRequest.LENGTH) & 0xFF : getHopCount();
+        return this;
+    }
+
+    public int getHopCount() {
+        return (getInt24(buffer, offset) >> 6) & 0x3F;
+    }
+
+    public int getRequestId() {
+        return getInt24(buffer, offset) & 0x3F;
+    }
+
+    public int getDestinationAddress() {
+        return (getInt24(buffer, offset + 3) >> 8) & 0xFFFF;
+    }
+
+    public int getDestinationSequence() {
+        return buffer.get(offset + 5) & 0xFF;
+    }
+
+    public boolean isDestinationSequenceUnknown() {
+        return ((getInt24(buffer, offset) >> 17) & 0x1) == 1;
+    }
+
+    public int getOriginatorAddress() {
+        return (getInt24(buffer, offset + 6) >> 8) & 0xFFFF;
+    }
+
+    public int getOriginatorSequence() {
+        return buffer.get(offset + 8) & 0xFF;
+    }
+
+    public int getTimeToLive() {
+        return (getInt24(buffer, offset) >> 12) & 0x1F;
+    }
+
+    public int getMetric() {
+        return metric;
+    }
+
+    @Override
+    public RouteRequestView incrementHopCount() {
+        return incrementHopCount(1);
+    }
+
+    @Override
+    public RouteRequestView incrementHopCount(int linkCost) {
+        final int block1 = getInt24(buffer, offset);
+        final int hopCount = validate(((block1 >> 6) & 0x3F) + 1, 0, MAX_6_BITS);
+        putInt24(buffer, offset, (block1 & ~(0x3F << 6)) | hopCount << 6);
+        metric = addLinkCost(metric, linkCost);
+        return this;
+    }
+
+    public RouteRequest toRouteRequest() {
+        return new RouteRequest(getHopCount(), getRequestId(), getDestinationAddress(), getDestinationSequence(), isDestinationSequenceUnknown(), getOriginatorAddress(), getOriginatorSequence(), getTimeToLive(), metric);
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return metric == getHopCount() ? RouteRequest.LENGTH : RouteRequest.EXTENDED_LENGTH;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer target) {
+        copy(buffer, offset, RouteRequest.LENGTH, target);
+        if (metric == getHopCount()) {
+            return RouteRequest.LENGTH;
+        }
+        putInt24(target, metric << 16);
+        return RouteRequest.EXTENDED_LENGTH;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("hopCount", getHopCount())
+                .append("requestId", getRequestId())
+                .append("destinationAddress", getDestinationAddress())
+                .append("destinationSequence", getDestinationSequence())
+                .append("destinationSequenceUnknown", isDestinationSequenceUnknown())
+                .append("originatorAddress", getOriginatorAddress())
+                .append("originatorSequence", getOriginatorSequence())
+                .append("timeToLive", getTimeToLive())
+                .append("metric", metric)
+                .toString();
+    }
+}
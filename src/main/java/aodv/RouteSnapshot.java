@@ -0,0 +1,181 @@
+package aodv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static aodv.Utils.MAX_8_BITS;
+
+// Routing state saved for a warm restart. The file is written next to the target and renamed over it, so a crash
+// leaves either the previous or the new snapshot behind, never a torn one:
+//
+//   header: magic (32 bits) | version (8 bits) | saved at (64 bits) | address (16 bits) | sequence number (8 bits)
+//           | request id (8 bits) | route count (16 bits)
+//   per route: destination (16 bits) | sequence (8 bits) | flags (8 bits) | hop count (8 bits) | next hop (16 bits)
+//              | lifetime (64 bits) | precursor count (8 bits) | precursors (16 bits each)
+//   trailer: CRC32 of everything before (32 bits)
+public class RouteSnapshot {
+
+    static final int MAGIC = 0x414F4456;                                                                                        // "AODV"
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 19;
+
+    private static final int ROUTE_LENGTH = 16;
+
+    private static final int FLAG_SEQUENCE_VALID = 1;
+
+    private final long savedAt;
+
+    private final int address;
+
+    private final int sequenceNumber;
+
+    private final int requestId;
+
+    private final List<Route> routes;
+
+    public RouteSnapshot(long savedAt, int address, int sequenceNumber, int requestId, List<Route> routes) {
+        this.savedAt = savedAt;
+        this.address = address;
+        this.sequenceNumber = sequenceNumber;
+        this.requestId = requestId;
+        this.routes = Collections.unmodifiableList(new ArrayList<>(routes));
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public int getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    public int getRequestId() {
+        return requestId;
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public byte[] serialize() {
+
+        int length = HEADER_LENGTH + 4;
+        for (Route route : routes) {
+            length += ROUTE_LENGTH + 2 * Math.min(route.getPrecursors().size(), MAX_8_BITS);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC);
+        buffer.put((byte)VERSION);
+        buffer.putLong(savedAt);
+        buffer.putChar((char)address);
+        buffer.put((byte)sequenceNumber);
+        buffer.put((byte)requestId);
+        buffer.putChar((char)routes.size());
+
+        for (Route route : routes) {
+            buffer.putChar((char)route.getDestinationAddress());
+            buffer.put((byte)route.getDestinationSequence());
+            buffer.put((byte)(route.isDestinationSequenceValid() ? FLAG_SEQUENCE_VALID : 0));
+            buffer.put((byte)route.getHopCount());
+            buffer.putChar((char)route.getNextHop());
+            buffer.putLong(route.getLifetime());
+            final int precursors = Math.min(route.getPrecursors().size(), MAX_8_BITS);                                          // Further precursors are only missed by a RERR
+            buffer.put((byte)precursors);
+            route.getPrecursors().stream().limit(precursors).forEach(p -> buffer.putChar((char)p.intValue()));
+        }
+
+        buffer.putInt(checksum(buffer.array(), buffer.position()));
+        return buffer.array();
+    }
+
+    // Replaces the file atomically, the data is on disk before the rename makes it visible.
+    public void writeTo(Path file) throws IOException {
+        final Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.wrap(serialize());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static RouteSnapshot parse(byte[] bytes) {
+
+        if (bytes.length < HEADER_LENGTH + 4) {
+            throw new RuntimeException("Failed to parse snapshot: Invalid length (" + bytes.length + ")");
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt(bytes.length - 4) != checksum(bytes, bytes.length - 4)) {
+            throw new RuntimeException("Failed to parse snapshot: Invalid checksum");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new RuntimeException("Failed to parse snapshot: Invalid magic");
+        }
+        final int version = buffer.get() & 0xFF;
+        if (version != VERSION) {
+            throw new RuntimeException("Failed to parse snapshot: Unsupported version (" + version + ")");
+        }
+
+        final long savedAt = buffer.getLong();
+        final int address = buffer.getChar();
+        final int sequenceNumber = buffer.get() & 0xFF;
+        final int requestId = buffer.get() & 0xFF;
+        final int count = buffer.getChar();
+
+        final List<Route> routes = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                final Route route = new Route(buffer.getChar());
+                route.setDestinationSequence(buffer.get() & 0xFF);
+                route.setDestinationSequenceValid((buffer.get() & FLAG_SEQUENCE_VALID) != 0);
+                route.setHopCount(buffer.get() & 0xFF);
+                route.setNextHop(buffer.getChar());
+                route.setLifetime(buffer.getLong());
+                final int precursors = buffer.get() & 0xFF;
+                for (int j = 0; j < precursors; j++) {
+                    route.addPrecursor(buffer.getChar());
+                }
+                routes.add(route);
+            }
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Failed to parse snapshot: Invalid route count (" + count + ")");
+        }
+        if (buffer.position() != bytes.length - 4) {
+            throw new RuntimeException("Failed to parse snapshot: Invalid length (" + bytes.length + ")");
+        }
+
+        return new RouteSnapshot(savedAt, address, sequenceNumber, requestId, routes);
+    }
+
+    // Returns null if there is no snapshot yet.
+    public static RouteSnapshot readFrom(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        return parse(Files.readAllBytes(file));
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int)crc.getValue();
+    }
+}
@@ -0,0 +1,257 @@
+package aodv;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Counters are LongAdders, so recording on the router thread never contends with a JMX client reading them. Gauges of
+// routing state are volatile ints the router thread writes after each change, the table itself is not thread-safe.
+// Gauges of thread-safe queues are read from their owners when asked for.
+public class RouterStats implements RouterStatsMXBean {
+
+    final LongAdder routeRequestsSent = new LongAdder();
+
+    final LongAdder routeRequestsReceived = new LongAdder();
+
+    final LongAdder routeRequestsForwarded = new LongAdder();
+
+    final LongAdder duplicateRequests = new LongAdder();
+
+    final LongAdder suppressedBroadcasts = new LongAdder();
+
+    final LongAdder routeRepliesSent = new LongAdder();
+
+    final LongAdder routeRepliesReceived = new LongAdder();
+
+    final LongAdder routeRepliesForwarded = new LongAdder();
+
+    final LongAdder routeRepliesDropped = new LongAdder();
+
+    final LongAdder routeErrorsSent = new LongAdder();
+
+    final LongAdder routeErrorsReceived = new LongAdder();
+
+    final LongAdder userDataSent = new LongAdder();
+
+    final LongAdder userDataDelivered = new LongAdder();
+
+    final LongAdder userDataForwarded = new LongAdder();
+
+    final LongAdder userDataDropped = new LongAdder();
+
+    final LongAdder discoveriesStarted = new LongAdder();
+
+    final LongAdder discoveriesSucceeded = new LongAdder();
+
+    final LongAdder discoveriesFailed = new LongAdder();
+
+    final LongAdder failovers = new LongAdder();
+
+    final LatencyHistogram discoveryLatency = new LatencyHistogram();
+
+    final LatencyHistogram forwardingDelay = new LatencyHistogram();
+
+    private final LatencyHistogram linkRoundTrip = new LatencyHistogram();
+
+    volatile int bufferedPackets;                                                                                               // Only written by the router thread
+
+    volatile int routes;
+
+    volatile int pendingDiscoveries;
+
+    private volatile IntSupplier queuedEvents = () -> 0;
+
+    private volatile IntSupplier transmitQueueDepth = () -> 0;
+
+    private ObjectName objectName;
+
+    @Override
+    public long getRouteRequestsSent() {
+        return routeRequestsSent.sum();
+    }
+
+    @Override
+    public long getRouteRequestsReceived() {
+        return routeRequestsReceived.sum();
+    }
+
+    @Override
+    public long getRouteRequestsForwarded() {
+        return routeRequestsForwarded.sum();
+    }
+
+    @Override
+    public long getDuplicateRequests() {
+        return duplicateRequests.sum();
+    }
+
+    @Override
+    public long getSuppressedBroadcasts() {
+        return suppressedBroadcasts.sum();
+    }
+
+    @Override
+    public long getRouteRepliesSent() {
+        return routeRepliesSent.sum();
+    }
+
+    @Override
+    public long getRouteRepliesReceived() {
+        return routeRepliesReceived.sum();
+    }
+
+    @Override
+    public long getRouteRepliesForwarded() {
+        return routeRepliesForwarded.sum();
+    }
+
+    @Override
+    public long getRouteRepliesDropped() {
+        return routeRepliesDropped.sum();
+    }
+
+    @Override
+    public long getRouteErrorsSent() {
+        return routeErrorsSent.sum();
+    }
+
+    @Override
+    public long getRouteErrorsReceived() {
+        return routeErrorsReceived.sum();
+    }
+
+    @Override
+    public long getUserDataSent() {
+        return userDataSent.sum();
+    }
+
+    @Override
+    public long getUserDataDelivered() {
+        return userDataDelivered.sum();
+    }
+
+    @Override
+    public long getUserDataForwarded() {
+        return userDataForwarded.sum();
+    }
+
+    @Override
+    public long getUserDataDropped() {
+        return userDataDropped.sum();
+    }
+
+    @Override
+    public long getDiscoveriesStarted() {
+        return discoveriesStarted.sum();
+    }
+
+    @Override
+    public long getDiscoveriesSucceeded() {
+        return discoveriesSucceeded.sum();
+    }
+
+    @Override
+    public long getDiscoveriesFailed() {
+        return discoveriesFailed.sum();
+    }
+
+    @Override
+    public long getFailovers() {
+        return failovers.sum();
+    }
+
+    @Override
+    public int getRoutes() {
+        return routes;
+    }
+
+    @Override
+    public int getPendingDiscoveries() {
+        return pendingDiscoveries;
+    }
+
+    @Override
+    public int getBufferedPackets() {
+        return bufferedPackets;
+    }
+
+    @Override
+    public int getQueuedEvents() {
+        return queuedEvents.getAsInt();
+    }
+
+    @Override
+    public int getTransmitQueueDepth() {
+        return transmitQueueDepth.getAsInt();
+    }
+
+    @Override
+    public LatencySummary getDiscoveryLatency() {
+        return discoveryLatency.getSummary();
+    }
+
+    @Override
+    public LatencySummary getForwardingDelay() {
+        return forwardingDelay.getSummary();
+    }
+
+    @Override
+    public LatencySummary getLinkRoundTrip() {
+        return linkRoundTrip.getSummary();
+    }
+
+    // Recorded by the transport, e.g. the time from writing an AT command to its final response.
+    public LatencyHistogram getLinkRoundTripHistogram() {
+        return linkRoundTrip;
+    }
+
+    void setQueuedEvents(IntSupplier queuedEvents) {
+        this.queuedEvents = queuedEvents;
+    }
+
+    public void setTransmitQueueDepth(IntSupplier transmitQueueDepth) {
+        this.transmitQueueDepth = transmitQueueDepth;
+    }
+
+    // Publishes the stats on the platform MBean server as aodv:type=RouterStats,name=<name>.
+    public synchronized ObjectName register(String name) {
+        try {
+            final ObjectName objectName = new ObjectName("aodv:type=RouterStats,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+            return objectName;
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to register router stats: " + e.getMessage(), e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new RuntimeException("Failed to unregister router stats: " + e.getMessage(), e);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rreq: sent=%d received=%d forwarded=%d duplicates=%d suppressed=%d%n"
+                        + "rrep: sent=%d received=%d forwarded=%d dropped=%d, rerr: sent=%d received=%d%n"
+                        + "ud: sent=%d delivered=%d forwarded=%d dropped=%d%n"
+                        + "discoveries: started=%d succeeded=%d failed=%d latency=%s, failovers=%d%n"
+                        + "routes=%d pending=%d buffered=%d events=%d transmit-queue=%d%n"
+                        + "forwarding delay=%s%nlink round trip=%s",
+                getRouteRequestsSent(), getRouteRequestsReceived(), getRouteRequestsForwarded(), getDuplicateRequests(), getSuppressedBroadcasts(),
+                getRouteRepliesSent(), getRouteRepliesReceived(), getRouteRepliesForwarded(), getRouteRepliesDropped(), getRouteErrorsSent(), getRouteErrorsReceived(),
+                getUserDataSent(), getUserDataDelivered(), getUserDataForwarded(), getUserDataDropped(),
+                getDiscoveriesStarted(), getDiscoveriesSucceeded(), getDiscoveriesFailed(), getDiscoveryLatency(), getFailovers(),
+                getRoutes(), getPendingDiscoveries(), getBufferedPackets(), getQueuedEvents(), getTransmitQueueDepth(),
+                getForwardingDelay(), getLinkRoundTrip());
+    }
+}
@@ -0,0 +1,60 @@
+package aodv;
+
+// Counters of a router since it was started, gauges of its current state and latency summaries. Discovery latency
+// and forwarding delay are in milliseconds, link round trips in microseconds.
+public interface RouterStatsMXBean {
+
+    long getRouteRequestsSent();
+
+    long getRouteRequestsReceived();
+
+    long getRouteRequestsForwarded();
+
+    long getDuplicateRequests();
+
+    long getSuppressedBroadcasts();
+
+    long getRouteRepliesSent();
+
+    long getRouteRepliesReceived();
+
+    long getRouteRepliesForwarded();
+
+    long getRouteRepliesDropped();
+
+    long getRouteErrorsSent();
+
+    long getRouteErrorsReceived();
+
+    long getUserDataSent();
+
+    long getUserDataDelivered();
+
+    long getUserDataForwarded();
+
+    long getUserDataDropped();
+
+    long getDiscoveriesStarted();
+
+    long getDiscoveriesSucceeded();
+
+    long getDiscoveriesFailed();
+
+    long getFailovers();
+
+    int getRoutes();
+
+    int getPendingDiscoveries();
+
+    int getBufferedPackets();
+
+    int getQueuedEvents();
+
+    int getTransmitQueueDepth();
+
+    LatencySummary getDiscoveryLatency();
+
+    LatencySummary getForwardingDelay();
+
+    LatencySummary getLinkRoundTrip();
+}
@@ -0,0 +1,277 @@
+package aodv;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JDK Flight Recorder events of the routing decisions, e.g. 'java -XX:StartFlightRecording ...' and opened in JMC. An
+// event is only filled in while a recording has it enabled, otherwise emitting it costs a single check. Addresses are
+// 16 bit node addresses, -1 stands for none, e.g. the previous hop of data that originated here.
+public final class RoutingEvents {
+
+    public static final String ORIGINATED = "Originated";
+
+    public static final String FORWARDED = "Forwarded";
+
+    public static final String DUPLICATE = "Duplicate";
+
+    public static final String SUPPRESSED = "Suppressed";
+
+    public static final String GENERATED = "Generated";
+
+    public static final String CREATED = "Created";
+
+    public static final String UPDATED = "Updated";
+
+    public static final String FAILED_OVER = "Failed over";
+
+    public static final String EXPIRED = "Expired";
+
+    public static final String DELETED = "Deleted";
+
+    public static final String BUFFERED = "Buffered";
+
+    public static final String SENT = "Sent";
+
+    public static final String DROPPED = "Dropped";
+
+    public static final String SUCCEEDED = "Succeeded";
+
+    public static final String FAILED = "Failed";
+
+    private RoutingEvents() {
+    }
+
+    static void routeRequest(String action, RouteRequestMessage request, int prevHop) {
+        final RouteRequestEvent event = new RouteRequestEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.action = action;
+        event.originator = request.getOriginatorAddress();
+        event.originatorSequence = request.getOriginatorSequence();
+        event.requestId = request.getRequestId();
+        event.destination = request.getDestinationAddress();
+        event.destinationSequence = request.isDestinationSequenceUnknown() ? -1 : request.getDestinationSequence();
+        event.hopCount = request.getHopCount();
+        event.metric = request.getMetric();
+        event.timeToLive = request.getTimeToLive();
+        event.previousHop = prevHop;
+        event.commit();
+    }
+
+    static void routeReply(String action, RouteReplyMessage reply, int nextHop) {
+        final RouteReplyEvent event = new RouteReplyEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.action = action;
+        event.originator = reply.getOriginatorAddress();
+        event.destination = reply.getDestinationAddress();
+        event.destinationSequence = reply.getDestinationSequence();
+        event.hopCount = reply.getHopCount();
+        event.metric = reply.getMetric();
+        event.lifetime = reply.getLifetime();
+        event.nextHop = nextHop;
+        event.commit();
+    }
+
+    static void route(String action, RoutingTable routes, int route, long now) {
+        final RouteEvent event = new RouteEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.action = action;
+        event.destination = routes.getDestinationAddress(route);
+        event.destinationSequence = routes.isDestinationSequenceValid(route) ? routes.getDestinationSequence(route) : -1;
+        event.hopCount = routes.getHopCount(route);
+        event.metric = routes.getMetric(route);
+        event.nextHop = routes.getNextHop(route);
+        event.remainingLifetime = routes.getLifetime(route) - now;
+        event.commit();
+    }
+
+    static void userData(String action, UserDataMessage data, int prevHop, int nextHop, long delay) {
+        final UserDataEvent event = new UserDataEvent();
+        if (!event.isEnabled()) {
+            return;
+        }
+        event.action = action;
+        event.destination = data.getDestinationAddress();
+        event.length = data.getDataLength();
+        event.previousHop = prevHop;
+        event.nextHop = nextHop;
+        event.delay = delay;
+        event.commit();
+    }
+
+    static void routeDiscovery(RouteDiscoveryEvent event, String outcome, int destinationAddress, RouteDiscovery discovery) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.outcome = outcome;
+        event.destination = destinationAddress;
+        event.requests = discovery.getRequests();
+        event.bufferedPackets = discovery.size();
+        event.commit();
+    }
+
+    @Name("aodv.RouteRequest")
+    @Label("Route Request")
+    @Description("RREQ originated, forwarded, dropped as a duplicate or suppressed after enough copies")
+    @Category({"AODV", "Routing"})
+    @StackTrace(false)
+    static final class RouteRequestEvent extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Originator")
+        int originator;
+
+        @Label("Originator Sequence")
+        int originatorSequence;
+
+        @Label("Request Id")
+        int requestId;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Destination Sequence")
+        @Description("-1 if unknown")
+        int destinationSequence;
+
+        @Label("Hop Count")
+        int hopCount;
+
+        @Label("Metric")
+        @Description("Sum of the link costs, equals the hop count over strong links")
+        int metric;
+
+        @Label("Time To Live")
+        @Description("0 if unlimited")
+        int timeToLive;
+
+        @Label("Previous Hop")
+        int previousHop;
+    }
+
+    @Name("aodv.RouteReply")
+    @Label("Route Reply")
+    @Description("RREP generated or forwarded towards the originator")
+    @Category({"AODV", "Routing"})
+    @StackTrace(false)
+    static final class RouteReplyEvent extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Originator")
+        int originator;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Destination Sequence")
+        int destinationSequence;
+
+        @Label("Hop Count")
+        int hopCount;
+
+        @Label("Metric")
+        @Description("Sum of the link costs, equals the hop count over strong links")
+        int metric;
+
+        @Label("Lifetime")
+        @Description("Milliseconds")
+        int lifetime;
+
+        @Label("Next Hop")
+        int nextHop;
+    }
+
+    @Name("aodv.Route")
+    @Label("Route")
+    @Description("Route table entry created, updated, failed over to an alternate next hop, expired or deleted")
+    @Category({"AODV", "Routing"})
+    @StackTrace(false)
+    static final class RouteEvent extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Destination Sequence")
+        @Description("-1 if not valid")
+        int destinationSequence;
+
+        @Label("Hop Count")
+        int hopCount;
+
+        @Label("Metric")
+        @Description("Sum of the link costs, equals the hop count over strong links")
+        int metric;
+
+        @Label("Next Hop")
+        int nextHop;
+
+        @Label("Remaining Lifetime")
+        @Description("Milliseconds, negative once the route is invalid")
+        long remainingLifetime;
+    }
+
+    @Name("aodv.UserData")
+    @Label("User Data")
+    @Description("User data buffered for a route discovery, sent to the next hop or dropped")
+    @Category({"AODV", "Data"})
+    @StackTrace(false)
+    static final class UserDataEvent extends Event {
+
+        @Label("Action")
+        String action;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Length")
+        int length;
+
+        @Label("Previous Hop")
+        int previousHop;
+
+        @Label("Next Hop")
+        int nextHop;
+
+        @Label("Delay")
+        @Description("Milliseconds since the data arrived, including the wait for a route discovery")
+        long delay;
+    }
+
+    // A duration event, begins with the first RREQ and ends once a route has been found or the retries are exhausted.
+    @Name("aodv.RouteDiscovery")
+    @Label("Route Discovery")
+    @Category({"AODV", "Routing"})
+    @StackTrace(false)
+    static final class RouteDiscoveryEvent extends Event {
+
+        @Label("Outcome")
+        String outcome;
+
+        @Label("Destination")
+        int destination;
+
+        @Label("Requests")
+        @Description("RREQs sent, including the rounds of the expanding ring search")
+        int requests;
+
+        @Label("Buffered Packets")
+        int bufferedPackets;
+    }
+}
@@ -0,0 +1,78 @@
+package aodv;
+
+import java.util.function.IntConsumer;
+
+// Routes are addressed by entry handles, which stay valid until the route is removed.
+public interface RoutingTable {
+
+    int NOT_FOUND = -1;
+
+    int find(int destinationAddress);
+
+    int findOrCreate(int destinationAddress);
+
+    boolean remove(int destinationAddress);
+
+    int size();
+
+    void forEach(IntConsumer entryConsumer);
+
+    // Releases storage left over from removed routes, all entry handles are invalidated if true is returned.
+    boolean compact();
+
+    int getDestinationAddress(int entry);
+
+    int getDestinationSequence(int entry);
+
+    void setDestinationSequence(int entry, int destinationSequence);
+
+    boolean isDestinationSequenceValid(int entry);
+
+    void setDestinationSequenceValid(int entry, boolean destinationSequenceValid);
+
+    int getHopCount(int entry);
+
+    void setHopCount(int entry, int hopCount);
+
+    // The sum of the link costs to the destination, route choices compare metrics instead of hop counts.
+    int getMetric(int entry);
+
+    void setMetric(int entry, int metric);
+
+    int getNextHop(int entry);
+
+    void setNextHop(int entry, int nextHop);
+
+    long getLifetime(int entry);
+
+    void setLifetime(int entry, long lifetime);
+
+    void addPrecursor(int entry, int precursor);
+
+    int getPrecursorCount(int entry);
+
+    int getPrecursor(int entry, int index);
+
+    // Alternate next hops to the destination, ordered by metric. Their lifetimes are their own, as data only refreshes
+    // the route through the next hop in use. At most MAX_ALTERNATE_HOPS are kept, a better one replaces the worst.
+    // Adding a known next hop updates it. Returns false if the next hop was not kept.
+    boolean addAlternate(int entry, int nextHop, int metric, long lifetime);
+
+    int getAlternateCount(int entry);
+
+    int getAlternateNextHop(int entry, int index);
+
+    int getAlternateMetric(int entry, int index);
+
+    long getAlternateLifetime(int entry, int index);
+
+    void removeAlternate(int entry, int index);
+
+    void clearAlternates(int entry);
+
+    // Copies an entry into a Route object, null if there is no route to the destination.
+    Route getRoute(int destinationAddress);
+
+    void putRoute(Route route);
+
+}
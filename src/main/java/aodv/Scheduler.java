@@ -0,0 +1,25 @@
+package aodv;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+public interface Scheduler {
+
+    Cancellable schedule(Runnable task, long delayMillis);
+
+    interface Cancellable {
+
+        void cancel();
+
+    }
+
+    static Scheduler of(ScheduledExecutorService executor) {
+        return (task, delayMillis) -> {
+            final ScheduledFuture<?> future = executor.schedule(task, delayMillis, MILLISECONDS);
+            return () -> future.cancel(false);
+        };
+    }
+
+}
@@ -0,0 +1,162 @@
+package aodv;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Hashed timing wheel over int handles. Handles are linked into the bucket of their deadline, so scheduling,
+// moving and cancelling are O(1). The wheel only ticks while handles are scheduled. Deadlines beyond one
+// revolution stay in their bucket until their revolution comes.
+public class TimingWheel {
+
+    private static final int NONE = -1;
+
+    private final Scheduler scheduler;
+
+    private final Clock clock;
+
+    private final long tickMillis;
+
+    private final IntConsumer expiryHandler;
+
+    private final int[] buckets;
+
+    private int[] next = new int[0];
+
+    private int[] prev = new int[0];
+
+    private long[] deadlines = new long[0];
+
+    private int[] bucketIndices = new int[0];
+
+    private boolean[] scheduled = new boolean[0];
+
+    private int[] expired = new int[0];
+
+    private int size = 0;
+
+    private long currentTick;
+
+    private Scheduler.Cancellable timer;
+
+    public TimingWheel(Scheduler scheduler, Clock clock, long tickMillis, int bucketCount, IntConsumer expiryHandler) {
+        if (Integer.bitCount(bucketCount) != 1) {
+            throw new RuntimeException("Invalid bucket count");
+        }
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.tickMillis = tickMillis;
+        this.expiryHandler = expiryHandler;
+        this.buckets = new int[bucketCount];
+        Arrays.fill(buckets, NONE);
+    }
+
+    // Schedules the handle, unless it is already scheduled for the same or an earlier deadline. The expiry handler
+    // is expected to check the state it guards and reschedule the handle if the deadline has moved meanwhile.
+    public void schedule(int handle, long deadline) {
+        if (handle >= scheduled.length) {
+            grow(Math.max(handle + 1, scheduled.length * 2));
+        }
+        if (scheduled[handle]) {
+            if (deadlines[handle] <= deadline) {
+                return;
+            }
+            unlink(handle);
+        }
+        if (timer == null) {
+            currentTick = clock.millis() / tickMillis;
+            timer = scheduler.schedule(this::tick, tickMillis);
+        }
+        deadlines[handle] = deadline;
+        link(handle, Math.max((deadline + tickMillis - 1) / tickMillis, currentTick));                                          // First tick at or after the deadline, deadlines in the past are due on the next tick
+    }
+
+    public void cancel(int handle) {
+        if (handle < scheduled.length && scheduled[handle]) {
+            unlink(handle);
+        }
+    }
+
+    public void clear() {
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            while (buckets[bucket] != NONE) {
+                unlink(buckets[bucket]);
+            }
+        }
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+    }
+
+    public boolean isScheduled(int handle) {
+        return handle < scheduled.length && scheduled[handle];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void tick() {
+        timer = null;
+        final long now = clock.millis();
+        final long lastTick = now / tickMillis;
+        final long firstTick = Math.max(currentTick, lastTick - buckets.length + 1);                                            // After a long pause every bucket is visited once
+        int expiredCount = 0;
+        for (long tick = firstTick; tick <= lastTick; tick++) {
+            for (int handle = buckets[(int)(tick & (buckets.length - 1))]; handle != NONE; ) {
+                final int following = next[handle];
+                if (deadlines[handle] <= now) {
+                    unlink(handle);
+                    if (expiredCount == expired.length) {
+                        expired = Arrays.copyOf(expired, Math.max(16, expiredCount * 2));
+                    }
+                    expired[expiredCount++] = handle;
+                }
+                handle = following;
+            }
+        }
+        currentTick = lastTick + 1;
+        for (int i = 0; i < expiredCount; i++) {                                                                                // Handlers run after the walk, they may reschedule or cancel any handle
+            expiryHandler.accept(expired[i]);
+        }
+        if (size > 0 && timer == null) {
+            timer = scheduler.schedule(this::tick, tickMillis);
+        }
+    }
+
+    private void link(int handle, long tick) {
+        final int bucket = (int)(tick & (buckets.length - 1));
+        final int head = buckets[bucket];
+        next[handle] = head;
+        prev[handle] = NONE;
+        if (head != NONE) {
+            prev[head] = handle;
+        }
+        buckets[bucket] = handle;
+        bucketIndices[handle] = bucket;
+        scheduled[handle] = true;
+        size++;
+    }
+
+    private void unlink(int handle) {
+        if (prev[handle] != NONE) {
+            next[prev[handle]] = next[handle];
+        } else {
+            buckets[bucketIndices[handle]] = next[handle];
+        }
+        if (next[handle] != NONE) {
+            prev[next[handle]] = prev[handle];
+        }
+        scheduled[handle] = false;
+        size--;
+    }
+
+    private void grow(int capacity) {
+        next = Arrays.copyOf(next, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+        bucketIndices = Arrays.copyOf(bucketIndices, capacity);
+        scheduled = Arrays.copyOf(scheduled, capacity);
+    }
+}
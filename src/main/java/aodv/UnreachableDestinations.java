@@ -0,0 +1,60 @@
+package aodv;
+
+import java.util.Arrays;
+
+import static aodv.Utils.BROADCAST_ADDRESS;
+
+// Collects the destinations invalidated by one link failure or RERR together with the precursors to notify.
+class UnreachableDestinations {
+
+    private final int[] destinationAddresses = new int[RouteError.MAX_DESTINATIONS];
+
+    private final int[] destinationSequences = new int[RouteError.MAX_DESTINATIONS];
+
+    private int destinationCount = 0;
+
+    private int[] precursors = new int[4];
+
+    private int precursorCount = 0;
+
+    void add(int destinationAddress, int destinationSequence) {
+        destinationAddresses[destinationCount] = destinationAddress;
+        destinationSequences[destinationCount] = destinationSequence;
+        destinationCount++;
+    }
+
+    void addPrecursor(int precursor) {
+        for (int i = 0; i < precursorCount; i++) {
+            if (precursors[i] == precursor) {
+                return;
+            }
+        }
+        if (precursorCount == precursors.length) {
+            precursors = Arrays.copyOf(precursors, precursorCount * 2);
+        }
+        precursors[precursorCount++] = precursor;
+    }
+
+    boolean isFull() {
+        return destinationCount == destinationAddresses.length;
+    }
+
+    // Nothing to send if no destination became unreachable or no neighbor uses the routes.
+    boolean isReportable() {
+        return destinationCount > 0 && precursorCount > 0;
+    }
+
+    RouteError toRouteError() {
+        return new RouteError(Arrays.copyOf(destinationAddresses, destinationCount), Arrays.copyOf(destinationSequences, destinationCount));
+    }
+
+    // A single precursor is notified by unicast, several by one broadcast.
+    int getTarget() {
+        return precursorCount == 1 ? precursors[0] : BROADCAST_ADDRESS;
+    }
+
+    void clear() {
+        destinationCount = 0;
+        precursorCount = 0;
+    }
+}
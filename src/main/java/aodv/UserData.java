@@ -6,21 +6,30 @@ import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.io.*;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 import static aodv.Utils.*;
 
-public class UserData implements Message {
+public class UserData implements UserDataMessage {
 
-    private static final int TYPE = 0;
+    static final int TYPE = 0;
+
+    static final int HEADER_LENGTH = 3;
 
     private final int destinationAddress;
 
     private final byte[] data;
 
+    private final boolean fragment;
+
     public UserData(int destinationAddress, byte[] data) {
+        this(destinationAddress, data, false);
+    }
+
+    public UserData(int destinationAddress, byte[] data, boolean fragment) {
         this.destinationAddress = validate(destinationAddress, 0, MAX_16_BITS);
         this.data = data == null ? new byte[0] : data;
+        this.fragment = fragment;
     }
 
     public int getDestinationAddress() {
@@ -31,6 +40,22 @@ public class UserData implements Message {
         return data;
     }
 
+    public int getDataLength() {
+        return data.length;
+    }
+
+    public byte getData(int index) {
+        return data[index];
+    }
+
+    public boolean isFragment() {
+        return fragment;
+    }
+
+    public UserData toUserData() {
+        return this;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -43,6 +68,7 @@ public class UserData implements Message {
         return new EqualsBuilder()
                 .append(destinationAddress, userData.destinationAddress)
                 .append(data, userData.data)
+                .append(fragment, userData.fragment)
                 .isEquals();
     }
 
@@ -51,6 +77,7 @@ public class UserData implements Message {
         return new HashCodeBuilder(17, 37)
                 .append(destinationAddress)
                 .append(data)
+                .append(fragment)
                 .toHashCode();
     }
 
@@ -59,33 +86,36 @@ public class UserData implements Message {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
                 .append("destinationAddress", destinationAddress)
                 .append("data-length", data != null ? data.length : 0)
+                .append("fragment", fragment)
                 .toString();
     }
 
-    public byte[] serialize() throws IOException {
-
-        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    @Override
+    public int getEncodedLength() {
+        return HEADER_LENGTH + data.length;
+    }
 
-        final DataOutput output = new DataOutputStream(bos);
+    @Override
+    public int encodeTo(ByteBuffer buffer) {
 
         int block1 = 0;
         // type - 6 bits
-        block1 |= (TYPE & INT_MASK) << 18;
+        block1 |= ((fragment ? Fragment.TYPE : TYPE) & INT_MASK) << 18;
         // destination address - 16 bits
         block1 |= (destinationAddress & INT_MASK) << 2;
         // user data - first 2 bits
-        if (data != null && data.length > 0) {
-            block1 |= data[0] >> 6;
+        if (data.length > 0) {
+            block1 |= (data[0] & 0xFF) >> 6;
         }
-        output.write(toBytes(block1, 3));
+        putInt24(buffer, block1);
 
-        if (data != null && data.length > 0) {
-            byte[] bytes = Arrays.copyOf(data, data.length);
-            Utils.shiftBytesLeft(bytes, 2);
-            output.write(bytes);
+        // user data - remaining bits, shifted left by 2 without copying the payload
+        for (int i = 0; i < data.length; i++) {
+            final int next = i < data.length - 1 ? (data[i + 1] & 0xFF) >> 6 : 0;
+            buffer.put((byte)(data[i] << 2 | next));
         }
 
-        return bos.toByteArray();
+        return HEADER_LENGTH + data.length;
     }
 
     public static UserData parse(byte[] bytes) throws IOException {
@@ -94,13 +124,14 @@ public class UserData implements Message {
 
         final DataInput input = new DataInputStream(in);
 
-        final byte[] tmp = new byte[3];
+        final byte[] tmp = new byte[HEADER_LENGTH];
 
         input.readFully(tmp);
         final int block1 = toInt(tmp);
         final int destinationAddress = (block1 >> 2) & 0xFFFF;
+        final boolean fragment = (block1 >> 18) == Fragment.TYPE;
 
-        final byte[] data = new byte[bytes.length - 3];
+        final byte[] data = new byte[bytes.length - HEADER_LENGTH];
         if (data.length > 0) {
             input.readFully(data);
             Utils.shiftBytesRight(data, 2);
@@ -108,11 +139,18 @@ public class UserData implements Message {
             data[0] |= block1 << 6;
         }
 
-        return new UserData(destinationAddress, data);
+        return new UserData(destinationAddress, data, fragment);
     }
 
+    // Fragments are user data of their own type, they are routed the same way.
     public static boolean isUserData(byte[] bytes) {
-        return ((bytes[0] >> 2) & 0xFF) == TYPE;
+        final int type = (bytes[0] >> 2) & 0xFF;
+        return type == TYPE || type == Fragment.TYPE;
+    }
+
+    public static boolean isUserData(ByteBuffer buffer, int offset) {
+        final int type = messageType(buffer, offset);
+        return type == TYPE || type == Fragment.TYPE;
     }
 
 }
@@ -0,0 +1,17 @@
+package aodv;
+
+public interface UserDataMessage extends Message {
+
+    int getDestinationAddress();
+
+    int getDataLength();
+
+    byte getData(int index);
+
+    // True if the user data starts with a Fragment header, i.e. the frame has the type of a fragment.
+    boolean isFragment();
+
+    // Detaches the message from any shared frame buffer, e.g. before it is queued.
+    UserData toUserData();
+
+}
@@ -0,0 +1,78 @@
+package aodv;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import java.nio.ByteBuffer;
+
+import static aodv.Utils.*;
+
+// Reusable read view over an encoded UD frame, forwarding copies the frame as it is without decoding the payload.
+public class UserDataView implements UserDataMessage {
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int length;
+
+    public UserDataView wrap(ByteBuffer buffer, int offset, int length) {
+        if (length < UserData.HEADER_LENGTH || buffer.limit() - offset < length) {
+            throw new RuntimeException("Failed to wrap user data: Invalid length (" + length + ")");
+        }
+        if (!UserData.isUserData(buffer, offset)) {
+            throw new RuntimeException("Failed to wrap user data: Invalid type (" + messageType(buffer, offset) + ")");
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        return this;
+    }
+
+    public int getDestinationAddress() {
+        return (getInt24(buffer, offset) >> 2) & 0xFFFF;
+    }
+
+    public int getDataLength() {
+        return length - UserData.HEADER_LENGTH;
+    }
+
+    // Each payload byte straddles two frame bytes: its first 2 bits end the previous one, its last 6 bits start the next one.
+    public byte getData(int index) {
+        final int i = offset + UserData.HEADER_LENGTH + index;
+        return (byte)(buffer.get(i - 1) << 6 | (buffer.get(i) & 0xFF) >> 2);
+    }
+
+    public boolean isFragment() {
+        return messageType(buffer, offset) == Fragment.TYPE;
+    }
+
+    @Override
+    public UserData toUserData() {
+        final byte[] data = new byte[getDataLength()];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = getData(i);
+        }
+        return new UserData(getDestinationAddress(), data, isFragment());
+    }
+
+    @Override
+    public int getEncodedLength() {
+        return length;
+    }
+
+    @Override
+    public int encodeTo(ByteBuffer target) {
+        copy(buffer, offset, length, target);
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("destinationAddress", getDestinationAddress())
+                .append("data-length", getDataLength())
+                .append("fragment", isFragment())
+                .toString();
+    }
+}
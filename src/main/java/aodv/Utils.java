@@ -1,15 +1,44 @@
 package aodv;
 
+import java.nio.ByteBuffer;
+
 public class Utils {
 
     public static final int ACTIVE_ROUTE_TIMEOUT = 3000;
     public static final int MY_ROUTE_TIMEOUT = 2 * ACTIVE_ROUTE_TIMEOUT;
+    public static final int DELETE_PERIOD = 5 * ACTIVE_ROUTE_TIMEOUT;
     public static final int NET_DIAMETER = 35;
     public static final int NODE_TRAVERSAL_TIME = 40;
     public static final int NET_TRAVERSAL_TIME = 2 * NODE_TRAVERSAL_TIME * NET_DIAMETER;
+    public static final int PATH_DISCOVERY_TIME = 2 * NET_TRAVERSAL_TIME;
     public static final int RREQ_RETRIES = 2;
+    public static final int RREQ_BUFFER_CAPACITY = 1024;
+    public static final int PENDING_PACKETS_CAPACITY = 64;
+    public static final int EXPIRY_TICK = 250;
+    public static final int EXPIRY_BUCKETS = 64;
+    public static final int REASSEMBLY_TIMEOUT = 2 * NET_TRAVERSAL_TIME;
+    public static final int REASSEMBLY_CAPACITY = 8;
+    public static final int REASSEMBLY_BUFFERED_FRAGMENTS = 16;
+    public static final int AGGREGATION_WINDOW = 100;
+    public static final int MAX_FRAME_LENGTH = 250;
+    public static final int FRAGMENT_DATA_LENGTH = MAX_FRAME_LENGTH - UserData.HEADER_LENGTH - Fragment.HEADER_LENGTH;
+    public static final int BROADCAST_JITTER = NODE_TRAVERSAL_TIME;
+    public static final int RREQ_COPY_THRESHOLD = 3;
+    public static final int TTL_START = 1;
+    public static final int TTL_INCREMENT = 2;
+    public static final int TTL_THRESHOLD = 7;
+    public static final int TIMEOUT_BUFFER = 2;
+    public static final int UNLIMITED_TTL = 0;
+    public static final int MAX_ALTERNATE_HOPS = 2;
+    public static final int GOOD_LINK_RSSI = -100;
+    public static final int LINK_COST_STEP = 6;
+    public static final int MAX_LINK_COST = 4;
+    public static final int RSSI_AVERAGING_WEIGHT = 4;
+    public static final int LINK_QUALITY_CAPACITY = 64;
+    public static final int RESTART_MARGIN = 32;
 
     public static final int INT_MASK = 0xffffffff;
+    public static final int MAX_5_BITS = 32 - 1;
     public static final int MAX_6_BITS = 64 - 1;
     public static final int MAX_8_BITS = 256 - 1;
     public static final int MAX_16_BITS = 65536 - 1;
@@ -32,6 +61,36 @@ public class Utils {
         return bytes;
     }
 
+    public static void putInt24(ByteBuffer buffer, int value) {
+        buffer.put((byte)(value >> 16));
+        buffer.put((byte)(value >> 8));
+        buffer.put((byte)value);
+    }
+
+    public static int getInt24(ByteBuffer buffer) {
+        return (buffer.get() & 0xFF) << 16 | (buffer.get() & 0xFF) << 8 | (buffer.get() & 0xFF);
+    }
+
+    public static void putInt24(ByteBuffer buffer, int index, int value) {
+        buffer.put(index, (byte)(value >> 16));
+        buffer.put(index + 1, (byte)(value >> 8));
+        buffer.put(index + 2, (byte)value);
+    }
+
+    public static int getInt24(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xFF) << 16 | (buffer.get(index + 1) & 0xFF) << 8 | (buffer.get(index + 2) & 0xFF);
+    }
+
+    public static int messageType(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xFF) >> 2;
+    }
+
+    public static void copy(ByteBuffer source, int index, int length, ByteBuffer target) {
+        for (int i = 0; i < length; i++) {
+            target.put(source.get(index + i));
+        }
+    }
+
     public static int toInt(byte[] bytes) {
         final int length = bytes.length;
         if (length == 0 || length > 8) {
@@ -63,6 +122,22 @@ public class Utils {
         }
     }
 
+    // The 8 bit sequence number skips 0 when it wraps around, 0 stands for an unknown sequence number.
+    public static int nextSequence(int sequence) {
+        return sequence == MAX_8_BITS ? 1 : sequence + 1;
+    }
+
+    // Rollover comparison of RFC 3561 section 6.1, the difference is taken as a signed 8 bit number. After a wrap
+    // around, 1 is fresher than 255.
+    public static boolean isFresher(int sequence, int other) {
+        return (byte)(sequence - other) > 0;
+    }
+
+    // Metrics saturate instead of failing, a path can't get any worse than MAX_8_BITS.
+    public static int addLinkCost(int metric, int linkCost) {
+        return Math.min(metric + linkCost, MAX_8_BITS);
+    }
+
     public static int validate(int value, int min, int max) {
         if (value < min || value > max) {
             throw new RuntimeException("Value exceeds limits (value: " + value + ", min: " + min + ", max: " + max + ")");
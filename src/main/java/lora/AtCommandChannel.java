@@ -0,0 +1,312 @@
+package lora;
+
+import aodv.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Asynchronous AT command channel. Callers queue commands and get a future for the response instead of blocking.
+// The modem handles one command at a time, so the next queued command is written from the thread delivering the
+// response to the previous one, and responses are matched to commands in FIFO order. Each command times out on its
+// own, 'AT,SENDING' is an intermediate state that restarts the timeout until 'AT,SENDED' arrives. Commands that would
+// not change the mirrored modem registers are answered with 'AT,OK' without being written. Lines that don't look like
+// a response, e.g. 'AT,WAKEUP', are unsolicited. After a timeout the channel resyncs before the next command: it writes
+// a probe whose response can't be mistaken for a late one to the lost command and discards everything before it.
+public class AtCommandChannel {
+
+    public static final String SENDING = "AT,SENDING";
+
+    public static final String SENDED = "AT,SENDED";
+
+    private final OutputStream out;
+
+    private final ScheduledExecutorService timer;
+
+    private final long timeoutMillis;
+
+    private final ModemRegisters registers = new ModemRegisters();
+
+    private final LatencyHistogram roundTrips;
+
+    private final ArrayDeque<Exchange> queued = new ArrayDeque<>();
+
+    private long skippedCommands = 0;
+
+    private Exchange current;
+
+    public AtCommandChannel(OutputStream out, ScheduledExecutorService timer, long timeoutMillis) {
+        this(out, timer, timeoutMillis, new LatencyHistogram());
+    }
+
+    // Records the milliseconds from writing the first command of an exchange to its final response.
+    public AtCommandChannel(OutputStream out, ScheduledExecutorService timer, long timeoutMillis, LatencyHistogram roundTrips) {
+        this.out = out;
+        this.timer = timer;
+        this.timeoutMillis = timeoutMillis;
+        this.roundTrips = roundTrips;
+    }
+
+    public CompletableFuture<String> send(String command) {
+        return sendAll(command(command));
+    }
+
+    // Queues the requests back to back, no other command is written in between. Each request is only written once
+    // the previous one has been answered successfully, the future completes with the first unsuccessful response or
+    // the response to the last request.
+    public CompletableFuture<String> sendAll(Request... requests) {
+        final Exchange exchange = new Exchange(requests);
+        final List<Completion> completions = new ArrayList<>();
+        synchronized (this) {
+            queued.add(exchange);
+            if (current == null) {
+                advance(completions);
+            }
+        }
+        complete(completions);
+        return exchange.future;
+    }
+
+    // Returns false if no command is waiting for a response or the line is no response, i.e. it is unsolicited.
+    public boolean onResponse(String line) {
+        final List<Completion> completions = new ArrayList<>();
+        synchronized (this) {
+            if (current == null || !isResponse(line)) {
+                return false;
+            }
+            final Exchange exchange = current;
+            if (exchange.probe && !endsResync(exchange, line)) {
+                return true;                                                                                                    // Discarded while resyncing, e.g. the late response to the lost command
+            }
+            exchange.timeout.cancel(false);
+            if (line.startsWith(SENDING)) {
+                exchange.timeout = timer.schedule(() -> onTimeout(exchange), timeoutMillis, TimeUnit.MILLISECONDS);
+                return true;
+            }
+            exchange.endEvent(line);
+            registers.update(exchange.requests[exchange.index].command, line);
+            if (isOk(line) && exchange.index + 1 < exchange.requests.length) {
+                exchange.index++;
+                write(exchange, completions);
+            } else {
+                if (!exchange.probe) {
+                    roundTrips.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - exchange.writtenAt));
+                }
+                completions.add(new Completion(exchange.future, line, null));
+                advance(completions);
+            }
+        }
+        complete(completions);
+        return true;
+    }
+
+    public synchronized long getSkippedCommands() {
+        return skippedCommands;
+    }
+
+    public synchronized ModemRegisters getRegisters() {
+        return registers;
+    }
+
+    public LatencyHistogram getRoundTrips() {
+        return roundTrips;
+    }
+
+    public synchronized int getQueuedCommands() {
+        return queued.size() + (current != null ? 1 : 0);
+    }
+
+    public void close() {
+        final List<Completion> completions = new ArrayList<>();
+        synchronized (this) {
+            if (current != null) {
+                current.timeout.cancel(false);
+                completions.add(new Completion(current.future, null, new IOException("Channel closed")));
+                current = null;
+            }
+            for (Exchange exchange : queued) {
+                completions.add(new Completion(exchange.future, null, new IOException("Channel closed")));
+            }
+            queued.clear();
+        }
+        complete(completions);
+    }
+
+    public static boolean isOk(String response) {
+        return response != null && (response.startsWith("AT,OK") || response.endsWith(",OK") || response.startsWith(SENDED));
+    }
+
+    // Responses are 'AT,OK', 'AT,<value>,OK', the states of a transmission or errors like 'ERR:PARA'.
+    static boolean isResponse(String line) {
+        return line.startsWith("ERR") || line.startsWith(SENDING) || line.startsWith(SENDED) || (line.startsWith("AT,") && line.endsWith(",OK"));
+    }
+
+    // The response to a query, e.g. 'AT,0065,OK' to 'AT+ADDR?'.
+    static boolean isValue(String line) {
+        return line.startsWith("AT,") && line.endsWith(",OK") && !line.equals("AT,OK");
+    }
+
+    public static Request command(String command) {
+        return new Request(command, (command + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Payload following 'AT+SEND', written as it is without a line break.
+    public static Request data(byte[] data) {
+        return new Request(null, data);
+    }
+
+    private void onTimeout(Exchange exchange) {
+        final List<Completion> completions = new ArrayList<>();
+        synchronized (this) {
+            if (current != exchange) {
+                return;
+            }
+            exchange.endEvent("No response within " + timeoutMillis + "ms");
+            completions.add(new Completion(exchange.future, null, new TimeoutException("No response within " + timeoutMillis + "ms")));
+            registers.invalidate();
+            if (exchange.probe) {
+                for (Exchange waiting : queued) {                                                                               // The modem doesn't answer at all, don't let the callers wait for it
+                    completions.add(new Completion(waiting.future, null, new TimeoutException("Modem not responding")));
+                }
+                queued.clear();
+            }
+            current = probe(exchange.requests[exchange.index].command);                                                         // A late response must not be matched to the next command
+            write(current, completions);
+        }
+        complete(completions);
+    }
+
+    // A query answers with a value, so the probe after it expects a plain 'AT,OK'. Any other command, the payload of a
+    // frame included, answers without one, so the probe after it queries the address and expects a value.
+    private static Exchange probe(String lostCommand) {
+        final boolean query = lostCommand != null && lostCommand.endsWith("?");
+        final Exchange probe = new Exchange(new Request[] {command(query ? "AT" : "AT+ADDR?")});
+        probe.probe = true;
+        return probe;
+    }
+
+    private static boolean endsResync(Exchange probe, String line) {
+        return probe.requests[0].command.endsWith("?") ? isValue(line) : line.equals("AT,OK");
+    }
+
+    private void advance(List<Completion> completions) {
+        current = queued.poll();
+        if (current != null) {
+            write(current, completions);
+        }
+    }
+
+    private void write(Exchange exchange, List<Completion> completions) {
+        Request request = exchange.requests[exchange.index];
+        while (request.command != null && registers.isCurrent(request.command)) {                                               // Decided when writing, earlier exchanges may have changed the registers
+            skippedCommands++;
+            if (exchange.index + 1 == exchange.requests.length) {
+                completions.add(new Completion(exchange.future, "AT,OK", null));
+                advance(completions);
+                return;
+            }
+            request = exchange.requests[++exchange.index];
+        }
+        if (exchange.writtenAt == 0) {
+            exchange.writtenAt = System.nanoTime();
+        }
+        exchange.beginEvent(request);
+        try {
+            out.write(request.bytes);
+            out.flush();
+            exchange.timeout = timer.schedule(() -> onTimeout(exchange), timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            exchange.endEvent(e.toString());
+            completions.add(new Completion(exchange.future, null, e));
+            registers.invalidate();
+            advance(completions);
+        }
+    }
+
+    // Futures are completed outside of the lock, dependent stages may queue further commands.
+    private static void complete(List<Completion> completions) {
+        for (Completion completion : completions) {
+            if (completion.error != null) {
+                completion.future.completeExceptionally(completion.error);
+            } else {
+                completion.future.complete(completion.response);
+            }
+        }
+    }
+
+    public static class Request {
+
+        private final String command;
+
+        private final byte[] bytes;
+
+        private Request(String command, byte[] bytes) {
+            this.command = command;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Exchange {
+
+        private final Request[] requests;
+
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private int index = 0;
+
+        private long writtenAt = 0;
+
+        private ScheduledFuture<?> timeout;
+
+        private AtCommandEvent event;
+
+        private boolean probe = false;
+
+        private Exchange(Request[] requests) {
+            this.requests = requests;
+        }
+
+        private void beginEvent(Request request) {
+            event = new AtCommandEvent();
+            if (event.isEnabled()) {
+                event.command = request.command != null ? request.command : request.bytes.length + " bytes";
+                event.begin();
+            }
+        }
+
+        private void endEvent(String response) {
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.response = response;
+                event.commit();
+            }
+            event = null;
+        }
+    }
+
+    private static class Completion {
+
+        private final CompletableFuture<String> future;
+
+        private final String response;
+
+        private final Throwable error;
+
+        private Completion(CompletableFuture<String> future, String response, Throwable error) {
+            this.future = future;
+            this.response = response;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package lora;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JDK Flight Recorder event of one AT command, from writing it to the modem until its final response. The duration of
+// 'AT+SEND' payloads includes the time on air, 'AT,SENDING' does not end it.
+@Name("lora.AtCommand")
+@Label("AT Command")
+@Category({"AODV", "Serial"})
+@StackTrace(false)
+class AtCommandEvent extends Event {
+
+    @Label("Command")
+    @Description("The payload following 'AT+SEND' is given as its length only")
+    String command;
+
+    @Label("Response")
+    @Description("Final response, or the error if there was none")
+    String response;
+}
@@ -0,0 +1,56 @@
+package lora;
+
+import java.util.Arrays;
+
+// Decodes a slice of a buffer into a caller owned array, java.util.Base64 only decodes whole arrays or allocates.
+public final class Base64Decoder {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = i;
+        }
+    }
+
+    private Base64Decoder() {
+    }
+
+    public static int maxDecodedLength(int encodedLength) {
+        return (encodedLength + 3) / 4 * 3;
+    }
+
+    // Returns the number of decoded bytes written to the target, padding is optional.
+    public static int decode(byte[] source, int offset, int length, byte[] target) {
+        int end = offset + length;
+        while (end > offset && source[end - 1] == '=') {
+            end--;
+        }
+        if ((end - offset) % 4 == 1 || offset + length - end > 2) {
+            throw new RuntimeException("Failed to decode Base64: Invalid length (" + length + ")");
+        }
+        if (maxDecodedLength(end - offset) > target.length) {
+            throw new RuntimeException("Failed to decode Base64: Target too small (" + target.length + ")");
+        }
+        int bits = 0;
+        int bitCount = 0;
+        int count = 0;
+        for (int i = offset; i < end; i++) {
+            final int c = source[i];
+            final int value = c >= 0 ? VALUES[c] : -1;
+            if (value < 0) {
+                throw new RuntimeException("Failed to decode Base64: Invalid character (" + (char) (c & 0xFF) + ")");
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                target[count++] = (byte) (bits >> bitCount);
+            }
+        }
+        return count;
+    }
+}
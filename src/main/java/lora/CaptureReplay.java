@@ -0,0 +1,222 @@
+package lora;
+
+import aodv.*;
+import sim.VirtualClock;
+import sim.VirtualScheduler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Feeds the received and originated frames and the RSSI samples of a capture back through a router on a virtual clock,
+// as fast as possible. Timers fire at the virtual time they would have fired in the field, so discoveries, retries and
+// expiries happen as they did.
+// Frames are decoded into reused views like LoraNode does, which makes a replay a realistic load for profiling.
+//
+// Usage: CaptureReplay <capture file> <node address, hex> [passes]
+public class CaptureReplay implements RoutingCallback {
+
+    private final VirtualScheduler scheduler;
+
+    private final AodvRouterImpl router;
+
+    private final ByteBuffer frame = ByteBuffer.allocate(256);
+
+    private final RouteRequestView requestView = new RouteRequestView();
+
+    private final RouteReplyView replyView = new RouteReplyView();
+
+    private final UserDataView userDataView = new UserDataView();
+
+    private final RouteErrorView errorView = new RouteErrorView();
+
+    private final AggregateView aggregateView = new AggregateView();
+
+    private long replayedFrames = 0;
+
+    private long capturedSends = 0;
+
+    private long sentFrames = 0;
+
+    private long malformedFrames = 0;
+
+    public CaptureReplay(int address, long startMillis) {
+        this.scheduler = new VirtualScheduler(new VirtualClock(startMillis));
+        this.router = new AodvRouterImpl(this, scheduler.getClock(), scheduler, new Random(1));                                 // Seeded, replays of the same capture are repeatable
+        this.router.setAddress(address);
+    }
+
+    public void replay(FrameCaptureLog.CapturedFrame captured) {
+
+        scheduler.runUntil(Math.max(captured.getTimestamp(), scheduler.getClock().millis()));                                   // The wall clock of the node may have been set back
+
+        if (captured.getDirection() == FrameCaptureLog.OUTBOUND) {
+            capturedSends++;                                                                                                    // The router sends again by itself, these are only counted for comparison
+            return;
+        }
+
+        if (captured.getDirection() == FrameCaptureLog.LINK_QUALITY) {
+            router.processLinkQuality(captured.getHop(), captured.getRssi());
+            return;
+        }
+
+        replayedFrames++;
+        final int length = captured.getPayload().length;
+        frame.clear();
+        frame.put(captured.getPayload()).flip();
+        final Message message;
+        try {
+            message = decode(length);
+        } catch (RuntimeException e) {
+            malformedFrames++;
+            return;
+        }
+        if (captured.getDirection() == FrameCaptureLog.ORIGINATED) {
+            originate(message);
+            return;
+        }
+        dispatch(message, captured.getHop());                                                                                   // Not guarded, an exception thrown by the router is a bug and ends the replay
+    }
+
+    // Lets the timers still pending after the last frame run, e.g. for the route lifetimes to expire.
+    public void drain(long millis) {
+        scheduler.runFor(millis);
+    }
+
+    public RouterStats getStats() {
+        return router.getStats();
+    }
+
+    public long getReplayedFrames() {
+        return replayedFrames;
+    }
+
+    public long getCapturedSends() {
+        return capturedSends;
+    }
+
+    public long getSentFrames() {
+        return sentFrames;
+    }
+
+    public long getMalformedFrames() {
+        return malformedFrames;
+    }
+
+    // The entries of an aggregate are wrapped once upfront, so a malformed entry is found before any of them reaches the
+    // router.
+    private Message decode(int length) {
+
+        if (UserData.isUserData(frame, 0)) {
+
+            return userDataView.wrap(frame, 0, length);
+
+        } else if (AggregateView.isAggregate(frame, 0)) {
+
+            final AggregateView aggregate = aggregateView.wrap(frame, 0, length);
+            for (int i = 0; i < aggregate.getCount(); i++) {
+                aggregate.getUserData(i, userDataView);
+            }
+            return aggregate;
+
+        } else if (RouteRequest.isRouteRequest(frame, 0)) {
+
+            return requestView.wrap(frame, 0, length);
+
+        } else if (RouteReply.isRouteReply(frame, 0)) {
+
+            return replyView.wrap(frame, 0, length);
+
+        } else if (RouteError.isRouteError(frame, 0)) {
+
+            return errorView.wrap(frame, 0, length);
+        }
+        throw new RuntimeException("Failed to decode frame: Invalid type (" + Utils.messageType(frame, 0) + ")");
+    }
+
+    private void dispatch(Message message, int prevHop) {
+
+        if (message instanceof UserDataView) {
+
+            router.processUserData((UserDataView)message, prevHop);
+
+        } else if (message instanceof AggregateView) {
+
+            final AggregateView aggregate = (AggregateView)message;
+            for (int i = 0; i < aggregate.getCount(); i++) {
+                router.processUserData(aggregate.getUserData(i, userDataView), prevHop);
+            }
+
+        } else if (message instanceof RouteRequestView) {
+
+            router.processRouteRequest((RouteRequestView)message, prevHop);
+
+        } else if (message instanceof RouteReplyView) {
+
+            router.processRouteReply((RouteReplyView)message, prevHop);
+
+        } else if (message instanceof RouteErrorView) {
+
+            router.processRouteError((RouteErrorView)message, prevHop);
+        }
+    }
+
+    // The fragments of a message were handed to the router at once, one at a time they still join the same discovery.
+    private void originate(Message message) {
+        if (!(message instanceof UserDataView)) {
+            malformedFrames++;
+            return;
+        }
+        router.processUserData((UserDataView)message);
+    }
+
+    @Override
+    public void send(Message message, int destination) {
+        sentFrames++;
+    }
+
+    @Override
+    public void onError(String msg) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format("replayed=%d malformed=%d sent=%d (captured %d)", replayedFrames, malformedFrames, sentFrames, capturedSends);
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.out.println("Usage: CaptureReplay <capture file> <node address, hex> [passes]");
+            return;
+        }
+        final Path file = Paths.get(args[0]);
+        final int address = Integer.parseInt(args[1], 16);
+        final int passes = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        final List<FrameCaptureLog.CapturedFrame> frames = new ArrayList<>();                                                   // Read upfront, the passes measure the router only
+        FrameCaptureLog.read(file, frames::add);
+        if (frames.isEmpty()) {
+            System.out.println("Capture is empty: " + file);
+            return;
+        }
+
+        for (int pass = 1; pass <= passes; pass++) {
+            final CaptureReplay replay = new CaptureReplay(address, frames.get(0).getTimestamp());
+            final long start = System.nanoTime();
+            for (FrameCaptureLog.CapturedFrame frame : frames) {
+                replay.replay(frame);
+            }
+            final long nanos = System.nanoTime() - start;
+            System.out.printf("=== pass %d: %s, simulated=%ds, wall=%dms, %.0f frames/s%n", pass, replay,
+                    (frames.get(frames.size() - 1).getTimestamp() - frames.get(0).getTimestamp()) / 1000, nanos / 1_000_000, replay.getReplayedFrames() * 1e9 / nanos);
+            if (pass == passes) {
+                System.out.println(replay.getStats());
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package lora;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Append-only capture of the frames a node receives and sends, for replaying field traffic offline. Frames are copied
+// and handed to a background writer, the serial listener never waits for the disk. If the writer falls behind by more
+// than QUEUE_CAPACITY frames, further frames are dropped and counted instead.
+//
+//   header: magic (32 bits) | version (8 bits)
+//   per frame: timestamp (64 bits) | direction (8 bits) | hop (16 bits) | rssi (16 bits) | length (8 bits) | payload
+//
+// The hop is the previous hop of a received frame and the next hop of a sent one. The payload is the decoded AODV
+// message, independent of the transport. Originated records hold the UD frames the application sent, before routing,
+// with the own address as the hop. The modem reports the RSSI only on request, so samples are records of their own,
+// with the neighbor as the hop and an empty payload. Version 1 captures lack both and are upgraded in place when
+// appended to. A record torn by a crash ends the capture when reading, earlier records stay readable. It is cut off
+// before frames are appended to the capture again.
+public class FrameCaptureLog implements Closeable {
+
+    static final int MAGIC = 0x4C434150;                                                                                        // "LCAP"
+
+    static final int VERSION = 2;
+
+    public static final int INBOUND = 0;
+
+    public static final int OUTBOUND = 1;
+
+    public static final int LINK_QUALITY = 2;
+
+    public static final int ORIGINATED = 3;
+
+    public static final int UNKNOWN_RSSI = Short.MIN_VALUE;
+
+    private static final int HEADER_LENGTH = 5;
+
+    private static final int RECORD_HEADER_LENGTH = 14;
+
+    static final int QUEUE_CAPACITY = 4096;
+
+    private static final long CLOSE_POLL_INTERVAL = 100;
+
+    private static final CapturedFrame END = new CapturedFrame(0, 0, 0, 0, new byte[0]);
+
+    private final BlockingQueue<CapturedFrame> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+    private final DataOutputStream out;
+
+    private final Thread writer;
+
+    private final LongAdder droppedFrames = new LongAdder();
+
+    private volatile IOException error;
+
+    public FrameCaptureLog(Path file) throws IOException {
+        this(open(file));
+    }
+
+    FrameCaptureLog(OutputStream stream) {
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.writer = new Thread(this::write, "lora-capture");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void capture(long timestamp, int direction, int hop, int rssi, byte[] payload, int offset, int length) {
+        if (length > 0xFF) {
+            throw new RuntimeException("Failed to capture frame: Payload too long (" + length + ")");
+        }
+        if (error != null || !queue.offer(new CapturedFrame(timestamp, direction, hop, rssi, Arrays.copyOfRange(payload, offset, offset + length)))) {
+            droppedFrames.increment();                                                                                          // Received and sent frames are captured from different threads
+        }
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    // Writes the frames queued so far and closes the file. A writer that failed no longer drains the queue, so it is
+    // only waited for while it is alive.
+    @Override
+    public void close() throws IOException {
+        try {
+            while (writer.isAlive()) {
+                if (queue.offer(END, CLOSE_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            }
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                final CapturedFrame frame = queue.take();
+                if (frame == END) {
+                    break;
+                }
+                out.writeLong(frame.timestamp);
+                out.writeByte(frame.direction);
+                out.writeShort(frame.hop);
+                out.writeShort(frame.rssi);
+                out.writeByte(frame.payload.length);
+                out.write(frame.payload);
+                if (queue.isEmpty()) {
+                    out.flush();                                                                                                // Batches the writes while frames arrive back to back
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+            System.out.println("Failed to write capture: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static OutputStream open(Path file) throws IOException {
+        final boolean empty = !Files.exists(file) || Files.size(file) == 0;
+        if (!empty) {
+            truncateTornRecord(file);
+            upgradeHeader(file);
+        }
+        final OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (empty) {
+            final DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.flush();
+        }
+        return stream;
+    }
+
+    // Cuts off a record torn by a crash, frames appended behind it would be unreadable.
+    private static void truncateTornRecord(Path file) throws IOException {
+        final long[] length = {HEADER_LENGTH};
+        read(file, frame -> length[0] += RECORD_HEADER_LENGTH + frame.payload.length);
+        if (Files.size(file) > length[0]) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(length[0]);
+            }
+        }
+    }
+
+    // The records of older versions are a subset, only the version has to change before appending.
+    private static void upgradeHeader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {VERSION}), HEADER_LENGTH - 1);
+        }
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new RuntimeException("Failed to read capture: Invalid magic");
+            }
+            final int version = in.readUnsignedByte();
+            if (version < 1 || version > VERSION) {
+                throw new RuntimeException("Failed to read capture: Unsupported version (" + version + ")");
+            }
+        } catch (EOFException e) {
+            throw new RuntimeException("Failed to read capture: Invalid header");
+        }
+    }
+
+    // Streams the frames of a capture in the order they were written.
+    public static void read(Path file, Consumer consumer) throws IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            readHeader(in);
+            while (true) {
+                final CapturedFrame frame;
+                try {
+                    final long timestamp = in.readLong();
+                    final int direction = in.readUnsignedByte();
+                    final int hop = in.readUnsignedShort();
+                    final int rssi = in.readShort();
+                    final byte[] payload = new byte[in.readUnsignedByte()];
+                    in.readFully(payload);
+                    frame = new CapturedFrame(timestamp, direction, hop, rssi, payload);
+                } catch (EOFException e) {
+                    return;                                                                                                     // End of the capture or a torn last record
+                }
+                consumer.accept(frame);
+            }
+        }
+    }
+
+    public interface Consumer {
+
+        void accept(CapturedFrame frame);
+    }
+
+    public static class CapturedFrame {
+
+        private final long timestamp;
+
+        private final int direction;
+
+        private final int hop;
+
+        private final int rssi;
+
+        private final byte[] payload;
+
+        public CapturedFrame(long timestamp, int direction, int hop, int rssi, byte[] payload) {
+            this.timestamp = timestamp;
+            this.direction = direction;
+            this.hop = hop;
+            this.rssi = rssi;
+            this.payload = payload;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getDirection() {
+            return direction;
+        }
+
+        public int getHop() {
+            return hop;
+        }
+
+        public int getRssi() {
+            return rssi;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package lora;
+
+import java.nio.charset.StandardCharsets;
+
+// Splits the serial byte stream into lines without decoding it. Bytes are read into one fixed buffer and scanned for
+// CR/LF, each complete line is handed to the handler as a slice of that buffer, which is only valid until the handler
+// returns. The unterminated rest is moved to the front of the buffer, a line longer than the buffer is dropped.
+// Binary frames may contain line breaks, so a FrameLength function can claim a line by its header, it is then handed
+// out after exactly that many bytes, untrimmed.
+public class LineFramer {
+
+    public static final int TEXT = -1;
+
+    public static final int UNDECIDED = -2;
+
+    private final byte[] buffer;
+
+    private final FrameLength frameLength;
+
+    private final LineHandler handler;
+
+    private int length = 0;
+
+    private int currentLength = UNDECIDED;
+
+    private boolean discarding = false;
+
+    private long droppedLines = 0;
+
+    public LineFramer(int capacity, LineHandler handler) {
+        this(capacity, (buffer, offset, available) -> TEXT, handler);
+    }
+
+    public LineFramer(int capacity, FrameLength frameLength, LineHandler handler) {
+        this.buffer = new byte[capacity];
+        this.frameLength = frameLength;
+        this.handler = handler;
+    }
+
+    // Reads once from the source straight into the free part of the buffer, returns the number of bytes read.
+    public int fill(Source source) {
+        final int count = source.read(buffer, length, buffer.length - length);
+        if (count > 0) {
+            scan(count);
+        }
+        return count;
+    }
+
+    public void accept(byte[] bytes, int offset, int count) {
+        while (count > 0) {
+            final int chunk = Math.min(count, buffer.length - length);
+            System.arraycopy(bytes, offset, buffer, length, chunk);
+            scan(chunk);
+            offset += chunk;
+            count -= chunk;
+        }
+    }
+
+    public long getDroppedLines() {
+        return droppedLines;
+    }
+
+    private void scan(int count) {
+        final int end = length + count;
+        int start = 0;
+        int i = length;                                                                                                         // Bytes before were already searched for line breaks
+        int asked = -1;
+        while (i < end) {
+            if (!discarding && currentLength == UNDECIDED && asked != start) {
+                asked = start;                                                                                                  // Asked again with the next chunk, if still undecided
+                currentLength = frameLength.frameLength(buffer, start, end - start);
+            }
+            if (currentLength >= 0) {
+                if (end - start < currentLength) {
+                    i = end;
+                    break;
+                }
+                handler.onLine(buffer, start, currentLength);
+                start += currentLength;
+                i = start;
+                currentLength = UNDECIDED;
+                continue;
+            }
+            final byte b = buffer[i];
+            if (b == '\r' || b == '\n') {
+                if (discarding) {
+                    discarding = false;                                                                                         // End of an overlong line, nothing to hand out
+                } else {
+                    emit(start, i);
+                }
+                start = i + 1;
+                currentLength = UNDECIDED;
+            }
+            i++;
+        }
+        if (discarding) {
+            length = 0;
+        } else if (start == 0 && end == buffer.length) {
+            droppedLines++;
+            discarding = true;
+            currentLength = UNDECIDED;
+            length = 0;
+        } else {
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            length = end - start;
+        }
+    }
+
+    private void emit(int start, int end) {
+        while (start < end && buffer[start] <= ' ') {
+            start++;
+        }
+        while (end > start && buffer[end - 1] <= ' ') {
+            end--;
+        }
+        if (end > start) {                                                                                                      // CRLF leaves an empty line between CR and LF
+            handler.onLine(buffer, start, end - start);
+        }
+    }
+
+    public static boolean startsWith(byte[] bytes, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Returns the index of the value within the range, or -1.
+    public static int indexOf(byte[] bytes, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Returns -1 for an empty range or any character that is not a hex digit.
+    public static int parseHex(byte[] bytes, int from, int to) {
+        if (from >= to || to - from > 7) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            final int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    public static String toString(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, StandardCharsets.US_ASCII);
+    }
+
+    // Returns the length of a binary frame starting at the offset, TEXT for a line ending at the next line break, or
+    // UNDECIDED if more bytes are needed to tell.
+    public interface FrameLength {
+
+        int frameLength(byte[] buffer, int offset, int available);
+    }
+
+    public interface LineHandler {
+
+        void onLine(byte[] buffer, int offset, int length);
+    }
+
+    public interface Source {
+
+        int read(byte[] buffer, int offset, int length);
+    }
+}
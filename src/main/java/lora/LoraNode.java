@@ -6,39 +6,197 @@ import com.fazecast.jSerialComm.SerialPortDataListener;
 import com.fazecast.jSerialComm.SerialPortEvent;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.Clock;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.lang.Integer.parseInt;
+import static lora.AtCommandChannel.command;
+import static lora.AtCommandChannel.data;
 import static org.apache.commons.lang3.StringUtils.*;
 
 public class LoraNode implements SerialPortDataListener, RoutingCallback {
 
+    private static final long COMMAND_TIMEOUT = 10000;
+
+    private static final int MAX_LINE_LENGTH = 512;                                                                             // 'LR,XXXX,XX,' followed by up to 250 payload characters
+
+    private static final int MAX_PAYLOAD_LENGTH = 250;
+
+    private static final byte[] LR_PREFIX = {'L', 'R', ','};
+
+    private static final int LR_HEADER_LENGTH = 11;
+
+    private static final String MODEM_CONFIG = "433000000,20,6,10,1,1,0,0,0,0,3000,8,4";                                        // Assumed until an AT+CFG is sent through the node
+
+    private static final double DUTY_CYCLE = 0.01;
+
+    private static final long DUTY_CYCLE_WINDOW = 60 * 60 * 1000;
+
+    private static final int TRANSMIT_QUEUE_CAPACITY = 64;
+
+    private static final long SNAPSHOT_INTERVAL = 10_000;
+
+    private static final long RSSI_QUERY_INTERVAL = 30_000;
+
     private final SerialPort port;
 
-    private final AodvRouter router = new AodvRouterImpl(this, Clock.systemDefaultZone());
+    private final Transport transport;
+
+    private final LineFramer framer = new LineFramer(MAX_LINE_LENGTH, LoraNode::frameLength, this::receiveLine);
+
+    private final byte[] payload = new byte[Base64Decoder.maxDecodedLength(MAX_LINE_LENGTH)];
+
+    private final ByteBuffer frame = ByteBuffer.wrap(payload);
+
+    private final LineFramer.Source portSource = this::readPort;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "lora-at-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final EventLoopRouter router;
+
+    private final FragmentSender fragmentSender;
+
+    private final TransmitScheduler transmitScheduler;
+
+    private final FrameCaptureLog capture;
+
+    private final Path snapshotFile;
+
+    private final AtomicBoolean snapshotStarted = new AtomicBoolean();
+
+    private final Reassembler reassembler = new Reassembler(Scheduler.of(timer), new Reassembler.Listener() {
+
+        @Override
+        public void onFragment(int sourceAddress, int messageId, int index, byte[] data, int offset, int length) {
+            System.out.print(new String(data, offset, length));                                                                 // Printed as it arrives, long messages are never held as a whole
+        }
+
+        @Override
+        public void onMessageComplete(int sourceAddress, int messageId) {
+            System.out.println();
+        }
+
+        @Override
+        public void onMessageAborted(int sourceAddress, int messageId, String reason) {
+            System.out.println("Message " + messageId + " from " + String.format("%04X", sourceAddress) + " aborted: " + reason);
+        }
+    });
+
+    private AtCommandChannel channel;
+
+    private final AtomicBoolean rssiQueried = new AtomicBoolean();
+
+    private final int[] rssiNeighbors = new int[Utils.LINK_QUALITY_CAPACITY];
+
+    private final long[] rssiQueriedAt = new long[Utils.LINK_QUALITY_CAPACITY];
+
+    private int rssiNeighborCount = 0;
+
+    private volatile long receivedFrames = 0;
+
+    private final RouteRequestView requestView = new RouteRequestView();
 
-    private final StringBuilder messageBuilder = new StringBuilder();
+    private final RouteReplyView replyView = new RouteReplyView();
 
-    private final ExecutorService commandExecutor = Executors.newSingleThreadExecutor();
+    private final UserDataView userDataView = new UserDataView();
 
-    private final Object lock = new Object();
+    private final RouteErrorView errorView = new RouteErrorView();
 
-    private String lastResponse;
+    private final AggregateView aggregateView = new AggregateView();
 
     public LoraNode(SerialPort port) {
+        this(port, Transport.BINARY);
+    }
+
+    public LoraNode(SerialPort port, Transport transport) {
+        this(port, transport, null);
+    }
+
+    public LoraNode(SerialPort port, Transport transport, Path snapshotFile) {
+        this(port, transport, snapshotFile, null);
+    }
+
+    // With a snapshot file, the routing state of the previous run is restored once AT+ADDR? has set the address and saved
+    // every SNAPSHOT_INTERVAL from then on. With a capture file, every frame received or sent is appended to it for a
+    // CaptureReplay.
+    public LoraNode(SerialPort port, Transport transport, Path snapshotFile, Path captureFile) {
         this.port = port;
+        this.transport = transport;
+        final int maxFrameLength = transport == Transport.BINARY ? MAX_PAYLOAD_LENGTH : MAX_PAYLOAD_LENGTH / 4 * 3;
+        this.router = new EventLoopRouter(new AggregatingCallback(this, Scheduler.of(timer), Utils.AGGREGATION_WINDOW, maxFrameLength), Clock.systemDefaultZone());
+        this.fragmentSender = new FragmentSender(router, FragmentSender.dataLengthFor(maxFrameLength));                         // A fragment fills a whole frame of the transport
+        this.transmitScheduler = new TransmitScheduler(TimeOnAir.fromConfig(MODEM_CONFIG), DUTY_CYCLE, DUTY_CYCLE_WINDOW, TRANSMIT_QUEUE_CAPACITY, Scheduler.of(timer), Clock.systemDefaultZone(), this::transmit);
+        this.router.getStats().setTransmitQueueDepth(() -> transmitScheduler.getQueuedFrames(TransmitScheduler.Priority.CONTROL)
+                + transmitScheduler.getQueuedFrames(TransmitScheduler.Priority.DATA));
+        this.capture = captureFile != null ? openCapture(captureFile) : null;
+        this.snapshotFile = snapshotFile;
+    }
+
+    private static FrameCaptureLog openCapture(Path file) {
+        try {
+            return new FrameCaptureLog(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open capture: " + e.getMessage(), e);
+        }
+    }
+
+    // Called once the address is known, a snapshot of another node is not restored and none is written before.
+    private void startSnapshots() {
+        if (snapshotFile == null || !snapshotStarted.compareAndSet(false, true)) {
+            return;
+        }
+        restoreSnapshot(snapshotFile);
+        timer.scheduleWithFixedDelay(() -> saveSnapshot(snapshotFile), SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    private void restoreSnapshot(Path file) {
+        try {
+            final RouteSnapshot snapshot = RouteSnapshot.readFrom(file);
+            if (snapshot != null) {
+                System.out.println("Restored " + router.restore(snapshot).get() + " of " + snapshot.getRoutes().size() + " routes from " + file);
+            }
+        } catch (IOException | RuntimeException | ExecutionException e) {
+            System.out.println("Failed to restore snapshot: " + e.getMessage());                                                // Start cold, the next snapshot replaces the file
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void saveSnapshot(Path file) {
+        try {
+            router.snapshot().get().writeTo(file);
+        } catch (IOException | ExecutionException e) {
+            System.out.println("Failed to save snapshot: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void connect() {
         if (!port.isOpen() && !port.openPort(2000)) {
             throw new RuntimeException();
         }
+        channel = new AtCommandChannel(port.getOutputStream(), timer, COMMAND_TIMEOUT, router.getStats().getLinkRoundTripHistogram());
         port.addDataListener(this);
         System.out.println("Opened port: " + port.getDescriptivePortName());
+        try {
+            System.out.println("Registered " + router.getStats().register(port.getSystemPortName()));
+        } catch (RuntimeException e) {
+            System.out.println(e.getMessage());                                                                                 // Another node in this JVM may use the name, the node works without JMX
+        }
     }
 
     public String sendMessage(String message) {
@@ -49,7 +207,11 @@ public class LoraNode implements SerialPortDataListener, RoutingCallback {
 
                 final int destAddr = parseInt(substringBetween(message, "=", ","), 16);
                 final String text = substringAfter(message, ",");
-                router.processUserData(new UserData(destAddr, text.getBytes()));
+                final List<UserData> frames = fragmentSender.split(destAddr, text.getBytes());
+                if (capture != null) {
+                    captureOriginated(frames);                                                                                  // Before routing, a replay starts from what the application sent
+                }
+                fragmentSender.send(frames);
 
                 return "AT,OK";
 
@@ -59,46 +221,51 @@ public class LoraNode implements SerialPortDataListener, RoutingCallback {
 
                 return "AT,OK";
 
+            } else if (message.startsWith("TX?")) {
+
+                return "TX," + transmitScheduler;
+
+            } else if (message.startsWith("STATS")) {
+
+                System.out.println(router.getStats());
+
+                return "AT,OK";
+
             } else {
 
-                final String response = commandExecutor.submit(() -> sendAndAwaitResponse(message)).get();
+                final String response = channel.send(message).get();                                                            // The console waits for the response, routed frames never do
 
                 if (message.startsWith("AT+ADDR?")) {
                     final int address = parseInt(substringBetween(response, ",", ","), 16);
                     router.setAddress(address);
+                    startSnapshots();
                 }
 
-                return response;
-            }
-        } catch (InterruptedException | ExecutionException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private String sendAndAwaitResponse(String message) {
-        try {
-            synchronized (lock) {
-                lastResponse = null;
-                port.getOutputStream().write((message + "\r\n").getBytes());
-                port.getOutputStream().flush();
-                awaitResponse();
-                if (lastResponse != null && lastResponse.startsWith("AT,SENDING")) {
-                    lastResponse = null;
-                    awaitResponse();
+                if (message.toUpperCase().startsWith("AT+CFG=") && AtCommandChannel.isOk(response)) {
+                    try {
+                        transmitScheduler.setTimeOnAir(TimeOnAir.fromConfig(substringAfter(message, "=").trim()));              // The duty cycle budget has to follow the modulation on air
+                    } catch (RuntimeException e) {
+                        System.out.println("Failed to read config: " + e.getMessage());
+                    }
                 }
-                return lastResponse;
+
+                return response;
             }
-        } catch (IOException e) {
-            return "Failed to send message: " + e.getMessage();
+        } catch (ExecutionException e) {
+            return "Failed to send message: " + e.getCause().getMessage();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void awaitResponse() throws InterruptedException {
-        final long timeout = System.currentTimeMillis() + 10000;
-        while (lastResponse == null && System.currentTimeMillis() < timeout) {
-            lock.wait(100);
+    // Writes out the frames captured so far.
+    public void close() {
+        if (capture != null) {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close capture: " + e.getMessage());
+            }
         }
     }
 
@@ -107,86 +274,205 @@ public class LoraNode implements SerialPortDataListener, RoutingCallback {
         return SerialPort.LISTENING_EVENT_DATA_AVAILABLE;
     }
 
+    // Called on the listener thread only, lines are read straight into the framer buffer and frames are decoded into a
+    // reused payload buffer, so nothing is allocated for a routed frame apart from the console output.
     @Override
     public void serialEvent(SerialPortEvent event) {
-        final SerialPort sp = event.getSerialPort();
-        final byte[] bytes = new byte[sp.bytesAvailable()];
-        sp.readBytes(bytes, bytes.length);
-        final String[] parts = new String(bytes).split("(?<=\n)");
-        for (String part : parts) {
-            final int idx = part.indexOf('\n');
-            if (idx >= 0) {
-                messageBuilder.append(part, 0, idx);
-                receiveMessage(messageBuilder.toString().toUpperCase().trim());
-                messageBuilder.setLength(0);
-                messageBuilder.append(part, idx + 1, part.length());
-            } else {
-                messageBuilder.append(part);
+        while (port.bytesAvailable() > 0) {
+            if (framer.fill(portSource) <= 0) {
+                break;
+            }
+        }
+    }
+
+    private int readPort(byte[] buffer, int offset, int length) {
+        return port.readBytes(buffer, Math.min(length, port.bytesAvailable()), offset);
+    }
+
+    // Frames are length delimited instead of ending at a line break, as raw payloads may contain line breaks.
+    private static int frameLength(byte[] buffer, int offset, int available) {
+        for (int i = 0; i < LR_PREFIX.length && i < available; i++) {
+            if (buffer[offset + i] != LR_PREFIX[i]) {
+                return LineFramer.TEXT;
             }
         }
+        if (available < LR_HEADER_LENGTH) {
+            return LineFramer.UNDECIDED;
+        }
+        final int length = payloadLength(buffer, offset);
+        return length < 0 ? LineFramer.TEXT : LR_HEADER_LENGTH + length;
     }
 
-    private void receiveMessage(String message) {
-        if (message.startsWith("LR")) {
-            handleAsyncMessage(message);
-        } else if (message.startsWith("AT")) {
-            handleResponse(message);
+    // Frames look like 'LR,XXXX,XX,data', the sender address and the payload length are hex.
+    private static int payloadLength(byte[] buffer, int offset) {
+        if (buffer[offset + 7] != ',' || buffer[offset + 10] != ',') {
+            return -1;
+        }
+        return LineFramer.parseHex(buffer, offset + 8, offset + 10);
+    }
+
+    private void receiveLine(byte[] buffer, int offset, int length) {
+        if (length >= LR_HEADER_LENGTH && frameLength(buffer, offset, length) == length) {
+            try {
+                handleAsyncMessage(buffer, offset, length);
+            } catch (RuntimeException e) {
+                System.out.println("Received malformed frame: " + LineFramer.toString(buffer, offset, length) + " (" + e.getMessage() + ")");
+            }
         } else {
-            System.out.println("Unexpected message: " + message);
+            final String message = LineFramer.toString(buffer, offset, length);                                                 // Not case converted, the payload of frames is case sensitive Base64
+            System.out.println("< " + message);
+            if (!channel.onResponse(message)) {                                                                                 // Responses include errors like 'ERR:PARA', which don't start with 'AT'
+                System.out.println("Unexpected message: " + message);
+            }
         }
     }
 
-    private void handleAsyncMessage(String message) {
+    private void handleAsyncMessage(byte[] buffer, int offset, int length) {
 
         if (router.getAddress() == 0) {
             System.out.println("Router is not initialized. Execute AT+ADDR? once!");
             return;
         }
 
-        final String[] parts = split(message, ',');
+        final int address = LineFramer.parseHex(buffer, offset + LR_PREFIX.length, offset + 7);
+        if (address < 0) {
+            throw new RuntimeException("Invalid address");
+        }
+
+        final int dataOffset = offset + LR_HEADER_LENGTH;
+        final int dataLength = length - LR_HEADER_LENGTH;
+        final int count;
+        if (transport == Transport.BINARY) {
+            System.arraycopy(buffer, dataOffset, payload, 0, dataLength);
+            count = dataLength;
+        } else {
+            count = Base64Decoder.decode(buffer, dataOffset, dataLength, payload);
+        }
+        if (count == 0) {
+            throw new RuntimeException("Empty payload");
+        }
+        frame.clear().limit(count);
+        receivedFrames++;                                                                                                       // Written by the listener thread only
+
+        if (capture != null) {
+            capture.capture(System.currentTimeMillis(), FrameCaptureLog.INBOUND, address, FrameCaptureLog.UNKNOWN_RSSI, payload, 0, count); // The modem doesn't report the RSSI along with a frame
+        }
+        queryRssi(address);
 
-        final int address = parseInt(parts[1].trim());
+        if (UserData.isUserData(frame, 0)) {
 
-        final byte[] bytes = Base64.getDecoder().decode(parts[3]);
+            handleUserData(userDataView.wrap(frame, 0, count), address);
 
-        try {
+        } else if (AggregateView.isAggregate(frame, 0)) {
 
-            if (UserData.isUserData(bytes)) {
+            final AggregateView aggregate = aggregateView.wrap(frame, 0, count);
+            System.out.println("< " + aggregate);
+            for (int i = 0; i < aggregate.getCount(); i++) {
+                handleUserData(aggregate.getUserData(i, userDataView), address);                                                // Unpacked here, relays aggregate again by their own next hops
+            }
 
-                final UserData data = UserData.parse(bytes);
-                System.out.println("< " + data);
-                if (data.getDestinationAddress() == router.getAddress()) {
-                    System.out.println(new String(data.getData()));
-                }
-                router.processUserData(data, address);
+        } else if (RouteRequest.isRouteRequest(frame, 0)) {
 
-            } else if (RouteRequest.isRouteRequest(bytes)) {
+            final RouteRequestView request = requestView.wrap(frame, 0, count);
+            System.out.println("< " + request);
+            router.processRouteRequest(request, address);
 
-                final RouteRequest request = RouteRequest.parse(bytes);
-                System.out.println("< " + request);
-                router.processRouteRequest(request, address);
+        } else if (RouteReply.isRouteReply(frame, 0)) {
 
-            } else if (RouteReply.isRouteReply(bytes)) {
+            final RouteReplyView reply = replyView.wrap(frame, 0, count);
+            System.out.println("< " + reply);
+            router.processRouteReply(reply, address);
 
-                final RouteReply reply = RouteReply.parse(bytes);
-                System.out.println("< " + reply);
-                router.processRouteReply(reply, address);
+        } else if (RouteError.isRouteError(frame, 0)) {
 
-            } else {
+            final RouteErrorView error = errorView.wrap(frame, 0, count);
+            System.out.println("< " + error);
+            router.processRouteError(error, address);
+
+        } else {
 
-                System.out.println("Received unsupported message: " + parts[3]);
+            System.out.println("Received unsupported message: " + LineFramer.toString(buffer, dataOffset, dataLength));
+        }
+    }
+
+    // The modem only reports the RSSI of the last frame it received on request. A query is only sent while the channel
+    // is idle, at most once per RSSI_QUERY_INTERVAL and neighbor, so it never waits behind a transmission and doesn't
+    // cost an AT round trip per frame. The sample is dropped if another frame arrived before the response, the RSSI may
+    // be the one of that frame. The average doesn't need every sample.
+    private void queryRssi(int address) {
+        final long now = System.currentTimeMillis();
+        if (channel.getQueuedCommands() > 0 || !isRssiDue(address, now) || !rssiQueried.compareAndSet(false, true)) {
+            return;
+        }
+        markRssiQueried(address, now);
+        final long frameNumber = receivedFrames;
+        channel.send("AT+RSSI?").whenComplete((response, e) -> {
+            rssiQueried.set(false);
+            if (e != null || receivedFrames != frameNumber) {
+                return;
+            }
+            try {
+                final int rssi = parseInt(substringBetween(response, ",", ","));                                                // 'AT,-063,OK'
+                router.processLinkQuality(address, rssi);
+                if (capture != null) {
+                    capture.capture(System.currentTimeMillis(), FrameCaptureLog.LINK_QUALITY, address, rssi, new byte[0], 0, 0);
+                }
+            } catch (RuntimeException ex) {
+                System.out.println("Failed to read RSSI: " + response);
             }
+        });
+    }
 
-        } catch (IOException e) {
-            System.out.println("Failed to parse message");
+    private boolean isRssiDue(int address, long now) {
+        final int index = rssiIndexOf(address);
+        return index < 0 || now - rssiQueriedAt[index] >= RSSI_QUERY_INTERVAL;
+    }
+
+    // Neighbors are kept like in LinkQuality, the one queried the longest time ago is replaced once all slots are taken.
+    private void markRssiQueried(int address, long now) {
+        int index = rssiIndexOf(address);
+        if (index < 0) {
+            index = rssiNeighborCount < rssiNeighbors.length ? rssiNeighborCount++ : leastRecentlyQueried();
+            rssiNeighbors[index] = address;
+        }
+        rssiQueriedAt[index] = now;
+    }
+
+    private int rssiIndexOf(int address) {
+        for (int i = 0; i < rssiNeighborCount; i++) {
+            if (rssiNeighbors[i] == address) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int leastRecentlyQueried() {
+        int oldest = 0;
+        for (int i = 1; i < rssiNeighborCount; i++) {
+            if (rssiQueriedAt[i] < rssiQueriedAt[oldest]) {
+                oldest = i;
+            }
         }
+        return oldest;
     }
 
-    private void handleResponse(String message) {
-        System.out.println("< " + message);
-        synchronized (lock) {
-            lastResponse = message;
-            lock.notifyAll();
+    private void handleUserData(UserDataView data, int address) {
+        System.out.println("< " + data);
+        if (data.getDestinationAddress() == router.getAddress() && !reassembler.accept(data)) {
+            System.out.println(new String(data.toUserData().getData()));
+        }
+        router.processUserData(data, address);
+    }
+
+    private void captureOriginated(List<UserData> frames) {
+        try {
+            for (UserData frame : frames) {
+                final byte[] serialized = frame.serialize();
+                capture.capture(System.currentTimeMillis(), FrameCaptureLog.ORIGINATED, router.getAddress(), FrameCaptureLog.UNKNOWN_RSSI, serialized, 0, serialized.length);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to capture message: " + e.getMessage());
         }
     }
 
@@ -195,33 +481,56 @@ public class LoraNode implements SerialPortDataListener, RoutingCallback {
 
         try {
 
-            final byte[] bytes = message.serialize();
-            final String messageStr = Base64.getEncoder().encodeToString(bytes);
-
-            String response = sendMessage("AT+DEST=" + String.format("%04X", destination));
-            if (!isAtOk(response)) {
+            final byte[] serialized = message.serialize();
+            final byte[] encoded = transport == Transport.BINARY ? serialized : Base64.getEncoder().encode(serialized);
+            if (encoded.length > MAX_PAYLOAD_LENGTH) {
+                System.out.println("Failed to send message: Payload too long (" + encoded.length + ")");                        // Not a link failure, the modem would reject it for any destination
                 return;
             }
 
-            response = sendMessage("AT+SEND=" + String.format("%02X", messageStr.length()));
-            if (!isAtOk(response)) {
-                return;
+            final boolean data = message instanceof UserDataMessage || message instanceof AggregateView;
+            if (!transmitScheduler.submit(encoded, destination, data ? TransmitScheduler.Priority.DATA : TransmitScheduler.Priority.CONTROL)) {
+                System.out.println("Failed to send message: Transmit queue full");
+            } else if (capture != null) {
+                capture.capture(System.currentTimeMillis(), FrameCaptureLog.OUTBOUND, destination, FrameCaptureLog.UNKNOWN_RSSI, serialized, 0, serialized.length);
             }
 
-            sendMessage(messageStr);
-
         } catch (IOException e) {
             System.out.println("Failed to send message: " + e.getMessage());
         }
     }
 
-    private boolean isAtOk(String response) {
-        return response != null && response.startsWith("AT,OK");
+    // Called by the transmit scheduler once the frame may go on air, the router does not wait for the modem.
+    private CompletableFuture<String> transmit(byte[] payload, int destination) {
+        final CompletableFuture<String> sent = channel.sendAll(                                                                 // Queued as one exchange
+                command("AT+DEST=" + String.format("%04X", destination)),                                                       // Skipped by the channel if the modem already has this destination
+                command("AT+SEND=" + payload.length),                                                                           // The length is decimal
+                data(payload)
+        );
+        sent.whenComplete((response, e) -> {
+            if (e != null || !response.startsWith(AtCommandChannel.SENDED)) {
+                onSendFailed(destination);
+            }
+        });
+        return sent;
+    }
+
+    private void onSendFailed(int destination) {
+        System.out.println("Failed to send message to " + String.format("%04X", destination));
+        if (destination != Utils.BROADCAST_ADDRESS) {
+            router.processLinkFailure(destination);                                                                             // The neighbor is unreachable, let the router invalidate its routes and notify the precursors
+        }
     }
 
     @Override
     public void onError(String msg) {
         System.out.println(msg);
     }
+
+    // All nodes of a network must use the same transport, the modem passes payloads on as they are.
+    public enum Transport {
+        BINARY,                                                                                                                 // Raw bytes after 'AT+SEND', a third less airtime than Base64
+        BASE64
+    }
 }
 
@@ -2,45 +2,75 @@ package lora;
 
 import com.fazecast.jSerialComm.SerialPort;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Main {
 
+    private final LoraNode.Transport transport;
+
+    private final Path snapshotFile;
+
+    private final Path captureFile;
+
+    private Main(LoraNode.Transport transport, Path snapshotFile, Path captureFile) {
+        this.transport = transport;
+        this.snapshotFile = snapshotFile;
+        this.captureFile = captureFile;
+    }
+
     private void start() {
 
         LoraNode node = null;
 
         final Scanner scanner = new Scanner(System.in);
 
-        while (true) {
-            if (node == null) {
-                System.out.print("Please enter port or press 0 to quit: ");
-                final String s = scanner.nextLine();
-                if (s.trim().equals("0")) {
+        try {
+            while (true) {
+                if (node == null) {
+                    System.out.print("Please enter port or press 0 to quit: ");
+                    final String s = scanner.nextLine();
+                    if (s.trim().equals("0")) {
+                        return;
+                    }
+                    node = new LoraNode(SerialPort.getCommPort(s), transport, snapshotFile, captureFile);
+                    try {
+                        node.connect();
+                    } catch (Exception e) {
+                        System.out.println("Failed to connect to port: " + e.getMessage());
+                        continue;
+                    }
+                }
+                System.out.print("> ");
+                final String command = scanner.nextLine();
+                if (command.equals("0")) {
                     return;
                 }
-                node = new LoraNode(SerialPort.getCommPort(s));
                 try {
-                    node.connect();
+                    node.sendMessage(command);
                 } catch (Exception e) {
-                    System.out.println("Failed to connect to port: " + e.getMessage());
-                    continue;
+                    System.out.println("Failed to send command: " + e.getMessage());
                 }
             }
-            System.out.print("> ");
-            final String command = scanner.nextLine();
-            if (command.equals("0")) {
-                return;
-            }
-            try {
-                node.sendMessage(command);
-            } catch (Exception e) {
-                System.out.println("Failed to send command: " + e.getMessage());
+        } finally {
+            if (node != null) {
+                node.close();                                                                                                   // Writes out the capture
             }
         }
     }
 
     public static void main(String[] args) {
-        new Main().start();
+        final LoraNode.Transport transport = Arrays.asList(args).contains("--base64") ? LoraNode.Transport.BASE64 : LoraNode.Transport.BINARY;
+        new Main(transport, pathOption(args, "--snapshot="), pathOption(args, "--capture=")).start();
+    }
+
+    private static Path pathOption(String[] args, String prefix) {
+        return Arrays.stream(args)
+                .filter(arg -> arg.startsWith(prefix))
+                .map(arg -> Paths.get(arg.substring(prefix.length())))
+                .findFirst()
+                .orElse(null);
     }
 }
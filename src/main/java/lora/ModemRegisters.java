@@ -0,0 +1,100 @@
+package lora;
+
+import static org.apache.commons.lang3.StringUtils.*;
+
+// Shadow copy of the modem registers, tracked through the responses to the commands that set or query them.
+// Unknown registers are null, any error or reset forgets everything, as the modem state is uncertain then.
+public class ModemRegisters {
+
+    private String destination;
+
+    private String address;
+
+    private String config;
+
+    private Boolean receiving;
+
+    // Returns true if the command would not change the modem state, i.e. it can be skipped.
+    public boolean isCurrent(String command) {
+        final String name = substringBefore(command, "=").trim().toUpperCase();
+        final String value = substringAfter(command, "=").trim().toUpperCase();
+        switch (name) {
+            case "AT+DEST":
+                return value.equals(destination);
+            case "AT+ADDR":
+                return value.equals(address);
+            case "AT+CFG":
+                return value.equals(config);
+            case "AT+RX":
+                return Boolean.TRUE.equals(receiving);
+            default:
+                return false;
+        }
+    }
+
+    // Updates the mirror from the response to a command, the command is null for raw payload.
+    public void update(String command, String response) {
+        if (!AtCommandChannel.isOk(response)) {
+            invalidate();
+            return;
+        }
+        if (command == null) {
+            return;
+        }
+        final String name = substringBefore(command, "=").trim().toUpperCase();
+        final String value = substringAfter(command, "=").trim().toUpperCase();
+        switch (name) {
+            case "AT+DEST":
+                destination = value;
+                break;
+            case "AT+DEST?":
+                destination = substringBetween(response, ",", ",");
+                break;
+            case "AT+ADDR":
+                address = value;
+                break;
+            case "AT+ADDR?":
+                address = substringBetween(response, ",", ",");
+                break;
+            case "AT+CFG":
+                config = value;
+                break;
+            case "AT+RX":
+                receiving = true;
+                break;
+            case "AT+IDLE":
+            case "AT+SLEEP":
+                receiving = false;
+                break;
+            case "AT+SEND":
+                receiving = null;                                                                                               // The modem transmits now, the mode it returns to is not documented
+                break;
+            case "AT+RST":
+                invalidate();
+                break;
+        }
+    }
+
+    public void invalidate() {
+        destination = null;
+        address = null;
+        config = null;
+        receiving = null;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getConfig() {
+        return config;
+    }
+
+    public Boolean getReceiving() {
+        return receiving;
+    }
+}
@@ -0,0 +1,78 @@
+package lora;
+
+// Time on air of a LoRa frame, following the formula of the Semtech SX127x datasheet. The parameters have to match the
+// modem configuration set with AT+CFG, fromConfig() takes them from there. The coding rate is given as 1-4 for 4/5-4/8,
+// low data rate optimization is enabled when a symbol takes longer than 16ms, as the modem does.
+public class TimeOnAir {
+
+    private static final long[] BANDWIDTHS_HZ = {7_800, 10_400, 15_600, 20_800, 31_250, 41_700, 62_500, 125_000, 250_000, 500_000};
+
+    private static final int CONFIG_FIELDS = 13;
+
+    private final int spreadingFactor;
+
+    private final long bandwidthHz;
+
+    private final int codingRate;
+
+    private final int preambleLength;
+
+    private final boolean explicitHeader;
+
+    private final boolean crc;
+
+    public TimeOnAir(int spreadingFactor, long bandwidthHz, int codingRate, int preambleLength, boolean explicitHeader, boolean crc) {
+        if (spreadingFactor < 6 || spreadingFactor > 12) {
+            throw new RuntimeException("Invalid spreading factor (" + spreadingFactor + ")");
+        }
+        if (codingRate < 1 || codingRate > 4) {
+            throw new RuntimeException("Invalid coding rate (" + codingRate + ")");
+        }
+        this.spreadingFactor = spreadingFactor;
+        this.bandwidthHz = bandwidthHz;
+        this.codingRate = codingRate;
+        this.preambleLength = preambleLength;
+        this.explicitHeader = explicitHeader;
+        this.crc = crc;
+    }
+
+    // Takes the parameters of AT+CFG, e.g. '433000000,20,6,10,1,1,0,0,0,0,3000,8,4': frequency, power, bandwidth code,
+    // spreading factor, coding rate, CRC, implicit header, single receive, frequency hopping, hop period, receive
+    // timeout, implicit payload length and preamble length.
+    public static TimeOnAir fromConfig(String config) {
+        final String[] fields = config.split(",");
+        if (fields.length != CONFIG_FIELDS) {
+            throw new RuntimeException("Invalid config (" + config + ")");
+        }
+        try {
+            final int bandwidth = Integer.parseInt(fields[2].trim());
+            if (bandwidth < 0 || bandwidth >= BANDWIDTHS_HZ.length) {
+                throw new RuntimeException("Invalid bandwidth (" + bandwidth + ")");
+            }
+            return new TimeOnAir(
+                    Integer.parseInt(fields[3].trim()),
+                    BANDWIDTHS_HZ[bandwidth],
+                    Integer.parseInt(fields[4].trim()),
+                    Integer.parseInt(fields[12].trim()),
+                    fields[6].trim().equals("0"),
+                    !fields[5].trim().equals("0")
+            );
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid config (" + config + ")");
+        }
+    }
+
+    public double getSymbolMicros() {
+        return (1L << spreadingFactor) * 1_000_000.0 / bandwidthHz;
+    }
+
+    public long getMicros(int payloadLength) {
+        final double symbol = getSymbolMicros();
+        final int lowDataRateOptimize = symbol > 16_000 ? 1 : 0;
+        final double preamble = (preambleLength + 4.25) * symbol;
+        final int numerator = 8 * payloadLength - 4 * spreadingFactor + 28 + (crc ? 16 : 0) - (explicitHeader ? 0 : 20);
+        final int denominator = 4 * (spreadingFactor - 2 * lowDataRateOptimize);
+        final int payloadSymbols = 8 + Math.max((numerator + denominator - 1) / denominator * (codingRate + 4), 0);             // Ceiling of a positive numerator, negative ones are clamped anyway
+        return (long)Math.ceil(preamble + payloadSymbols * symbol);
+    }
+}
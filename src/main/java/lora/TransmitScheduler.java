@@ -0,0 +1,187 @@
+package lora;
+
+import aodv.Scheduler;
+
+import java.time.Clock;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+// Decides which frame goes on air next. Route control frames are queued apart from user data and always go first, so
+// route discoveries don't wait behind bulk data. Airtime is paid from a token bucket that refills at the duty cycle,
+// a frame waits until the bucket holds its time on air. Only one frame is handed to the modem at a time, so a frame
+// queued later with a higher priority can still overtake the data that is waiting.
+public class TransmitScheduler {
+
+    private volatile TimeOnAir timeOnAir;
+
+    private final double dutyCycle;
+
+    private final long capacityMicros;
+
+    private final int queueCapacity;
+
+    private final Scheduler scheduler;
+
+    private final Clock clock;
+
+    private final Transmitter transmitter;
+
+    private final ArrayDeque<Frame> controlFrames = new ArrayDeque<>();
+
+    private final ArrayDeque<Frame> dataFrames = new ArrayDeque<>();
+
+    private long tokensMicros;
+
+    private long refilledAt;
+
+    private boolean transmitting = false;
+
+    private Scheduler.Cancellable timer;
+
+    private long airtimeMicros = 0;
+
+    private long droppedFrames = 0;
+
+    // The bucket starts full and holds the airtime of one window at the duty cycle, e.g. 36s for 1% of an hour.
+    public TransmitScheduler(TimeOnAir timeOnAir, double dutyCycle, long windowMillis, int queueCapacity, Scheduler scheduler, Clock clock, Transmitter transmitter) {
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new RuntimeException("Invalid duty cycle (" + dutyCycle + ")");
+        }
+        this.timeOnAir = timeOnAir;
+        this.dutyCycle = dutyCycle;
+        this.capacityMicros = (long)(windowMillis * 1000 * dutyCycle);
+        this.queueCapacity = queueCapacity;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.transmitter = transmitter;
+        this.tokensMicros = capacityMicros;
+        this.refilledAt = clock.millis();
+    }
+
+    // Returns false if the frame was dropped, because its queue is full or it could never be sent within the budget.
+    public boolean submit(byte[] payload, int destination, Priority priority) {
+        final long micros = timeOnAir.getMicros(payload.length);
+        synchronized (this) {
+            final ArrayDeque<Frame> queue = priority == Priority.CONTROL ? controlFrames : dataFrames;
+            if (queue.size() >= queueCapacity || micros > capacityMicros) {
+                droppedFrames++;
+                return false;
+            }
+            queue.add(new Frame(payload, destination, micros));
+        }
+        pump();
+        return true;
+    }
+
+    // Applies to frames submitted from now on, e.g. after the modem was configured with AT+CFG.
+    public void setTimeOnAir(TimeOnAir timeOnAir) {
+        this.timeOnAir = timeOnAir;
+    }
+
+    public synchronized int getQueuedFrames(Priority priority) {
+        return priority == Priority.CONTROL ? controlFrames.size() : dataFrames.size();
+    }
+
+    public synchronized long getAvailableMicros() {
+        refill();
+        return tokensMicros;
+    }
+
+    public long getCapacityMicros() {
+        return capacityMicros;
+    }
+
+    public synchronized long getAirtimeMicros() {
+        return airtimeMicros;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    @Override
+    public synchronized String toString() {
+        refill();
+        return String.format("control=%d data=%d budget=%.1f/%.1fs airtime=%.1fs dropped=%d",
+                controlFrames.size(), dataFrames.size(), tokensMicros / 1e6, capacityMicros / 1e6, airtimeMicros / 1e6, droppedFrames);
+    }
+
+    private void pump() {
+        final Frame frame;
+        synchronized (this) {
+            if (transmitting) {
+                return;
+            }
+            final ArrayDeque<Frame> queue = !controlFrames.isEmpty() ? controlFrames : dataFrames;
+            final Frame next = queue.peek();
+            if (next == null) {
+                return;
+            }
+            refill();
+            if (tokensMicros < next.micros) {
+                if (timer == null) {
+                    final long waitMillis = (long)Math.ceil((next.micros - tokensMicros) / dutyCycle / 1000);
+                    timer = scheduler.schedule(this::onRefilled, waitMillis);
+                }
+                return;
+            }
+            frame = queue.poll();
+            tokensMicros -= frame.micros;
+            airtimeMicros += frame.micros;
+            transmitting = true;
+        }
+        CompletableFuture<?> sent;                                                                                              // Handed over outside of the lock, the transmitter may complete right away
+        try {
+            sent = transmitter.transmit(frame.payload, frame.destination);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((result, e) -> onTransmitted());
+    }
+
+    private void onRefilled() {
+        synchronized (this) {
+            timer = null;
+        }
+        pump();
+    }
+
+    private void onTransmitted() {
+        synchronized (this) {
+            transmitting = false;
+        }
+        pump();
+    }
+
+    private void refill() {
+        final long now = clock.millis();
+        tokensMicros = Math.min(capacityMicros, tokensMicros + (long)((now - refilledAt) * 1000 * dutyCycle));
+        refilledAt = now;
+    }
+
+    public enum Priority {
+        CONTROL,
+        DATA
+    }
+
+    // Hands a frame to the modem, the future completes once the frame has left or failed.
+    public interface Transmitter {
+
+        CompletableFuture<?> transmit(byte[] payload, int destination);
+    }
+
+    private static class Frame {
+
+        private final byte[] payload;
+
+        private final int destination;
+
+        private final long micros;
+
+        private Frame(byte[] payload, int destination, long micros) {
+            this.payload = payload;
+            this.destination = destination;
+            this.micros = micros;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package sim;
+
+import java.util.Random;
+
+import static aodv.Utils.BROADCAST_ADDRESS;
+
+// A shared broadcast channel: every frame reaches all neighbors of the sender, unicast frames are only accepted by the addressed node.
+public class Medium {
+
+    private final VirtualScheduler scheduler;
+
+    private final Topology topology;
+
+    private final long frameDelay;
+
+    private final double lossRate;
+
+    private final Random random;
+
+    private SimNode[] nodes;
+
+    private boolean[] failed;
+
+    public Medium(VirtualScheduler scheduler, Topology topology, long frameDelay, double lossRate, Random random) {
+        this.scheduler = scheduler;
+        this.topology = topology;
+        this.frameDelay = frameDelay;
+        this.lossRate = lossRate;
+        this.random = random;
+    }
+
+    void attach(SimNode[] nodes) {
+        this.nodes = nodes;
+        this.failed = new boolean[nodes.length];
+    }
+
+    // A failed node neither transmits nor receives anymore.
+    void fail(int index) {
+        failed[index] = true;
+    }
+
+    // Returns false if a unicast frame did not reach the addressed neighbor, as a missing link layer acknowledgement would.
+    boolean transmit(SimNode sender, byte[] frame, int destination) {
+        if (failed[sender.getIndex()]) {
+            return true;
+        }
+        boolean delivered = destination == BROADCAST_ADDRESS;
+        for (int neighbor : topology.getNeighbors(sender.getIndex())) {
+            final SimNode receiver = nodes[neighbor];
+            if (destination != BROADCAST_ADDRESS && destination != receiver.getAddress()) {
+                continue;
+            }
+            if (failed[neighbor] || (lossRate > 0 && random.nextDouble() < lossRate)) {
+                continue;
+            }
+            scheduler.schedule(() -> receiver.receive(frame, sender.getAddress()), frameDelay);
+            delivered = true;
+        }
+        return delivered;
+    }
+
+    public static int toAddress(int index) {
+        return index + 1;
+    }
+
+    public static int toIndex(int address) {
+        return address - 1;
+    }
+}
@@ -0,0 +1,176 @@
+package sim;
+
+import aodv.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static aodv.Utils.*;
+
+public class SimNode implements RoutingCallback {
+
+    private static final long DISCOVERY_WINDOW = ringRoundsMillis() + (long)(Math.pow(2, RREQ_RETRIES + 1) - 1) * NET_TRAVERSAL_TIME;
+
+    private final int index;
+
+    private final int address;
+
+    private final Medium medium;
+
+    private final SimulationStats stats;
+
+    private final VirtualScheduler scheduler;
+
+    private final VirtualClock clock;
+
+    private final AodvRouterImpl router;
+
+    private final Map<Integer, Long> discoveries = new HashMap<>();
+
+    public SimNode(int index, Medium medium, SimulationStats stats, VirtualScheduler scheduler) {
+        this(index, medium, stats, scheduler, 0);
+    }
+
+    // With a positive window, UD frames pass an aggregation stage before they are transmitted.
+    public SimNode(int index, Medium medium, SimulationStats stats, VirtualScheduler scheduler, long aggregationWindow) {
+        this(index, medium, stats, scheduler, aggregationWindow, new Random(index));
+    }
+
+    // The random source draws the forwarding jitter, a shared seeded one keeps runs reproducible.
+    public SimNode(int index, Medium medium, SimulationStats stats, VirtualScheduler scheduler, long aggregationWindow, Random random) {
+        this.index = index;
+        this.address = Medium.toAddress(index);
+        this.medium = medium;
+        this.stats = stats;
+        this.scheduler = scheduler;
+        this.clock = scheduler.getClock();
+        this.router = new AodvRouterImpl(aggregationWindow > 0 ? new AggregatingCallback(this, scheduler, aggregationWindow, MAX_FRAME_LENGTH) : this, clock, scheduler, random);
+        this.router.setAddress(address);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    public AodvRouterImpl getRouter() {
+        return router;
+    }
+
+    public void sendPacket(int destination, int packetId) {
+        stats.packetSent(packetId, clock.millis());
+        router.processUserData(new UserData(destination, ByteBuffer.allocate(4).putInt(packetId).array()));
+    }
+
+    @Override
+    public void send(Message message, int destination) {
+        if (message instanceof RouteRequest) {
+            final RouteRequest request = (RouteRequest)message;
+            if (request.getOriginatorAddress() == address && request.getHopCount() == 0) {
+                final Long start = discoveries.get(request.getDestinationAddress());
+                if (start == null || clock.millis() - start > DISCOVERY_WINDOW) {                                               // Retries belong to the running discovery, anything older has failed
+                    discoveries.put(request.getDestinationAddress(), clock.millis());
+                    stats.discoveryStarted();
+                }
+            }
+        }
+        try {
+            final byte[] frame = message.serialize();
+            stats.frameSent(message, frame.length);
+            if (!medium.transmit(this, frame, destination)) {
+                scheduler.schedule(() -> router.processLinkFailure(destination), 0);                                            // Report the broken link once the current frame has been handled
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void onError(String msg) {
+        stats.destinationUnreachable();
+    }
+
+    // Only the decoding is guarded, an exception thrown by the router is a bug and fails the run.
+    void receive(byte[] frame, int prevHop) {
+
+        final List<Message> messages;
+        try {
+            messages = decode(frame);
+        } catch (IOException | RuntimeException e) {
+            stats.frameRejected();                                                                                              // A real node would log and drop the frame, keep the rest of the mesh running
+            return;
+        }
+
+        for (Message message : messages) {
+            if (message instanceof UserData) {
+
+                receive((UserData)message, prevHop);
+
+            } else if (message instanceof RouteRequest) {
+
+                router.processRouteRequest((RouteRequest)message, prevHop);
+
+            } else if (message instanceof RouteReply) {
+
+                final RouteReply reply = (RouteReply)message;
+                if (reply.getOriginatorAddress() == address) {
+                    final Long start = discoveries.remove(reply.getDestinationAddress());
+                    if (start != null) {
+                        stats.discoveryCompleted(clock.millis() - start);
+                    }
+                }
+                router.processRouteReply(reply, prevHop);
+
+            } else if (message instanceof RouteError) {
+
+                router.processRouteError((RouteError)message, prevHop);
+            }
+        }
+    }
+
+    // The UD frames of an aggregate are decoded upfront, a malformed entry rejects the whole frame.
+    private static List<Message> decode(byte[] frame) throws IOException {
+        if (UserData.isUserData(frame)) {
+            return List.of(UserData.parse(frame));
+        } else if (AggregateView.isAggregate(frame)) {
+            final AggregateView aggregate = new AggregateView().wrap(ByteBuffer.wrap(frame), 0, frame.length);
+            final UserDataView view = new UserDataView();
+            final List<Message> messages = new ArrayList<>(aggregate.getCount());
+            for (int i = 0; i < aggregate.getCount(); i++) {
+                messages.add(aggregate.getUserData(i, view).toUserData());
+            }
+            return messages;
+        } else if (RouteRequest.isRouteRequest(frame)) {
+            return List.of(RouteRequest.parse(frame));
+        } else if (RouteReply.isRouteReply(frame)) {
+            return List.of(RouteReply.parse(frame));
+        } else if (RouteError.isRouteError(frame)) {
+            return List.of(RouteError.parse(frame));
+        }
+        return List.of();
+    }
+
+    private void receive(UserData data, int prevHop) {
+        if (data.getDestinationAddress() == address) {
+            stats.packetDelivered(ByteBuffer.wrap(data.getData()).getInt(), clock.millis());
+        }
+        router.processUserData(data, prevHop);
+    }
+
+    // Upper bound of the expanding ring rounds before a discovery floods the whole network.
+    private static long ringRoundsMillis() {
+        long millis = 0;
+        for (int ttl = TTL_START; ttl <= TTL_THRESHOLD; ttl += TTL_INCREMENT) {
+            millis += 2L * NODE_TRAVERSAL_TIME * (ttl + TIMEOUT_BUFFER);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,93 @@
+package sim;
+
+import java.util.Random;
+
+public class Simulation {
+
+    private final Topology topology;
+
+    private final VirtualScheduler scheduler;
+
+    private final SimulationStats stats = new SimulationStats();
+
+    private final Medium medium;
+
+    private final SimNode[] nodes;
+
+    private final Random random;
+
+    private int packetId = 0;
+
+    public Simulation(Topology topology, long frameDelay, double lossRate, long seed) {
+        this(topology, frameDelay, lossRate, seed, 0);
+    }
+
+    public Simulation(Topology topology, long frameDelay, double lossRate, long seed, long aggregationWindow) {
+        this.topology = topology;
+        this.random = new Random(seed);
+        this.scheduler = new VirtualScheduler(new VirtualClock(0));
+        this.medium = new Medium(scheduler, topology, frameDelay, lossRate, random);
+        this.nodes = new SimNode[topology.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new SimNode(i, medium, stats, scheduler, aggregationWindow, random);
+        }
+        medium.attach(nodes);
+    }
+
+    public Topology getTopology() {
+        return topology;
+    }
+
+    public VirtualScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public SimulationStats getStats() {
+        return stats;
+    }
+
+    public SimNode getNode(int index) {
+        return nodes[index];
+    }
+
+    // Sends a packet from source to destination every interval, starting at a random offset within the first interval.
+    public void addFlow(int sourceIndex, int destinationIndex, long interval, long until) {
+        final SimNode source = nodes[sourceIndex];
+        final int destination = Medium.toAddress(destinationIndex);
+        final long offset = interval > 1 ? (long)(random.nextDouble() * interval) : 0;
+        scheduleFlow(source, destination, offset, interval, until);
+    }
+
+    public void addRandomFlows(int flows, long interval, long until) {
+        if (nodes.length < 2) {
+            return;
+        }
+        for (int i = 0; i < flows; i++) {
+            final int source = random.nextInt(nodes.length);
+            int destination = random.nextInt(nodes.length - 1);
+            if (destination >= source) {
+                destination++;
+            }
+            addFlow(source, destination, interval, until);
+        }
+    }
+
+    private void scheduleFlow(SimNode source, int destination, long delay, long interval, long until) {
+        scheduler.schedule(() -> {
+            if (scheduler.getClock().millis() > until) {
+                return;
+            }
+            source.sendPacket(destination, ++packetId);
+            scheduleFlow(source, destination, interval, interval, until);
+        }, delay);
+    }
+
+    public void failNode(int index, long at) {
+        scheduler.schedule(() -> medium.fail(index), at - scheduler.getClock().millis());
+    }
+
+    public SimulationStats run(long duration) {
+        scheduler.runFor(duration);
+        return stats;
+    }
+}
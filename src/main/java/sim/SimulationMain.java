@@ -0,0 +1,40 @@
+package sim;
+
+import java.util.Random;
+
+// Usage: SimulationMain [seed] [traffic seconds] [node counts...]
+public class SimulationMain {
+
+    private static final long FRAME_DELAY = 50;
+
+    private static final long DRAIN_DURATION = 30 * 1000;
+
+    private static final long FLOW_INTERVAL = 10 * 1000;
+
+    private static void run(Topology topology, int flows, long trafficDuration, long seed) {
+        final Simulation simulation = new Simulation(topology, FRAME_DELAY, 0.0, seed);
+        simulation.addRandomFlows(flows, FLOW_INTERVAL, trafficDuration);
+        final long start = System.nanoTime();
+        final SimulationStats stats = simulation.run(trafficDuration + DRAIN_DURATION);
+        final long wallMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("=== %s, degree=%.1f, flows=%d, simulated=%ds, wall=%dms, events=%d%n",
+                topology, topology.getAverageDegree(), flows, (trafficDuration + DRAIN_DURATION) / 1000, wallMillis, simulation.getScheduler().getExecutedEvents());
+        System.out.println(stats);
+    }
+
+    public static void main(String[] args) {
+        final long seed = args.length > 0 ? Long.parseLong(args[0]) : 1;
+        final long trafficDuration = (args.length > 1 ? Long.parseLong(args[1]) : 60) * 1000;
+        final int[] sizes = new int[Math.max(0, args.length - 2)];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Integer.parseInt(args[i + 2]);
+        }
+        final Random random = new Random(seed);
+        for (int nodes : sizes.length > 0 ? sizes : new int[] { 10, 100, 1000 }) {
+            final int width = (int)Math.ceil(Math.sqrt(nodes));
+            final int flows = Math.max(2, nodes / 10);
+            run(Topology.grid(width, (nodes + width - 1) / width), flows, trafficDuration, seed);
+            run(Topology.randomGeometric(nodes, Math.sqrt(8.0 / (Math.PI * nodes)), random), flows, trafficDuration, seed);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package sim;
+
+import aodv.AggregateView;
+import aodv.Message;
+import aodv.RouteError;
+import aodv.RouteReply;
+import aodv.RouteRequest;
+import aodv.UserDataMessage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class SimulationStats {
+
+    private final Map<Integer, Long> sentPackets = new HashMap<>();
+
+    private long packetsSent;
+
+    private long packetsDelivered;
+
+    private long duplicateDeliveries;
+
+    private long unreachable;
+
+    private long rejectedFrames;
+
+    private long discoveriesStarted;
+
+    private long requestFrames;
+
+    private long replyFrames;
+
+    private long errorFrames;
+
+    private long dataFrames;
+
+    private long controlBytes;
+
+    private long dataBytes;
+
+    private final LongSamples deliveryLatencies = new LongSamples();
+
+    private final LongSamples discoveryLatencies = new LongSamples();
+
+    void packetSent(int packetId, long time) {
+        packetsSent++;
+        sentPackets.put(packetId, time);
+    }
+
+    void packetDelivered(int packetId, long time) {
+        final Long sent = sentPackets.remove(packetId);
+        if (sent == null) {
+            duplicateDeliveries++;
+            return;
+        }
+        packetsDelivered++;
+        deliveryLatencies.add(time - sent);
+    }
+
+    void frameSent(Message message, int length) {
+        if (message instanceof RouteRequest) {
+            requestFrames++;
+            controlBytes += length;
+        } else if (message instanceof RouteReply) {
+            replyFrames++;
+            controlBytes += length;
+        } else if (message instanceof RouteError) {
+            errorFrames++;
+            controlBytes += length;
+        } else if (message instanceof UserDataMessage || message instanceof AggregateView) {
+            dataFrames++;
+            dataBytes += length;
+        }
+    }
+
+    void destinationUnreachable() {
+        unreachable++;
+    }
+
+    void frameRejected() {
+        rejectedFrames++;
+    }
+
+    void discoveryStarted() {
+        discoveriesStarted++;
+    }
+
+    void discoveryCompleted(long latency) {
+        discoveryLatencies.add(latency);
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    public long getPacketsDelivered() {
+        return packetsDelivered;
+    }
+
+    public double getDeliveryRatio() {
+        return packetsSent == 0 ? 0 : (double)packetsDelivered / packetsSent;
+    }
+
+    public long getUnreachable() {
+        return unreachable;
+    }
+
+    public long getRejectedFrames() {
+        return rejectedFrames;
+    }
+
+    public long getDiscoveriesStarted() {
+        return discoveriesStarted;
+    }
+
+    public long getDiscoveriesCompleted() {
+        return discoveryLatencies.size();
+    }
+
+    public long getControlFrames() {
+        return requestFrames + replyFrames + errorFrames;
+    }
+
+    public long getErrorFrames() {
+        return errorFrames;
+    }
+
+    public long getDataFrames() {
+        return dataFrames;
+    }
+
+    // Control frames transmitted per delivered packet.
+    public double getControlOverhead() {
+        return packetsDelivered == 0 ? getControlFrames() : (double)getControlFrames() / packetsDelivered;
+    }
+
+    public long getDiscoveryLatencyPercentile(double percentile) {
+        return discoveryLatencies.percentile(percentile);
+    }
+
+    public long getDeliveryLatencyPercentile(double percentile) {
+        return deliveryLatencies.percentile(percentile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "packets: sent=%d delivered=%d (%.1f%%) duplicates=%d unreachable=%d rejected-frames=%d%n" +
+                "discoveries: started=%d completed=%d latency p50=%dms p95=%dms max=%dms%n" +
+                "delivery latency: p50=%dms p95=%dms max=%dms%n" +
+                "frames: rreq=%d rrep=%d rerr=%d ud=%d, bytes: control=%d data=%d, control frames per delivered packet=%.1f",
+                packetsSent, packetsDelivered, getDeliveryRatio() * 100, duplicateDeliveries, unreachable, rejectedFrames,
+                discoveriesStarted, getDiscoveriesCompleted(), discoveryLatencies.percentile(50), discoveryLatencies.percentile(95), discoveryLatencies.percentile(100),
+                deliveryLatencies.percentile(50), deliveryLatencies.percentile(95), deliveryLatencies.percentile(100),
+                requestFrames, replyFrames, errorFrames, dataFrames, controlBytes, dataBytes, getControlOverhead());
+    }
+
+    private static class LongSamples {
+
+        private long[] values = new long[64];
+
+        private int size;
+
+        private boolean sorted = true;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            sorted = false;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            final int idx = (int)Math.ceil(percentile / 100 * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, idx))];
+        }
+    }
+}
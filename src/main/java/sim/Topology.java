@@ -0,0 +1,104 @@
+package sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class Topology {
+
+    private final String name;
+
+    private final int[][] neighbors;
+
+    private Topology(String name, List<List<Integer>> adjacency) {
+        this.name = name;
+        this.neighbors = new int[adjacency.size()][];
+        for (int i = 0; i < neighbors.length; i++) {
+            neighbors[i] = adjacency.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return neighbors.length;
+    }
+
+    public int[] getNeighbors(int node) {
+        return neighbors[node];
+    }
+
+    public double getAverageDegree() {
+        long degree = 0;
+        for (int[] n : neighbors) {
+            degree += n.length;
+        }
+        return neighbors.length == 0 ? 0 : (double)degree / neighbors.length;
+    }
+
+    public static Topology line(int nodes) {
+        final List<List<Integer>> adjacency = emptyAdjacency(nodes);
+        for (int i = 0; i < nodes - 1; i++) {
+            connect(adjacency, i, i + 1);
+        }
+        return new Topology("line(" + nodes + ")", adjacency);
+    }
+
+    public static Topology grid(int width, int height) {
+        final List<List<Integer>> adjacency = emptyAdjacency(width * height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int node = y * width + x;
+                if (x < width - 1) {
+                    connect(adjacency, node, node + 1);
+                }
+                if (y < height - 1) {
+                    connect(adjacency, node, node + width);
+                }
+            }
+        }
+        return new Topology("grid(" + width + "x" + height + ")", adjacency);
+    }
+
+    // Nodes are placed uniformly in the unit square and linked if their distance is below the radius.
+    public static Topology randomGeometric(int nodes, double radius, Random random) {
+        final double[] xs = new double[nodes];
+        final double[] ys = new double[nodes];
+        for (int i = 0; i < nodes; i++) {
+            xs[i] = random.nextDouble();
+            ys[i] = random.nextDouble();
+        }
+        final List<List<Integer>> adjacency = emptyAdjacency(nodes);
+        final double r2 = radius * radius;
+        for (int i = 0; i < nodes; i++) {
+            for (int j = i + 1; j < nodes; j++) {
+                final double dx = xs[i] - xs[j];
+                final double dy = ys[i] - ys[j];
+                if (dx * dx + dy * dy <= r2) {
+                    connect(adjacency, i, j);
+                }
+            }
+        }
+        return new Topology("random(" + nodes + ", r=" + radius + ")", adjacency);
+    }
+
+    private static List<List<Integer>> emptyAdjacency(int nodes) {
+        final List<List<Integer>> adjacency = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            adjacency.add(new ArrayList<>());
+        }
+        return adjacency;
+    }
+
+    private static void connect(List<List<Integer>> adjacency, int a, int b) {
+        adjacency.get(a).add(b);
+        adjacency.get(b).add(a);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
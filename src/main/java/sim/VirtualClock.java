@@ -0,0 +1,42 @@
+package sim;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+public class VirtualClock extends Clock {
+
+    private long millis;
+
+    public VirtualClock(long millis) {
+        this.millis = millis;
+    }
+
+    public void advanceTo(long millis) {
+        if (millis < this.millis) {
+            throw new RuntimeException("Virtual time must not go backwards (now: " + this.millis + ", requested: " + millis + ")");
+        }
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+}
@@ -0,0 +1,84 @@
+package sim;
+
+import aodv.Scheduler;
+
+import java.util.PriorityQueue;
+
+public class VirtualScheduler implements Scheduler {
+
+    private final VirtualClock clock;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+
+    private long sequence = 0;
+
+    private long executedEvents = 0;
+
+    public VirtualScheduler(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delayMillis) {
+        final Event event = new Event(clock.millis() + Math.max(0, delayMillis), sequence++, task);
+        events.add(event);
+        return event;
+    }
+
+    public void runUntil(long millis) {
+        while (!events.isEmpty() && events.peek().time <= millis) {
+            final Event event = events.poll();
+            if (event.cancelled) {
+                continue;
+            }
+            clock.advanceTo(event.time);
+            executedEvents++;
+            event.task.run();
+        }
+        clock.advanceTo(Math.max(clock.millis(), millis));
+    }
+
+    public void runFor(long millis) {
+        runUntil(clock.millis() + millis);
+    }
+
+    public long getExecutedEvents() {
+        return executedEvents;
+    }
+
+    public int getPendingEvents() {
+        return events.size();
+    }
+
+    private static class Event implements Comparable<Event>, Cancellable {
+
+        private final long time;
+
+        private final long sequence;
+
+        private final Runnable task;
+
+        private boolean cancelled;
+
+        private Event(long time, long sequence, Runnable task) {
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public int compareTo(Event o) {
+            final int result = Long.compare(time, o.time);
+            return result != 0 ? result : Long.compare(sequence, o.sequence);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package aodv
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class AggregationSpec extends Specification {
+
+    static int HOP_1 = 101
+    static int HOP_2 = 102
+
+    def scheduler = new VirtualScheduler(new VirtualClock(0))
+
+    def callback = Mock(RoutingCallback)
+
+    def aggregator = new AggregatingCallback(callback, scheduler, 100, 40)
+
+    def sent = []
+
+    def "user data for the same next hop is packed into one aggregate after the window"() {
+
+        given:
+
+            def packets = (0..<3).collect { new UserData(HOP_2, [it, it] as byte[]) }
+
+        when:
+
+            packets.each { aggregator.send(it, HOP_1) }
+            scheduler.runFor(99)
+
+        then:
+
+            0 * callback._
+
+        when:
+
+            scheduler.runFor(1)
+
+        then:
+
+            1 * callback.send({ it instanceof AggregateView }, HOP_1) >> { sent << it[0].serialize() }
+
+        and:
+
+            def frame = ByteBuffer.wrap(sent[0])
+            def aggregate = new AggregateView().wrap(frame, 0, frame.limit())
+            aggregate.count == 3
+            (0..<3).collect { aggregate.getUserData(it, new UserDataView()).toUserData() } == packets
+    }
+
+    def "a batch of one leaves as plain user data"() {
+
+        given:
+
+            def packet = new UserData(HOP_2, "x".bytes)
+
+        when:
+
+            aggregator.send(packet, HOP_1)
+            scheduler.runFor(100)
+
+        then:
+
+            1 * callback.send({ it instanceof UserDataView }, HOP_1) >> { sent << it[0].toUserData() }
+            sent == [packet]
+    }
+
+    def "a full batch leaves before the next packet is added"() {
+
+        when:
+
+            5.times { aggregator.send(new UserData(HOP_2, new byte[6]), HOP_1) }
+
+        then:
+
+            1 * callback.send({ it instanceof AggregateView && it.count == 3 }, HOP_1)
+
+        when:
+
+            scheduler.runFor(100)
+
+        then:
+
+            1 * callback.send({ it instanceof AggregateView && it.count == 2 }, HOP_1)
+    }
+
+    def "control messages, broadcasts and large data are passed on directly, in order"() {
+
+        given:
+
+            def request = new RouteRequest(0, 1, HOP_2, 0, true, HOP_1, 1)
+            def small = new UserData(HOP_2, "x".bytes)
+            def large = new UserData(HOP_2, new byte[37])
+
+        when:
+
+            aggregator.send(request, 0xFFFF)
+            aggregator.send(small, 0xFFFF)
+            aggregator.send(small, HOP_1)
+            aggregator.send(large, HOP_1)
+
+        then:
+
+            1 * callback.send(request, 0xFFFF)
+
+        then:
+
+            1 * callback.send(small, 0xFFFF)
+
+        then:
+
+            1 * callback.send({ it instanceof UserDataView && it.toUserData() == small }, HOP_1)
+
+        then:
+
+            1 * callback.send(large, HOP_1)
+            0 * callback._
+    }
+
+    def "aggregates with inconsistent entries are rejected"() {
+
+        when:
+
+            new AggregateView().wrap(ByteBuffer.wrap(bytes as byte[]), 0, bytes.size())
+
+        then:
+
+            thrown(RuntimeException)
+
+        where:
+
+            bytes << [[16, 0, 2, 3, 0, 0, 0], [16, 0, 1, 4, 0, 0, 0], [16, 0, 1, 2, 0, 0], [0, 0, 0]]
+    }
+}
@@ -1,8 +1,11 @@
 package aodv
 
+import sim.VirtualClock
+import sim.VirtualScheduler
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
 import java.time.Clock
 import java.time.Instant
 import java.time.ZoneId
@@ -19,6 +22,8 @@ class AodvRouterSpec extends Specification {
 
     static int BROADCAST = 0xFFFF
 
+    static int RING_ROUNDS = (TTL_START..TTL_THRESHOLD).step(TTL_INCREMENT).sum { 2 * NODE_TRAVERSAL_TIME * (it + TIMEOUT_BUFFER) }
+
     RoutingCallback callback
 
     AodvRouterImpl router
@@ -29,6 +34,7 @@ class AodvRouterSpec extends Specification {
         callback = Mock(RoutingCallback)
         router = new AodvRouterImpl(callback, clock)
         router.setAddress(HOP_3)
+        router.setBroadcastJitter(0, RREQ_COPY_THRESHOLD)
 
     }
 
@@ -60,7 +66,7 @@ class AodvRouterSpec extends Specification {
             routeToPrevHop.destinationSequenceValid = false
             routeToPrevHop.hopCount = 1
             routeToPrevHop.nextHop = HOP_2
-            routeToPrevHop.lifetime = ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.lifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.destinationSequence = 2
@@ -132,7 +138,7 @@ class AodvRouterSpec extends Specification {
             routeToPrevHop.destinationSequenceValid = false
             routeToPrevHop.hopCount = 1
             routeToPrevHop.nextHop = HOP_2
-            routeToPrevHop.lifetime = ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.lifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.destinationSequence = 2
@@ -201,7 +207,7 @@ class AodvRouterSpec extends Specification {
             routeToPrevHop.destinationSequenceValid = false
             routeToPrevHop.hopCount = 1
             routeToPrevHop.nextHop = HOP_2
-            routeToPrevHop.lifetime = ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.lifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.destinationSequence = 2
@@ -229,6 +235,189 @@ class AodvRouterSpec extends Specification {
             true   | true                     | 10                  | false
     }
 
+    def "route request view is forwarded in place without creating a new message"() {
+
+        given:
+
+            def bytes = new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2).serialize()
+            def view = new RouteRequestView().wrap(ByteBuffer.wrap(bytes), 0)
+
+        when:
+
+            router.processRouteRequest(view, HOP_2)
+
+        then:
+
+            1 * callback.send({ it.is(view) }, BROADCAST)
+            view.hopCount == 2
+            RouteRequest.parse(bytes) == new RouteRequest(2, 1, HOP_5, 10, false, HOP_1, 2)
+    }
+
+    def "route requests with the same request id from different originators are both forwarded"() {
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2), HOP_2)
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 10, false, HOP_4, 2), HOP_2)
+
+        then:
+
+            1 * callback.send(new RouteRequest(2, 1, HOP_5, 10, false, HOP_1, 2), BROADCAST)
+            1 * callback.send(new RouteRequest(2, 1, HOP_5, 10, false, HOP_4, 2), BROADCAST)
+    }
+
+    def "route request is processed again once its id has been buffered for path discovery time"() {
+
+        given:
+
+            def clock = new VirtualClock(0)
+            def router = new AodvRouterImpl(callback, clock)
+            router.setAddress(HOP_3)
+            router.setBroadcastJitter(0, RREQ_COPY_THRESHOLD)
+            def req = new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2)
+
+        when:
+
+            router.processRouteRequest(req, HOP_2)
+            clock.advanceTo(PATH_DISCOVERY_TIME - 1)
+            router.processRouteRequest(req, HOP_2)
+
+        then:
+
+            1 * callback.send(_, BROADCAST)
+
+        when:
+
+            clock.advanceTo(PATH_DISCOVERY_TIME)
+            router.processRouteRequest(req, HOP_2)
+
+        then:
+
+            1 * callback.send(_, BROADCAST)
+    }
+
+    def "late route request with an older originator sequence does not redirect the reverse route"() {
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 2, HOP_5, 10, false, HOP_1, 5), HOP_4)
+            router.processRouteRequest(new RouteRequest(3, 1, HOP_5, 10, false, HOP_1, 4), HOP_2)
+
+        then:
+
+            getRoute(HOP_1).nextHop == HOP_4
+            getRoute(HOP_1).destinationSequence == 5
+            2 * callback.send(_, BROADCAST)
+    }
+
+    def "sequence numbers are compared across the wrap from 255 to 1"() {
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 2, HOP_5, 10, false, HOP_1, 255), HOP_4)
+            router.processRouteRequest(new RouteRequest(1, 3, HOP_5, 10, false, HOP_1, 1), HOP_2)
+            router.processRouteReply(new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 255, HOP_3, 1), HOP_4)
+            router.processRouteReply(new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 1, HOP_3, 2), HOP_2)
+
+        then:
+
+            getRoute(HOP_1).nextHop == HOP_2
+            getRoute(HOP_1).destinationSequence == 1
+            getRoute(HOP_5).nextHop == HOP_2
+            getRoute(HOP_5).destinationSequence == 1
+
+        when:
+
+            router.processRouteReply(new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 255, HOP_3, 1), HOP_4)
+
+        then:
+
+            getRoute(HOP_5).nextHop == HOP_2
+            getRoute(HOP_5).destinationSequence == 1
+
+        when:
+
+            router.@sequenceNumber = MAX_8_BITS
+            router.processRouteRequest(new RouteRequest(1, 4, HOP_3, 1, false, HOP_1, 2), HOP_2)
+
+        then:
+
+            1 * callback.send(new RouteReply(MY_ROUTE_TIMEOUT, HOP_3, 1, HOP_1, 0), HOP_2)
+    }
+
+    def "forwarded route request is delayed by a random jitter"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+            router.setAddress(HOP_3)
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2), HOP_2)
+
+        then:
+
+            0 * callback.send(_, _)
+
+        when:
+
+            scheduler.runFor(BROADCAST_JITTER)
+
+        then:
+
+            1 * callback.send(new RouteRequest(2, 1, HOP_5, 10, false, HOP_1, 2), BROADCAST)
+            scheduler.pendingEvents == 1
+    }
+
+    @Unroll
+    def "forwarded route request is suppressed once #copies copies have been heard"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+            router.setAddress(HOP_3)
+            def req = new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2)
+
+        when:
+
+            [HOP_2, HOP_4, HOP_1].take(copies).each { router.processRouteRequest(req, it) }
+            scheduler.runFor(BROADCAST_JITTER)
+
+        then:
+
+            forwarded * callback.send(_, BROADCAST)
+
+        where:
+
+            copies | forwarded
+            1      | 1
+            2      | 1
+            3      | 0
+    }
+
+    def "forwarded route request is cancelled by a route reply to its originator"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+            router.setAddress(HOP_3)
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2), HOP_2)
+            router.processRouteReply(new RouteReply(4000, HOP_5, 10, HOP_1, 1), HOP_4)
+            scheduler.runFor(BROADCAST_JITTER)
+
+        then:
+
+            1 * callback.send({ it instanceof RouteReply }, HOP_2)
+            0 * callback.send(_, BROADCAST)
+    }
+
     def "route reply is forwarded to next hop if current node is not the destination"() {
 
         given:
@@ -254,7 +443,8 @@ class AodvRouterSpec extends Specification {
             routeToPrevHop.destinationSequenceValid = false
             routeToPrevHop.hopCount = 1
             routeToPrevHop.nextHop = HOP_4
-            routeToPrevHop.lifetime = ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.lifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.addPrecursor(HOP_2)
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.destinationSequence = 2
@@ -270,6 +460,7 @@ class AodvRouterSpec extends Specification {
             forwardRoute.hopCount = 2
             forwardRoute.nextHop = HOP_4
             forwardRoute.lifetime = clock.millis() + 4000
+            forwardRoute.addPrecursor(HOP_2)
 
         when:
 
@@ -299,7 +490,8 @@ class AodvRouterSpec extends Specification {
             routeToPrevHop.destinationSequenceValid = false
             routeToPrevHop.hopCount = 1
             routeToPrevHop.nextHop = HOP_4
-            routeToPrevHop.lifetime = ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.lifetime = clock.millis() + ACTIVE_ROUTE_TIMEOUT
+            routeToPrevHop.addPrecursor(HOP_2)
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.destinationSequence = 2
@@ -315,6 +507,7 @@ class AodvRouterSpec extends Specification {
             forwardRoute.hopCount = 2
             forwardRoute.nextHop = HOP_4
             forwardRoute.lifetime = clock.millis() + 4000
+            forwardRoute.addPrecursor(HOP_2)
 
         when:
 
@@ -349,6 +542,7 @@ class AodvRouterSpec extends Specification {
             expectedForwardRoute.hopCount = 2
             expectedForwardRoute.nextHop = HOP_4
             expectedForwardRoute.lifetime = clock.millis() + 4000
+            expectedForwardRoute.addPrecursor(HOP_2)
 
             def reverseRoute = new Route(HOP_1)
             reverseRoute.nextHop = HOP_2
@@ -395,6 +589,50 @@ class AodvRouterSpec extends Specification {
             getRoute(HOP_5) == updatedForwardRoute
     }
 
+    def "batched user data shares one route lookup and is sent back to back"() {
+
+        given:
+
+            def fragments = (0..<3).collect { new UserData(HOP_5, [it] as byte[]) }
+
+            def forwardRoute = new Route(HOP_5)
+            forwardRoute.destinationSequence = 10
+            forwardRoute.destinationSequenceValid = true
+            forwardRoute.hopCount = 2
+            forwardRoute.nextHop = HOP_4
+            forwardRoute.lifetime = clock.millis() + 10
+            putRoute(forwardRoute)
+
+        when:
+
+            router.processUserData(fragments)
+
+        then:
+
+            1 * callback.send(fragments[0], HOP_4)
+
+        then:
+
+            1 * callback.send(fragments[1], HOP_4)
+
+        then:
+
+            1 * callback.send(fragments[2], HOP_4)
+            getRoute(HOP_5).lifetime == clock.millis() + ACTIVE_ROUTE_TIMEOUT
+    }
+
+    def "batched user data without route starts a single route discovery"() {
+
+        when:
+
+            router.processUserData((0..<3).collect { new UserData(HOP_5, [it] as byte[]) })
+
+        then:
+
+            1 * callback.send({ it instanceof RouteRequest }, BROADCAST)
+            0 * callback.send({ it instanceof UserData }, _)
+    }
+
     def "route request is created and user data forwarding is retried if no route exists"() {
 
         given:
@@ -415,7 +653,8 @@ class AodvRouterSpec extends Specification {
                     0,                  // destinationSequence
                     true,               // destinationSequenceUnknown
                     HOP_3,              // originatorAddress
-                    1                   // originatorSequence
+                    1,                  // originatorSequence
+                    TTL_START           // timeToLive
             )
 
             def reply = new RouteReply(
@@ -449,47 +688,530 @@ class AodvRouterSpec extends Specification {
 
         given:
 
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
             def ud = new UserData(HOP_5, "test".getBytes())
 
         when:
 
             router.processUserData(ud, HOP_2)
+            scheduler.runFor(RING_ROUNDS - 1)
 
         then:
 
-            1 * callback.send(new RouteRequest(0, 1, HOP_5, 0, true, HOP_3, 1), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 1, HOP_5, 0, true, HOP_3, 1, 1), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 2, HOP_5, 0, true, HOP_3, 2, 3), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 3, HOP_5, 0, true, HOP_3, 3, 5), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 4, HOP_5, 0, true, HOP_3, 4, 7), BROADCAST)
 
         when:
 
-            sleep(3000)
+            scheduler.runFor(1)
+
+        then:
+
+            1 * callback.send(new RouteRequest(0, 5, HOP_5, 0, true, HOP_3, 5, UNLIMITED_TTL), BROADCAST)
+
+        when:
+
+            scheduler.runFor(NET_TRAVERSAL_TIME)
 
         then:
 
-            1 * callback.send(new RouteRequest(0, 2, HOP_5, 0, true, HOP_3, 2), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 6, HOP_5, 0, true, HOP_3, 6, UNLIMITED_TTL), BROADCAST)
 
         when:
 
-            sleep(6000)
+            scheduler.runFor(2 * NET_TRAVERSAL_TIME)
 
         then:
 
-            1 * callback.send(new RouteRequest(0, 3, HOP_5, 0, true, HOP_3, 3), BROADCAST)
+            1 * callback.send(new RouteRequest(0, 7, HOP_5, 0, true, HOP_3, 7, UNLIMITED_TTL), BROADCAST)
 
         when:
 
-            sleep(12000)
+            scheduler.runFor(4 * NET_TRAVERSAL_TIME)
 
         then:
 
             1 * callback.onError("Destination unreachable")
     }
 
+    def "expanding ring search starts beyond the hop count of a stale route"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
+            router.processRouteReply(new RouteReply(1000, HOP_5, 10, HOP_3, 1), HOP_4)
+            scheduler.runFor(1000)
+
+        when:
+
+            router.processUserData(new UserData(HOP_5, [1] as byte[]), HOP_2)
+            scheduler.runFor(2 * NODE_TRAVERSAL_TIME * (4 + TIMEOUT_BUFFER) + 2 * NODE_TRAVERSAL_TIME * (6 + TIMEOUT_BUFFER))
+
+        then:
+
+            1 * callback.send({ it instanceof RouteRequest && it.timeToLive == 4 }, BROADCAST)
+            1 * callback.send({ it instanceof RouteRequest && it.timeToLive == 6 }, BROADCAST)
+            1 * callback.send({ it instanceof RouteRequest && it.timeToLive == UNLIMITED_TTL }, BROADCAST)
+    }
+
+    @Unroll
+    def "route request is not forwarded beyond its time to live"() {
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(hopCount, 1, HOP_5, 10, false, HOP_1, 2, timeToLive), HOP_2)
+
+        then:
+
+            forwarded * callback.send(_, BROADCAST)
+
+        where:
+
+            hopCount | timeToLive    | forwarded
+            0        | 1             | 0
+            0        | 2             | 1
+            1        | 2             | 0
+            20       | UNLIMITED_TTL | 1
+    }
+
     def putRoute(Route route) {
-        router.routes.put(route.destinationAddress, route)
+        router.routes.putRoute(route)
     }
 
     def getRoute(destinationAddress) {
-        router.routes.get(destinationAddress)
+        router.routes.getRoute(destinationAddress)
+    }
+
+
+    def "a burst of user data to an unknown destination shares one route discovery and is flushed on the route reply"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
+            def packets = (1..50).collect { new UserData(HOP_5, [it] as byte[]) }
+            def sent = []
+
+        when:
+
+            packets.each { router.processUserData(it, HOP_2) }
+
+        then:
+
+            1 * callback.send(new RouteRequest(0, 1, HOP_5, 0, true, HOP_3, 1, TTL_START), BROADCAST)
+            0 * callback.send(_, _)
+
+        when:
+
+            scheduler.runFor(2 * NODE_TRAVERSAL_TIME * (TTL_START + TIMEOUT_BUFFER) - 1)
+            router.processRouteReply(new RouteReply(4000, HOP_5, 10, HOP_3, 1), HOP_4)
+
+        then:
+
+            50 * callback.send({ it instanceof UserData }, HOP_4) >> { sent << it[0] }
+            sent == packets
+
+        when:
+
+            scheduler.runFor(PATH_DISCOVERY_TIME * 4)
+
+        then:
+
+            0 * callback._
+    }
+
+    def "queued user data is dropped with a single error once the route discovery retries are exhausted"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
+
+        when:
+
+            5.times { router.processUserData(new UserData(HOP_5, [it] as byte[]), HOP_2) }
+            scheduler.runFor(RING_ROUNDS + 7 * NET_TRAVERSAL_TIME)
+
+        then:
+
+            7 * callback.send({ it instanceof RouteRequest }, BROADCAST)
+            1 * callback.onError("Destination unreachable")
+            0 * callback._
+
+        when:
+
+            router.processUserData(new UserData(HOP_5, [1] as byte[]), HOP_2)
+
+        then:
+
+            1 * callback.send(new RouteRequest(0, 8, HOP_5, 0, true, HOP_3, 8, TTL_START), BROADCAST)
     }
 
+    def "user data is rejected once the route discovery queue is full"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
+
+        when:
+
+            (PENDING_PACKETS_CAPACITY + 1).times { router.processUserData(new UserData(HOP_5, [it] as byte[]), HOP_2) }
+
+        then:
+
+            1 * callback.send(_, BROADCAST)
+            1 * callback.onError("Route discovery queue full")
+    }
+
+    def "expired routes are deleted after the delete period unless they are refreshed"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(HOP_3)
+            router.processRouteReply(new RouteReply(4000, HOP_5, 10, HOP_3, 1), HOP_4)
+
+        when:
+
+            scheduler.runUntil(3500)
+            router.processUserData(new UserData(HOP_5, [1] as byte[]))
+            scheduler.runUntil(3500 + ACTIVE_ROUTE_TIMEOUT + DELETE_PERIOD - 1)
+
+        then:
+
+            router.routes.size() == 2
+
+        when:
+
+            scheduler.runUntil(3500 + ACTIVE_ROUTE_TIMEOUT + DELETE_PERIOD + EXPIRY_TICK)
+
+        then:
+
+            router.routes.size() == 0
+            scheduler.pendingEvents == 0
+    }
+
+    def "link failure invalidates the routes over the neighbor and notifies their single precursor"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.destinationSequence = 10
+            route.destinationSequenceValid = true
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+
+            def neighbor = new Route(HOP_4)
+            neighbor.hopCount = 1
+            neighbor.nextHop = HOP_4
+            neighbor.lifetime = clock.millis() + 4000
+            putRoute(neighbor)
+
+            def other = new Route(HOP_1)
+            other.destinationSequence = 3
+            other.destinationSequenceValid = true
+            other.hopCount = 1
+            other.nextHop = HOP_1
+            other.lifetime = clock.millis() + 4000
+            other.addPrecursor(HOP_2)
+            putRoute(other)
+
+        when:
+
+            router.processLinkFailure(HOP_4)
+
+        then:
+
+            1 * callback.send(new RouteError([HOP_5, HOP_4] as int[], [11, 0] as int[]), HOP_2)
+            getRoute(HOP_5).lifetime == clock.millis()
+            getRoute(HOP_5).destinationSequence == 11
+            getRoute(HOP_4).lifetime == clock.millis()
+            getRoute(HOP_1).lifetime == clock.millis() + 4000
+    }
+
+    def "link failure is broadcast if several precursors use the broken routes"() {
+
+        given:
+
+            [HOP_5, HOP_1].each {
+                def route = new Route(it)
+                route.hopCount = 2
+                route.nextHop = HOP_4
+                route.lifetime = clock.millis() + 4000
+                route.addPrecursor(it == HOP_5 ? HOP_1 : HOP_2)
+                putRoute(route)
+            }
+
+        when:
+
+            router.processLinkFailure(HOP_4)
+
+        then:
+
+            1 * callback.send({ it instanceof RouteError && it.destinationCount == 2 }, BROADCAST)
+    }
+
+    def "link failure without precursors invalidates the routes silently"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            putRoute(route)
+
+        when:
+
+            router.processLinkFailure(HOP_4)
+
+        then:
+
+            0 * callback.send(_, _)
+            getRoute(HOP_5).lifetime == clock.millis()
+    }
+
+    def "route error from the next hop invalidates the route and is propagated to the precursors"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.destinationSequence = 10
+            route.destinationSequenceValid = true
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+
+        when:
+
+            router.processRouteError(new RouteError([HOP_5, HOP_1] as int[], [12, 1] as int[]), HOP_4)
+
+        then:
+
+            1 * callback.send(new RouteError(HOP_5, 12), HOP_2)
+            getRoute(HOP_5).lifetime == clock.millis()
+            getRoute(HOP_5).destinationSequence == 12
+            getRoute(HOP_1) == null
+
+        when:
+
+            router.processRouteError(new RouteError(HOP_5, 13), HOP_4)
+
+        then:
+
+            0 * callback.send(_, _)
+    }
+
+    def "route error from a node other than the next hop is ignored"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+
+        when:
+
+            router.processRouteError(new RouteError(HOP_5, 12), HOP_1)
+
+        then:
+
+            0 * callback.send(_, _)
+            getRoute(HOP_5).lifetime == clock.millis() + 4000
+    }
+
+    def "copy of a route request over another path is kept as an alternate and answered by the destination"() {
+
+        given:
+
+            def request = { hopCount -> new RouteRequest(hopCount, 1, HOP_3, 0, true, HOP_1, 2) }
+
+        when:
+
+            router.processRouteRequest(request(1), HOP_2)
+            router.processRouteRequest(request(1), HOP_4)
+            router.processRouteRequest(request(2), HOP_5)
+
+        then:
+
+            1 * callback.send({ it instanceof RouteReply && it.originatorAddress == HOP_1 }, HOP_2)
+            1 * callback.send({ it instanceof RouteReply && it.originatorAddress == HOP_1 }, HOP_4)
+            0 * callback.send(_, HOP_5)
+
+            def entry = router.routes.find(HOP_1)
+            router.routes.getNextHop(entry) == HOP_2
+            router.routes.getAlternateCount(entry) == 1
+            router.routes.getAlternateNextHop(entry, 0) == HOP_4
+    }
+
+    def "link failure fails over to an alternate next hop without a route error"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.destinationSequence = 10
+            route.destinationSequenceValid = true
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+            router.routes.addAlternate(router.routes.find(HOP_5), HOP_1, 2, clock.millis() + 6000)
+
+        when:
+
+            router.processLinkFailure(HOP_4)
+
+        then:
+
+            0 * callback.send(_, _)
+            getRoute(HOP_5).nextHop == HOP_1
+            getRoute(HOP_5).destinationSequence == 10
+            getRoute(HOP_5).lifetime == clock.millis() + 6000
+            router.routes.getAlternateCount(router.routes.find(HOP_5)) == 0
+            router.stats.failovers == 1
+    }
+
+    def "route error from the next hop fails over to an alternate next hop"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.destinationSequence = 10
+            route.destinationSequenceValid = true
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+            def entry = router.routes.find(HOP_5)
+            router.routes.addAlternate(entry, HOP_4, 2, clock.millis() + 4000)
+            router.routes.addAlternate(entry, HOP_1, 2, clock.millis() + 4000)
+
+        when:
+
+            router.processRouteError(new RouteError(HOP_5, 12), HOP_4)
+
+        then:
+
+            0 * callback.send(_, _)
+            getRoute(HOP_5).nextHop == HOP_1
+            router.routes.getAlternateCount(entry) == 0
+    }
+
+    def "expired alternate is not used for a failover"() {
+
+        given:
+
+            def route = new Route(HOP_5)
+            route.destinationSequence = 10
+            route.destinationSequenceValid = true
+            route.hopCount = 2
+            route.nextHop = HOP_4
+            route.lifetime = clock.millis() + 4000
+            route.addPrecursor(HOP_2)
+            putRoute(route)
+            router.routes.addAlternate(router.routes.find(HOP_5), HOP_1, 2, clock.millis())
+
+        when:
+
+            router.processLinkFailure(HOP_4)
+
+        then:
+
+            1 * callback.send(new RouteError(HOP_5, 11), HOP_2)
+            getRoute(HOP_5).lifetime == clock.millis()
+            router.stats.failovers == 0
+    }
+
+    def "route reply over strong links replaces a shorter route over a weak one"() {
+
+        given:
+
+            router.processLinkQuality(HOP_4, -120)
+            router.processLinkQuality(HOP_2, -70)
+
+        when:
+
+            router.processRouteReply(new RouteReply(4000, HOP_5, 10, HOP_3, 0), HOP_4)
+
+        then:
+
+            getRoute(HOP_5).nextHop == HOP_4
+            getRoute(HOP_5).hopCount == 1
+            getRoute(HOP_5).metric == MAX_LINK_COST
+
+        when:
+
+            router.processRouteReply(new RouteReply(4000, HOP_5, 10, HOP_3, 1), HOP_2)
+
+        then:
+
+            getRoute(HOP_5).nextHop == HOP_2
+            getRoute(HOP_5).hopCount == 2
+            getRoute(HOP_5).metric == 2
+            getRoute(HOP_4).metric == MAX_LINK_COST
+    }
+
+    def "later copy of a route request over strong links redirects the reverse route and is answered"() {
+
+        given:
+
+            router.processLinkQuality(HOP_1, -120)
+            def request = { hopCount -> new RouteRequest(hopCount, 1, HOP_3, 0, true, HOP_1, 2) }
+
+        when:
+
+            router.processRouteRequest(request(0), HOP_1)
+
+        then:
+
+            1 * callback.send(new RouteReply(MY_ROUTE_TIMEOUT, HOP_3, 0, HOP_1, 0), HOP_1)
+            getRoute(HOP_1).metric == MAX_LINK_COST
+
+        when:
+
+            router.processRouteRequest(request(1), HOP_2)
+
+        then:
+
+            1 * callback.send(new RouteReply(MY_ROUTE_TIMEOUT, HOP_3, 0, HOP_1, 0), HOP_2)
+            getRoute(HOP_1).nextHop == HOP_2
+            getRoute(HOP_1).hopCount == 2
+            getRoute(HOP_1).metric == 2
+    }
+
+    def "forwarded route request adds the cost of the link it came over"() {
+
+        given:
+
+            router.processLinkQuality(HOP_2, -110)
+
+        when:
+
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 0, true, HOP_1, 2), HOP_2)
+
+        then:
+
+            1 * callback.send(new RouteRequest(2, 1, HOP_5, 0, true, HOP_1, 2, UNLIMITED_TTL, 4), BROADCAST)
+    }
 }
@@ -0,0 +1,66 @@
+package aodv
+
+import spock.lang.Specification
+
+class DuplicateRequestCacheSpec extends Specification {
+
+    def cache = new DuplicateRequestCache(1000, 4)
+
+    def "pairs are duplicates until the retention time has passed"() {
+
+        when:
+
+            def first = cache.add(101, 1, 0)
+            def second = cache.add(101, 1, 999)
+            def third = cache.add(101, 1, 1000)
+
+        then:
+
+            first
+            !second
+            third
+    }
+
+    def "pairs are identified by originator address and request id"() {
+
+        expect:
+
+            cache.add(101, 1, 0)
+            cache.add(102, 1, 0)
+            cache.add(101, 2, 0)
+            cache.contains(101, 1, 0)
+            !cache.contains(102, 2, 0)
+            cache.size() == 3
+    }
+
+    def "oldest pairs are evicted when the capacity is reached"() {
+
+        when:
+
+            (1..6).each { cache.add(100 + it, 63, it) }
+
+        then:
+
+            cache.size() == 4
+            !cache.contains(101, 63, 6)
+            !cache.contains(102, 63, 6)
+            (103..106).every { cache.contains(it, 63, 6) }
+    }
+
+    def "remaining pairs are found after many evictions"() {
+
+        given:
+
+            def cache = new DuplicateRequestCache(50, 64)
+
+        when:
+
+            (0..<10000).each { cache.add(it % 65536, it % 64, it) }
+
+        then:
+
+            cache.size() == 50
+            (9950..<10000).every { cache.contains(it % 65536, it % 64, 9999) }
+            !cache.contains(9949, 9949 % 64, 9999)
+    }
+}
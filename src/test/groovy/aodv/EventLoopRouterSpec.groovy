@@ -0,0 +1,173 @@
+package aodv
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.time.Clock
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class EventLoopRouterSpec extends Specification {
+
+    static int HOP_1 = 101
+    static int HOP_2 = 102
+    static int HOP_3 = 103
+    static int HOP_5 = 105
+
+    def sent = new ConcurrentLinkedQueue()
+
+    def threads = new ConcurrentLinkedQueue<Thread>()
+
+    def errors = new ConcurrentLinkedQueue<String>()
+
+    def latch
+
+    def callback = new RoutingCallback() {
+
+        @Override
+        void send(Message message, int destination) {
+            sent << [message, destination]
+            threads << Thread.currentThread()
+            latch?.countDown()
+        }
+
+        @Override
+        void onError(String msg) {
+            errors << msg
+            threads << Thread.currentThread()
+            latch?.countDown()
+        }
+    }
+
+    def router = new EventLoopRouter(callback, Clock.systemDefaultZone())
+
+    def cleanup() {
+        router.close()
+    }
+
+    def "events posted from many threads are processed on the single event loop thread"() {
+
+        given:
+
+            router.setAddress(HOP_3)
+            latch = new CountDownLatch(8 * 50)
+
+        when:
+
+            (1..8).collect { t ->
+                Thread.start {
+                    (1..50).each { router.processRouteRequest(new RouteRequest(1, it, HOP_5, 10, false, 1000 + t, 2), HOP_2) }
+                }
+            }*.join()
+
+        then:
+
+            latch.await(10, TimeUnit.SECONDS)
+            sent.size() == 8 * 50
+            threads.toSet().size() == 1
+            threads.first() != Thread.currentThread()
+            router.address == HOP_3
+    }
+
+    def "frames of reused views are detached before they are queued"() {
+
+        given:
+
+            router.setAddress(HOP_3)
+            latch = new CountDownLatch(2)
+            def buffer = ByteBuffer.wrap(new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2).serialize())
+            def view = new RouteRequestView()
+
+        when:
+
+            router.processRouteRequest(view.wrap(buffer, 0), HOP_2)
+            buffer.put(0, new RouteRequest(1, 2, HOP_5, 10, false, HOP_1, 2).serialize(), 0, 9)
+            router.processRouteRequest(view.wrap(buffer, 0), HOP_2)
+
+        then:
+
+            latch.await(10, TimeUnit.SECONDS)
+            sent*.get(0)*.requestId.sort() == [1, 2]
+    }
+
+    def "timers of the router fire on the event loop thread"() {
+
+        given:
+
+            router.setAddress(HOP_3)
+            latch = new CountDownLatch(1)
+
+        when:
+
+            router.processUserData(new UserData(HOP_5, "test".bytes))
+
+        then:
+
+            latch.await(10, TimeUnit.SECONDS)
+            sent.first() == [new RouteRequest(0, 1, HOP_5, 0, true, HOP_3, 1, Utils.TTL_START), 0xFFFF]
+
+        when:
+
+            latch = new CountDownLatch(1)
+
+        then:
+
+            latch.await(10, TimeUnit.SECONDS)
+            sent.last()[0].requestId == 2
+            threads.toSet().size() == 1
+    }
+
+    def "failing events are reported without stopping the event loop"() {
+
+        given:
+
+            latch = new CountDownLatch(2)
+
+        when:
+
+            router.post({ throw new RuntimeException("boom") })
+            router.setAddress(HOP_3)
+            router.processRouteRequest(new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2), HOP_2)
+
+        then:
+
+            latch.await(10, TimeUnit.SECONDS)
+            errors.toList() == ["Failed to process event: boom"]
+            sent.size() == 1
+    }
+
+    def "closed routers reject further events"() {
+
+        when:
+
+            router.close()
+            router.processUserData(new UserData(HOP_5, "test".bytes))
+
+        then:
+
+            thrown(RuntimeException)
+    }
+
+    def "queries of a closed router fail instead of blocking"() {
+
+        when:
+
+            router.close()
+            router.snapshot().get(10, TimeUnit.SECONDS)
+
+        then:
+
+            def e = thrown(ExecutionException)
+            e.cause.message == "Router is closed"
+
+        when:
+
+            router.restore(new RouteSnapshot(0, HOP_3, 1, 1, [])).get(10, TimeUnit.SECONDS)
+
+        then:
+
+            thrown(ExecutionException)
+    }
+}
@@ -0,0 +1,259 @@
+package aodv
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+class FragmentationSpec extends Specification {
+
+    static int SOURCE = 0x0101
+    static int DESTINATION = 0x0202
+
+    def scheduler = new VirtualScheduler(new VirtualClock(0))
+
+    def router = Mock(AodvRouter) {
+        getAddress() >> SOURCE
+    }
+
+    def sender = new FragmentSender(router, 10)
+
+    def received = new ByteArrayOutputStream()
+
+    def events = []
+
+    def listener = new Reassembler.Listener() {
+
+        void onFragment(int sourceAddress, int messageId, int index, byte[] data, int offset, int length) {
+            received.write(data, offset, length)
+            events << "fragment " + index
+        }
+
+        void onMessageComplete(int sourceAddress, int messageId) {
+            events << "complete " + String.format("%04X", sourceAddress)
+        }
+
+        void onMessageAborted(int sourceAddress, int messageId, String reason) {
+            events << "aborted " + reason
+        }
+    }
+
+    def reassembler = new Reassembler(scheduler, listener, 2, 2, 1000)
+
+    def message = (0..<35).collect { (byte) it } as byte[]
+
+    List<UserData> fragment(byte[] message) {
+        List<UserData> fragments = null
+        sender.send(DESTINATION, message)
+        1 * router.processUserData(_ as List) >> { fragments = it[0] }
+        return fragments
+    }
+
+    def "messages that fit into one frame are sent as plain payloads"() {
+
+        when:
+
+            def count = sender.send(DESTINATION, "hello".bytes)
+
+        then:
+
+            count == 1
+            1 * router.processUserData(new UserData(DESTINATION, "hello".bytes))
+            !reassembler.accept(new UserData(DESTINATION, "hello".bytes))
+    }
+
+    def "large messages are split into fragments handed to the router at once"() {
+
+        when:
+
+            def count = sender.send(DESTINATION, message)
+
+        then:
+
+            count == 4
+            1 * router.processUserData({ List<UserData> fragments ->
+                fragments.size() == 4 &&
+                fragments.every { it.destinationAddress == DESTINATION && Fragment.isFragment(it) && Fragment.getSourceAddress(it) == SOURCE } &&
+                fragments.collect { Fragment.getIndex(it) } == [0, 1, 2, 3] &&
+                fragments.collect { it.dataLength } == [16, 16, 16, 11]
+            })
+    }
+
+    def "fragments and plain messages sized for a Base64 transport fit into its 250 characters"() {
+
+        given:
+
+            def base64 = new FragmentSender(router, FragmentSender.dataLengthFor(250.intdiv(4) * 3))
+            def frames = []
+            router.processUserData(_) >> { frames.addAll(it[0] instanceof List ? it[0] : [it[0]]) }
+
+        when:
+
+            def plain = base64.send(DESTINATION, new byte[183])
+            def split = base64.send(DESTINATION, new byte[184])
+            def large = base64.send(DESTINATION, new byte[1000])
+
+        then:
+
+            plain == 1
+            split == 2
+            large == 6
+            frames.size() == 9
+            frames.every { Base64.encoder.encode(it.serialize()).length <= 250 }
+            frames.collect { Base64.encoder.encode(it.serialize()).length }.max() == 248
+    }
+
+    def "fragments are handed out in order as they arrive"() {
+
+        given:
+
+            def fragments = []
+            router.processUserData(_ as List) >> { fragments.addAll(it[0]) }
+            sender.send(DESTINATION, message)
+
+        when:
+
+            reassembler.accept(fragments[0])
+
+        then:
+
+            events == ["fragment 0"]
+
+        when:
+
+            reassembler.accept(fragments[2])
+            reassembler.accept(fragments[3])
+
+        then:
+
+            events == ["fragment 0"]
+
+        when:
+
+            reassembler.accept(fragments[1])
+
+        then:
+
+            events == ["fragment 0", "fragment 1", "fragment 2", "fragment 3", "complete 0101"]
+            received.toByteArray() == message
+            reassembler.reassemblies == 0
+    }
+
+    def "fragments wrapped in views are reassembled"() {
+
+        given:
+
+            def fragments = []
+            router.processUserData(_ as List) >> { fragments.addAll(it[0]) }
+            sender.send(DESTINATION, message)
+            def view = new UserDataView()
+
+        when:
+
+            fragments.each { UserData fragment ->
+                def frame = ByteBuffer.wrap(fragment.serialize())
+                reassembler.accept(view.wrap(frame, 0, frame.limit()))
+            }
+
+        then:
+
+            received.toByteArray() == message
+            events.last() == "complete 0101"
+    }
+
+    def "plain payloads are told apart from fragments by the frame type, whatever their first bytes"() {
+
+        given:
+
+            def payload = [0xFC, 0x01, 0x01, 0x01, 0x00, 0x01, 0x41] as byte[]
+            def view = new UserDataView()
+
+        when:
+
+            sender.send(DESTINATION, payload)
+
+        then:
+
+            1 * router.processUserData(new UserData(DESTINATION, payload))
+
+        when:
+
+            def frame = ByteBuffer.wrap(new UserData(DESTINATION, payload).serialize())
+            def fragmentFrame = ByteBuffer.wrap(new UserData(DESTINATION, payload, true).serialize())
+
+        then:
+
+            !reassembler.accept(view.wrap(frame, 0, frame.limit()))
+            Fragment.isFragment(view.wrap(fragmentFrame, 0, fragmentFrame.limit()))
+            view.toUserData() == new UserData(DESTINATION, payload, true)
+            UserData.parse(fragmentFrame.array()) == new UserData(DESTINATION, payload, true)
+            UserData.parse(frame.array()) == new UserData(DESTINATION, payload)
+    }
+
+    def "a message that makes no progress is aborted"() {
+
+        given:
+
+            def fragments = []
+            router.processUserData(_ as List) >> { fragments.addAll(it[0]) }
+            sender.send(DESTINATION, message)
+
+        when:
+
+            reassembler.accept(fragments[0])
+            scheduler.runFor(999)
+
+        then:
+
+            events == ["fragment 0"]
+
+        when:
+
+            reassembler.accept(fragments[1])
+            scheduler.runFor(999)
+
+        then:
+
+            events == ["fragment 0", "fragment 1"]
+
+        when:
+
+            scheduler.runFor(1)
+
+        then:
+
+            events.last() == "aborted Reassembly timed out"
+            reassembler.reassemblies == 0
+    }
+
+    def "buffered fragments and concurrent messages are bounded"() {
+
+        given:
+
+            def fragments = []
+            router.processUserData(_ as List) >> { fragments.addAll(it[0]) }
+            4.times { sender.send(DESTINATION, message) }
+
+        when:
+
+            reassembler.accept(fragments[1])
+            reassembler.accept(fragments[2])
+            reassembler.accept(fragments[3])
+
+        then:
+
+            events == ["aborted Reassembly buffer full"]
+
+        when:
+
+            reassembler.accept(fragments[4])
+            reassembler.accept(fragments[8])
+            reassembler.accept(fragments[12])
+
+        then:
+
+            events == ["aborted Reassembly buffer full", "fragment 0", "fragment 0", "aborted Reassembly capacity exceeded", "fragment 0"]
+            reassembler.reassemblies == 2
+    }
+}
@@ -0,0 +1,69 @@
+package aodv
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class LinkQualitySpec extends Specification {
+
+    @Unroll
+    def "link with an RSSI of #rssi dBm costs #cost"() {
+
+        expect:
+
+            LinkQuality.costOf(rssi) == cost
+
+        where:
+
+            rssi                        | cost
+            LinkQuality.UNKNOWN_RSSI    | 1
+            -60                         | 1
+            -100                        | 1
+            -101                        | 2
+            -106                        | 2
+            -107                        | 3
+            -113                        | 4
+            -130                        | 4
+    }
+
+    def "samples are averaged per neighbor"() {
+
+        given:
+
+            def quality = new LinkQuality(4)
+
+        when:
+
+            quality.update(101, -90, 0)
+            quality.update(101, -130, 1)
+            quality.update(102, -112, 2)
+
+        then:
+
+            quality.getRssi(101) == -100
+            quality.getCost(101) == 1
+            quality.getCost(102) == 3
+            quality.getRssi(103) == LinkQuality.UNKNOWN_RSSI
+            quality.getCost(103) == 1
+    }
+
+    def "the neighbor heard from the longest time ago is replaced once the capacity is reached"() {
+
+        given:
+
+            def quality = new LinkQuality(2)
+            quality.update(101, -110, 0)
+            quality.update(102, -110, 1)
+            quality.update(101, -110, 2)
+
+        when:
+
+            quality.update(103, -80, 3)
+
+        then:
+
+            quality.size() == 2
+            quality.getRssi(102) == LinkQuality.UNKNOWN_RSSI
+            quality.getRssi(101) == -110
+            quality.getRssi(103) == -80
+    }
+}
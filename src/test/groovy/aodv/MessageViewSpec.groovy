@@ -0,0 +1,173 @@
+package aodv
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class MessageViewSpec extends Specification {
+
+    def "route request view exposes the encoded fields and increments the hop count in place"() {
+
+        given:
+
+            def req = new RouteRequest(7, 10, 105, 10, true, 5, 2, 9)
+            def buffer = ByteBuffer.allocate(16).put(1 as byte).put(req.serialize())
+            def view = new RouteRequestView().wrap(buffer, 1)
+
+        expect:
+
+            view.toRouteRequest() == req
+
+        when:
+
+            def incremented = view.incrementHopCount()
+
+        then:
+
+            incremented.is(view)
+            view.toRouteRequest() == req.incrementHopCount()
+            buffer.get(0) == 1 as byte
+    }
+
+    def "route reply view exposes the encoded fields and increments the hop count in place"() {
+
+        given:
+
+            def reply = new RouteReply(262143, 65535, 255, 5, 2)
+            def view = new RouteReplyView().wrap(ByteBuffer.wrap(reply.serialize()), 0)
+
+        expect:
+
+            view.toRouteReply() == reply
+
+        when:
+
+            view.incrementHopCount()
+
+        then:
+
+            view.toRouteReply() == reply.incrementHopCount()
+    }
+
+    @Unroll
+    def "user data view decodes the payload without a copy of the frame"() {
+
+        given:
+
+            def ud = new UserData(destinationAddress, data as byte[])
+            def bytes = ud.serialize()
+            def view = new UserDataView().wrap(ByteBuffer.wrap(bytes), 0, bytes.length)
+
+        expect:
+
+            view.destinationAddress == destinationAddress
+            view.dataLength == ud.dataLength
+            view.toUserData() == ud
+
+        where:
+
+            destinationAddress | data
+                           105 | []
+                           105 | [0x68, 0x61, 0x6C]
+                         65535 | [0xFF, 0x00, 0xC3, 0x7F]
+    }
+
+    def "views encode the frame they wrap"() {
+
+        given:
+
+            def bytes = new RouteRequest(1, 1, 1, 1, false, 1, 1).serialize()
+            def view = new RouteRequestView().wrap(ByteBuffer.wrap(bytes), 0)
+            def target = ByteBuffer.allocate(9)
+
+        when:
+
+            view.encodeTo(target)
+
+        then:
+
+            target.array() == bytes
+    }
+
+    def "wrapping a frame of another type is rejected"() {
+
+        when:
+
+            new RouteReplyView().wrap(ByteBuffer.wrap(new RouteRequest(1, 1, 1, 1, false, 1, 1).serialize()), 0)
+
+        then:
+
+            thrown(RuntimeException)
+    }
+
+    def "route error view exposes the unreachable destinations"() {
+
+        given:
+
+            def error = new RouteError([105, 65535, 7] as int[], [10, 255, 0] as int[])
+            def bytes = error.serialize()
+            def buffer = ByteBuffer.allocate(32).put(1 as byte).put(bytes)
+            def view = new RouteErrorView().wrap(buffer, 1, bytes.length)
+
+        expect:
+
+            view.destinationCount == 3
+            view.getDestinationAddress(1) == 65535
+            view.getDestinationSequence(1) == 255
+            view.toRouteError() == error
+            view.getEncodedLength() == bytes.length
+    }
+
+    def "route error view rejects frames whose length does not match the destination count"() {
+
+        given:
+
+            def bytes = new RouteError([105, 104] as int[], [10, 2] as int[]).serialize()
+
+        when:
+
+            new RouteErrorView().wrap(ByteBuffer.wrap(bytes), 0, 6)
+
+        then:
+
+            thrown(RuntimeException)
+    }
+
+    def "views read the metric block and write it once the metric departs from the hop count"() {
+
+        given:
+
+            def req = new RouteRequest(3, 10, 105, 10, false, 5, 2, 0, 9)
+            def reqBytes = req.serialize()
+            def reqView = new RouteRequestView().wrap(ByteBuffer.wrap(reqBytes), 0, reqBytes.length)
+            def reply = new RouteReply(4000, 105, 10, 5, 2)
+            def replyView = new RouteReplyView().wrap(ByteBuffer.wrap(reply.serialize()), 0, RouteReply.LENGTH)
+            def target = ByteBuffer.allocate(12)
+
+        when:
+
+            reqView.incrementHopCount(2)
+            replyView.incrementHopCount(3)
+
+        then:
+
+            reqView.toRouteRequest() == req.incrementHopCount(2)
+            replyView.metric == 5
+            replyView.encodedLength == RouteReply.EXTENDED_LENGTH
+            replyView.encodeTo(target) == 12
+            RouteReply.parse(target.array()) == reply.incrementHopCount(3)
+    }
+
+    def "route request view rejects a length that is neither the plain nor the extended one"() {
+
+        when:
+
+            def bytes = new RouteRequest(1, 1, 1, 1, false, 1, 1).serialize()
+            new RouteRequestView().wrap(ByteBuffer.allocate(16).put(bytes).flip(), 0, 10)
+
+        then:
+
+            thrown(RuntimeException)
+    }
+}
@@ -0,0 +1,189 @@
+package aodv
+
+import spock.lang.Specification
+
+import static aodv.RoutingTable.NOT_FOUND
+import static aodv.Utils.MAX_ALTERNATE_HOPS
+
+class PrimitiveRoutingTableSpec extends Specification {
+
+    def table = new PrimitiveRoutingTable()
+
+    def "routes are found again after the table has grown"() {
+
+        when:
+
+            (0..<5000).each {
+                def entry = table.findOrCreate(it * 13 % 65536)
+                table.setNextHop(entry, it % 65536)
+                table.setLifetime(entry, it * 1000L)
+            }
+
+        then:
+
+            table.size() == 5000
+            (0..<5000).every {
+                def entry = table.find(it * 13 % 65536)
+                table.getNextHop(entry) == it && table.getLifetime(entry) == it * 1000L
+            }
+            table.find(1) == NOT_FOUND
+    }
+
+    def "removed routes leave the remaining probe chains intact"() {
+
+        given:
+
+            def addresses = (1..2000).collect { it * 7 }
+            addresses.each { table.setHopCount(table.findOrCreate(it), it % 200) }
+
+        when:
+
+            addresses.findAll { it % 3 == 0 }.each { assert table.remove(it) }
+
+        then:
+
+            !table.remove(3)
+            table.size() == addresses.count { it % 3 != 0 }
+            addresses.every { a ->
+                def entry = table.find(a)
+                a % 3 == 0 ? entry == NOT_FOUND : table.getHopCount(entry) == a % 200
+            }
+    }
+
+    def "entry handles are reused after removal and start out empty"() {
+
+        given:
+
+            def entry = table.findOrCreate(100)
+            table.setDestinationSequence(entry, 7)
+            table.setDestinationSequenceValid(entry, true)
+            table.addPrecursor(entry, 5)
+            table.remove(100)
+
+        when:
+
+            def reused = table.findOrCreate(200)
+
+        then:
+
+            reused == entry
+            table.getDestinationAddress(reused) == 200
+            table.getDestinationSequence(reused) == 0
+            !table.isDestinationSequenceValid(reused)
+            table.getPrecursorCount(reused) == 0
+    }
+
+    def "precursors behave like an insertion ordered set"() {
+
+        given:
+
+            def entry = table.findOrCreate(100)
+
+        when:
+
+            [5, 6, 5, 7, 8, 9, 6].each { table.addPrecursor(entry, it) }
+
+        then:
+
+            table.getPrecursorCount(entry) == 5
+            (0..<5).collect { table.getPrecursor(entry, it) } == [5, 6, 7, 8, 9]
+    }
+
+    def "alternates are ordered by metric and a full list only takes better ones"() {
+
+        given:
+
+            def entry = table.findOrCreate(100)
+
+        when:
+
+            def added = [table.addAlternate(entry, 5, 3, 1000), table.addAlternate(entry, 6, 2, 2000),
+                         table.addAlternate(entry, 7, 4, 3000), table.addAlternate(entry, 8, 1, 4000)]
+
+        then:
+
+            added == [true, true, false, true]
+            table.getAlternateCount(entry) == MAX_ALTERNATE_HOPS
+            (0..<2).collect { table.getAlternateNextHop(entry, it) } == [8, 6]
+            (0..<2).collect { table.getAlternateLifetime(entry, it) } == [4000L, 2000L]
+
+        when:
+
+            table.addAlternate(entry, 6, 1, 5000)
+            table.removeAlternate(entry, 0)
+
+        then:
+
+            table.getAlternateCount(entry) == 1
+            table.getAlternateNextHop(entry, 0) == 6
+            table.getAlternateMetric(entry, 0) == 1
+            table.getAlternateLifetime(entry, 0) == 5000L
+
+        when:
+
+            table.remove(100)
+
+        then:
+
+            table.getAlternateCount(table.findOrCreate(100)) == 0
+    }
+
+    def "route snapshots round trip through the table"() {
+
+        given:
+
+            def route = new Route(0xFFFE)
+            route.destinationSequence = 255
+            route.destinationSequenceValid = true
+            route.hopCount = 3
+            route.nextHop = 0xABCD
+            route.lifetime = 123456789L
+            route.addPrecursor(1)
+            route.addPrecursor(2)
+
+        when:
+
+            table.putRoute(route)
+
+        then:
+
+            table.getRoute(0xFFFE) == route
+            table.getRoute(0xFFFD) == null
+    }
+
+    def "compaction releases unused storage and keeps the remaining routes"() {
+
+        given:
+
+            (1..1000).each {
+                def entry = table.findOrCreate(it)
+                table.setHopCount(entry, it % 200)
+                table.addPrecursor(entry, it)
+            }
+            (1..1000).findAll { it % 50 != 0 }.each { table.remove(it) }
+
+        when:
+
+            def compacted = table.compact()
+
+        then:
+
+            compacted
+            !table.compact()
+            table.size() == 20
+            (50..1000).step(50).every {
+                def entry = table.find(it)
+                entry < 80 && table.getHopCount(entry) == it % 200 && table.getPrecursorCount(entry) == 1 && table.getPrecursor(entry, 0) == it
+            }
+
+        when:
+
+            def entry = table.findOrCreate(5000)
+
+        then:
+
+            table.getPrecursorCount(entry) == 0
+            table.getHopCount(entry) == 0
+            table.find(1) == NOT_FOUND
+    }
+}
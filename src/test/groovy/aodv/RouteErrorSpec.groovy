@@ -0,0 +1,85 @@
+package aodv
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.ByteBuffer
+
+class RouteErrorSpec extends Specification {
+
+    @Unroll
+    def "route error serialization works"() {
+
+        given:
+
+            def error1 = new RouteError(destinationAddresses as int[], destinationSequences as int[])
+
+        when:
+
+            def bytes = error1.serialize()
+            def error2 = RouteError.parse(bytes)
+
+        then:
+
+            bytes.length == 3 + 3 * destinationAddresses.size()
+            RouteError.isRouteError(bytes)
+            !RouteReply.isRouteReply(bytes)
+            error1 == error2
+
+        where:
+
+            destinationAddresses        | destinationSequences
+            [1]                         | [1]
+            [65535]                     | [255]
+            [105, 0, 4711]              | [10, 0, 3]
+            (1..61).collect { it * 7 }  | (1..61).collect { it }
+    }
+
+    def "route error is encoded into a shared buffer at its position"() {
+
+        given:
+
+            def error = new RouteError([105, 104] as int[], [10, 2] as int[])
+            def buffer = ByteBuffer.allocate(32).put(7 as byte)
+
+        when:
+
+            def written = error.encodeTo(buffer)
+
+        then:
+
+            written == 9
+            buffer.position() == 10
+            Arrays.copyOfRange(buffer.array(), 1, 10) == error.serialize()
+    }
+
+    def "route error without destinations or with more than fit into a frame is rejected"() {
+
+        when:
+
+            new RouteError(new int[count], new int[count])
+
+        then:
+
+            thrown(RuntimeException)
+
+        where:
+
+            count << [0, 62]
+    }
+
+    def "route error with a destination count not matching its length is rejected"() {
+
+        given:
+
+            def bytes = new RouteError([105, 104] as int[], [10, 2] as int[]).serialize()
+
+        when:
+
+            RouteError.parse(Arrays.copyOf(bytes, 6))
+
+        then:
+
+            thrown(RuntimeException)
+    }
+}
@@ -3,6 +3,8 @@ package aodv
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+
 class RouteReplySpec extends Specification {
 
     @Unroll
@@ -34,4 +36,38 @@ class RouteReplySpec extends Specification {
               262143 |              65535 |                 255 |             65535 |                255
                 4000 |                105 |                  10 |                 5 |                  2
     }
+
+    def "route reply is encoded into a shared buffer at its position"() {
+
+        given:
+
+            def reply = new RouteReply(4000, 105, 10, 5, 2)
+            def buffer = ByteBuffer.allocate(32).put(7 as byte)
+
+        when:
+
+            def written = reply.encodeTo(buffer)
+
+        then:
+
+            written == 9
+            buffer.position() == 10
+            Arrays.copyOfRange(buffer.array(), 1, 10) == reply.serialize()
+    }
+
+    def "route reply carries a metric block only if the metric differs from the hop count"() {
+
+        given:
+
+            def plain = new RouteReply(4000, 105, 10, 5, 2)
+            def weighted = new RouteReply(4000, 105, 10, 5, 2, 7)
+
+        expect:
+
+            plain.metric == 2
+            plain.serialize().length == 9
+            weighted.serialize().length == 12
+            RouteReply.parse(weighted.serialize()) == weighted
+            weighted.incrementHopCount(3) == new RouteReply(4000, 105, 10, 5, 3, 10)
+    }
 }
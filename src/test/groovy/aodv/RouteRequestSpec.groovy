@@ -3,6 +3,8 @@ package aodv
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+
 class RouteRequestSpec extends Specification {
 
     @Unroll
@@ -17,7 +19,8 @@ class RouteRequestSpec extends Specification {
                     destinationSequence,
                     destinationSequenceUnknown,
                     originatorAddress,
-                    originatorSequence
+                    originatorSequence,
+                    timeToLive
             )
 
         when:
@@ -31,10 +34,45 @@ class RouteRequestSpec extends Specification {
 
         where:
 
-            hopCount | requestId | destinationAddress | destinationSequence | destinationSequenceUnknown | originatorAddress | originatorSequence
-                   1 |         1 |                  1 |                   1 |                      false |                 1 |                  1
-                  63 |        63 |              65535 |                 255 |                      false |             65535 |                255
-                   7 |        10 |                105 |                  10 |                      false |                 5 |                  2
-                   7 |        10 |                105 |                  10 |                       true |                 5 |                  2
+            hopCount | requestId | destinationAddress | destinationSequence | destinationSequenceUnknown | originatorAddress | originatorSequence | timeToLive
+                   1 |         1 |                  1 |                   1 |                      false |                 1 |                  1 |          0
+                  63 |        63 |              65535 |                 255 |                      false |             65535 |                255 |         31
+                   7 |        10 |                105 |                  10 |                      false |                 5 |                  2 |          3
+                   7 |        10 |                105 |                  10 |                       true |                 5 |                  2 |          1
+    }
+
+    def "route request is encoded into a shared buffer at its position"() {
+
+        given:
+
+            def req = new RouteRequest(7, 10, 105, 10, true, 5, 2)
+            def buffer = ByteBuffer.allocate(32).put(7 as byte)
+
+        when:
+
+            def written = req.encodeTo(buffer)
+
+        then:
+
+            written == 9
+            buffer.position() == 10
+            Arrays.copyOfRange(buffer.array(), 1, 10) == req.serialize()
+    }
+
+    def "route request carries a metric block only if the metric differs from the hop count"() {
+
+        given:
+
+            def plain = new RouteRequest(3, 10, 105, 10, false, 5, 2, 0)
+            def weighted = new RouteRequest(3, 10, 105, 10, false, 5, 2, 0, 9)
+
+        expect:
+
+            plain.metric == 3
+            plain.serialize().length == 9
+            weighted.serialize().length == 12
+            RouteRequest.parse(weighted.serialize()) == weighted
+            weighted.incrementHopCount(4) == new RouteRequest(4, 10, 105, 10, false, 5, 2, 0, 13)
+            new RouteRequest(3, 10, 105, 10, false, 5, 2, 0, 254).incrementHopCount(4).metric == 255
     }
 }
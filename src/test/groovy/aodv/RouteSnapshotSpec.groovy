@@ -0,0 +1,185 @@
+package aodv
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static aodv.Utils.*
+
+class RouteSnapshotSpec extends Specification {
+
+    @TempDir
+    Path dir
+
+    static Route route(int destination, int sequence, int nextHop, long lifetime, List<Integer> precursors = []) {
+        def route = new Route(destination)
+        route.destinationSequence = sequence
+        route.destinationSequenceValid = sequence > 0
+        route.hopCount = 2
+        route.nextHop = nextHop
+        route.lifetime = lifetime
+        precursors.each { route.addPrecursor(it) }
+        route
+    }
+
+    def "snapshot serialization works"() {
+
+        given:
+
+            def snapshot = new RouteSnapshot(1234, 0xBEEF, 200, 63, [route(0xFFFE, 255, 0x0101, Long.MAX_VALUE, [1, 0xFFFF]), route(5, 0, 5, 0)])
+
+        when:
+
+            def parsed = RouteSnapshot.parse(snapshot.serialize())
+
+        then:
+
+            parsed.savedAt == 1234
+            parsed.address == 0xBEEF
+            parsed.sequenceNumber == 200
+            parsed.requestId == 63
+            parsed.routes == snapshot.routes
+    }
+
+    def "corrupted snapshots are rejected"() {
+
+        given:
+
+            def bytes = new RouteSnapshot(1234, 1, 2, 3, [route(5, 1, 5, 1000)]).serialize()
+            bytes[10] ^= 1
+
+        when:
+
+            RouteSnapshot.parse(bytes)
+
+        then:
+
+            def e = thrown(RuntimeException)
+            e.message == "Failed to parse snapshot: Invalid checksum"
+    }
+
+    def "snapshot file is replaced without leaving a temporary file behind"() {
+
+        given:
+
+            def file = dir.resolve("routes.bin")
+
+        expect:
+
+            RouteSnapshot.readFrom(file) == null
+
+        when:
+
+            new RouteSnapshot(1, 1, 1, 1, [route(5, 1, 5, 1000)]).writeTo(file)
+            new RouteSnapshot(2, 1, 2, 2, []).writeTo(file)
+
+        then:
+
+            RouteSnapshot.readFrom(file).savedAt == 2
+            Files.list(dir).toList() == [file]
+    }
+
+    def "restarted router resumes with its sequence number and the routes that are still alive"() {
+
+        given:
+
+            def callback = Mock(RoutingCallback)
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(101)
+            router.processRouteReply(new RouteReply(4000, 105, 10, 101, 1), 104)
+            router.processRouteReply(new RouteReply(1000, 106, 10, 101, 1), 104)
+            router.processUserData(new UserData(107, [1] as byte[]))
+
+        when:
+
+            def file = dir.resolve("routes.bin")
+            router.snapshot().writeTo(file)
+            scheduler.runFor(2000)
+            def restarted = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            restarted.setAddress(101)
+            def restored = restarted.restore(RouteSnapshot.readFrom(file))
+
+        then:
+
+            restored == 2
+            restarted.routes.getRoute(105).nextHop == 104
+            restarted.routes.getRoute(106) == null
+
+        when:
+
+            restarted.processUserData(new UserData(105, [1] as byte[]))
+            restarted.processUserData(new UserData(108, [1] as byte[]))
+
+        then:
+
+            1 * callback.send({ it instanceof UserData }, 104)
+            1 * callback.send({ it instanceof RouteRequest && it.originatorSequence == 2 + RESTART_MARGIN && it.requestId == 2 + RESTART_MARGIN }, BROADCAST_ADDRESS)
+    }
+
+    def "snapshot is not restored before the address is known or into another node"() {
+
+        given:
+
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(Mock(RoutingCallback), scheduler.clock, scheduler)
+            def snapshot = new RouteSnapshot(0, 101, 7, 3, [])
+
+        expect:
+
+            router.restore(snapshot) == 0
+            router.@sequenceNumber == 0
+
+        when:
+
+            router.setAddress(102)
+
+        then:
+
+            router.restore(snapshot) == 0
+            router.@sequenceNumber == 0
+
+        when:
+
+            router.setAddress(101)
+            router.restore(snapshot)
+
+        then:
+
+            router.@sequenceNumber == 7 + RESTART_MARGIN
+            router.@requestId == 3 + RESTART_MARGIN
+    }
+
+    def "numbers used between the last snapshot and a restart are not reused"() {
+
+        given:
+
+            def requests = []
+            def callback = Mock(RoutingCallback) {
+                send({ it instanceof RouteRequest }, BROADCAST_ADDRESS) >> { requests << it[0] }
+            }
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            router.setAddress(101)
+            router.processUserData(new UserData(105, [1] as byte[]))
+            def snapshot = router.snapshot()
+            (106..110).each { router.processUserData(new UserData(it, [1] as byte[])) }
+
+        when:
+
+            def restarted = new AodvRouterImpl(callback, scheduler.clock, scheduler)
+            restarted.setAddress(101)
+            restarted.restore(snapshot)
+            restarted.processUserData(new UserData(111, [1] as byte[]))
+
+        then:
+
+            requests.size() == 7
+            requests[0..5].every { isFresher(requests[6].originatorSequence, it.originatorSequence) }
+            !(requests[6].requestId in requests[0..5]*.requestId)
+    }
+}
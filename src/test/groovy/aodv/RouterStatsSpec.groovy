@@ -0,0 +1,138 @@
+package aodv
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import javax.management.ObjectName
+import java.lang.management.ManagementFactory
+
+import static aodv.Utils.*
+
+class RouterStatsSpec extends Specification {
+
+    static int HOP_3 = 103
+    static int HOP_4 = 104
+    static int HOP_5 = 105
+
+    @Unroll
+    def "histogram bucket of #value holds values up to #highest"() {
+
+        expect:
+
+            LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value)) == highest
+            LatencyHistogram.bucketOf(highest) == LatencyHistogram.bucketOf(value)
+
+        where:
+
+            value           | highest
+            0               | 0
+            31              | 31
+            32              | 33
+            100             | 103
+            1000            | 1023
+            Long.MAX_VALUE  | Long.MAX_VALUE
+    }
+
+    def "histogram percentiles are within a sixteenth of the recorded values"() {
+
+        given:
+
+            def histogram = new LatencyHistogram()
+
+        when:
+
+            (1..1000).each { histogram.record(it) }
+
+        then:
+
+            histogram.count == 1000
+            histogram.mean == 500.5d
+            histogram.max == 1000
+            histogram.getPercentile(50) >= 500 && histogram.getPercentile(50) <= 500 * 17 / 16
+            histogram.getPercentile(99) >= 990 && histogram.getPercentile(99) <= 1000
+            histogram.getPercentile(100) == 1000
+    }
+
+    def "discovery is counted and its latency recorded once the reply arrives"() {
+
+        given:
+
+            def callback = Mock(RoutingCallback)
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+            router.setAddress(HOP_3)
+
+        when:
+
+            router.processUserData(new UserData(HOP_5, "test".getBytes()))
+            router.processUserData(new UserData(HOP_5, "more".getBytes()))
+            scheduler.runFor(120)
+            router.processRouteReply(new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 1, HOP_3, 1), HOP_4)
+
+        then:
+
+            def stats = router.stats
+            stats.routeRequestsSent == 1
+            stats.routeRepliesReceived == 1
+            stats.discoveriesStarted == 1
+            stats.discoveriesSucceeded == 1
+            stats.@discoveryLatency.count == 1
+            stats.@discoveryLatency.max == 120
+            stats.@forwardingDelay.max == 120
+            stats.userDataSent == 2
+            stats.userDataForwarded == 0
+            stats.bufferedPackets == 0
+            stats.pendingDiscoveries == 0
+            stats.routes == 2
+    }
+
+    def "failed discovery drops the buffered data"() {
+
+        given:
+
+            def callback = Mock(RoutingCallback)
+            def scheduler = new VirtualScheduler(new VirtualClock(0))
+            def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+            router.setAddress(HOP_3)
+
+        when:
+
+            router.processUserData(new UserData(HOP_5, "test".getBytes()))
+            scheduler.runFor(60 * 60 * 1000)
+
+        then:
+
+            router.stats.discoveriesFailed == 1
+            router.stats.userDataDropped == 1
+            router.stats.bufferedPackets == 0
+            router.stats.routeRequestsSent > 1
+    }
+
+    def "stats are readable through the platform MBean server"() {
+
+        given:
+
+            def stats = new RouterStats()
+            stats.@routeRequestsSent.add(3)
+            stats.@discoveryLatency.record(250)
+            stats.routes = 7
+
+        when:
+
+            def name = stats.register("spec")
+            def server = ManagementFactory.platformMBeanServer
+
+        then:
+
+            name == new ObjectName('aodv:type=RouterStats,name="spec"')
+            server.getAttribute(name, "RouteRequestsSent") == 3L
+            server.getAttribute(name, "Routes") == 7
+            server.getAttribute(name, "DiscoveryLatency").get("max") == 250L
+
+        cleanup:
+
+            stats.unregister()
+    }
+}
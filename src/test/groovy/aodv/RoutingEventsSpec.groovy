@@ -0,0 +1,118 @@
+package aodv
+
+import jdk.jfr.Recording
+import jdk.jfr.consumer.RecordingFile
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+import static aodv.Utils.*
+
+class RoutingEventsSpec extends Specification {
+
+    static int HOP_1 = 101
+    static int HOP_2 = 102
+    static int HOP_3 = 103
+    static int HOP_4 = 104
+    static int HOP_5 = 105
+
+    @TempDir
+    Path dir
+
+    def callback = Mock(RoutingCallback)
+
+    def scheduler = new VirtualScheduler(new VirtualClock(0))
+
+    def router = new AodvRouterImpl(callback, scheduler.clock, scheduler, new Random(1))
+
+    def setup() {
+        router.setAddress(HOP_3)
+        router.setBroadcastJitter(0, RREQ_COPY_THRESHOLD)
+    }
+
+    def "route discovery is traced from the first RREQ to the data being sent"() {
+
+        when:
+
+            def events = record {
+                router.processUserData(new UserData(HOP_5, "test".getBytes()))
+                scheduler.runFor(100)
+                router.processRouteReply(new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 7, HOP_3, 1), HOP_4)
+            }
+
+        then:
+
+            def request = events.find { it.eventType.name == "aodv.RouteRequest" }
+            request.getString("action") == RoutingEvents.ORIGINATED
+            request.getInt("originator") == HOP_3
+            request.getInt("destination") == HOP_5
+            request.getInt("destinationSequence") == -1
+            request.getInt("timeToLive") == TTL_START
+
+            events.findAll { it.eventType.name == "aodv.UserData" }.collect { it.getString("action") } == [RoutingEvents.BUFFERED, RoutingEvents.SENT]
+            events.find { it.eventType.name == "aodv.UserData" && it.getString("action") == RoutingEvents.SENT }.getInt("nextHop") == HOP_4
+
+            def route = events.find { it.eventType.name == "aodv.Route" && it.getInt("destination") == HOP_5 }
+            route.getString("action") == RoutingEvents.CREATED
+            route.getInt("destinationSequence") == 7
+            route.getInt("hopCount") == 2
+            route.getInt("nextHop") == HOP_4
+
+            def discovery = events.find { it.eventType.name == "aodv.RouteDiscovery" }
+            discovery.getString("outcome") == RoutingEvents.SUCCEEDED
+            discovery.getInt("requests") == 1
+            discovery.getInt("bufferedPackets") == 1
+    }
+
+    def "forwarded and duplicate route requests are traced with the previous hop"() {
+
+        given:
+
+            def request = new RouteRequest(1, 1, HOP_5, 10, false, HOP_1, 2)
+
+        when:
+
+            def events = record {
+                router.processRouteRequest(request, HOP_2)
+                router.processRouteRequest(request, HOP_4)
+            }
+
+        then:
+
+            def requests = events.findAll { it.eventType.name == "aodv.RouteRequest" }
+            requests.collect { it.getString("action") } == [RoutingEvents.FORWARDED, RoutingEvents.DUPLICATE]
+            requests.collect { it.getInt("previousHop") } == [HOP_2, HOP_4]
+            requests.collect { it.getInt("hopCount") } == [2, 1]
+            requests.every { it.getInt("originatorSequence") == 2 && it.getInt("destinationSequence") == 10 }
+    }
+
+    def "no events are recorded while a recording disables them"() {
+
+        when:
+
+            def events = record(false) {
+                router.processUserData(new UserData(HOP_5, "test".getBytes()))
+            }
+
+        then:
+
+            events.isEmpty()
+    }
+
+    def record(boolean enabled = true, Closure action) {
+        def file = dir.resolve("routing.jfr")
+        def recording = new Recording()
+        ["aodv.RouteRequest", "aodv.RouteReply", "aodv.Route", "aodv.UserData", "aodv.RouteDiscovery"].each {
+            enabled ? recording.enable(it).withoutThreshold() : recording.disable(it)
+        }
+        recording.start()
+        action()
+        recording.stop()
+        recording.dump(file)
+        recording.close()
+        RecordingFile.readAllEvents(file).findAll { it.eventType.name.startsWith("aodv.") }
+    }
+}
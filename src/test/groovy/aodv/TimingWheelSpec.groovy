@@ -0,0 +1,104 @@
+package aodv
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+
+class TimingWheelSpec extends Specification {
+
+    def scheduler = new VirtualScheduler(new VirtualClock(0))
+
+    def expired = []
+
+    def wheel = new TimingWheel(scheduler, scheduler.clock, 100, 8, { expired << [it, scheduler.clock.millis()] })
+
+    def "handles expire on the first tick after their deadline"() {
+
+        when:
+
+            wheel.schedule(1, 250)
+            wheel.schedule(2, 100)
+            wheel.schedule(3, 5000)                                                     // Beyond one revolution of the wheel
+            scheduler.runUntil(10000)
+
+        then:
+
+            expired == [[2, 100], [1, 300], [3, 5000]]
+            wheel.size() == 0
+    }
+
+    def "scheduling a later deadline is deferred to the expiry handler while an earlier one is moved"() {
+
+        when:
+
+            wheel.schedule(1, 200)
+            wheel.schedule(1, 900)
+            wheel.schedule(2, 900)
+            wheel.schedule(2, 400)
+            scheduler.runUntil(1000)
+
+        then:
+
+            expired == [[1, 200], [2, 400]]
+    }
+
+    def "cancelled handles do not expire"() {
+
+        when:
+
+            wheel.schedule(1, 200)
+            wheel.schedule(2, 200)
+            wheel.cancel(1)
+            scheduler.runUntil(1000)
+
+        then:
+
+            expired == [[2, 200]]
+            !wheel.isScheduled(1)
+    }
+
+    def "the wheel only ticks while handles are scheduled"() {
+
+        when:
+
+            wheel.schedule(1, 300)
+            scheduler.runUntil(10000)
+
+        then:
+
+            scheduler.executedEvents == 3
+            scheduler.pendingEvents == 0
+
+        when:
+
+            wheel.schedule(1, 10500)
+            scheduler.runUntil(20000)
+
+        then:
+
+            expired.last() == [1, 10500]
+            scheduler.pendingEvents == 0
+    }
+
+    def "handles may be rescheduled from the expiry handler"() {
+
+        given:
+
+            TimingWheel renewing
+            renewing = new TimingWheel(scheduler, scheduler.clock, 100, 8, { handle ->
+                expired << scheduler.clock.millis()
+                if (expired.size() < 3) {
+                    renewing.schedule(handle, scheduler.clock.millis() + 1000)
+                }
+            })
+
+        when:
+
+            renewing.schedule(7, 100)
+            scheduler.runUntil(10000)
+
+        then:
+
+            expired == [100, 1100, 2100]
+    }
+}
@@ -3,6 +3,8 @@ package aodv
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.ByteBuffer
+
 class UserDataSpec extends Specification {
 
     @Unroll
@@ -30,5 +32,25 @@ class UserDataSpec extends Specification {
                            105 | "".getBytes()
                            105 | new byte[0]
                            105 | null
+                           105 | [0xFF, 0x80, 0x01] as byte[]
+    }
+
+    def "user data is encoded into a shared buffer at its position"() {
+
+        given:
+
+            def ud = new UserData(105, [0xC3, 0x7F, 0x00, 0xFF] as byte[])
+            def buffer = ByteBuffer.allocate(32).put(7 as byte)
+
+        when:
+
+            def written = ud.encodeTo(buffer)
+
+        then:
+
+            written == ud.encodedLength
+            buffer.position() == 1 + written
+            Arrays.copyOfRange(buffer.array(), 1, 1 + written) == ud.serialize()
+            UserData.parse(Arrays.copyOfRange(buffer.array(), 1, 1 + written)) == ud
     }
 }
@@ -0,0 +1,332 @@
+package lora
+
+import spock.lang.Specification
+
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+import static lora.AtCommandChannel.command
+import static lora.AtCommandChannel.data
+
+class AtCommandChannelSpec extends Specification {
+
+    def out = new ByteArrayOutputStream()
+
+    def timer = Executors.newSingleThreadScheduledExecutor()
+
+    def channel = new AtCommandChannel(out, timer, 500)
+
+    def cleanup() {
+        timer.shutdownNow()
+    }
+
+    def written() {
+        def text = out.toString("US-ASCII")
+        out.reset()
+        return text
+    }
+
+    def "commands are written one at a time and responses are matched in order"() {
+
+        when:
+
+            def addr = channel.send("AT+ADDR?")
+            def rssi = channel.send("AT+RSSI?")
+
+        then:
+
+            written() == "AT+ADDR?\r\n"
+            channel.queuedCommands == 2
+
+        when:
+
+            channel.onResponse("AT,0065,OK")
+
+        then:
+
+            addr.getNow(null) == "AT,0065,OK"
+            !rssi.done
+            written() == "AT+RSSI?\r\n"
+
+        when:
+
+            channel.onResponse("AT,-063,OK")
+
+        then:
+
+            rssi.getNow(null) == "AT,-063,OK"
+            channel.queuedCommands == 0
+    }
+
+    def "a frame is sent as one exchange that waits for the transmission to finish"() {
+
+        given:
+
+            def other = channel.send("AT+RSSI?")
+            channel.onResponse("AT,-063,OK")
+            written()
+
+        when:
+
+            def frame = channel.sendAll(command("AT+DEST=0065"), command("AT+SEND=4"), data("QUJD".bytes))
+            def next = channel.send("AT+ADDR?")
+
+        then:
+
+            other.done
+            written() == "AT+DEST=0065\r\n"
+
+        when:
+
+            channel.onResponse("AT,OK")
+            channel.onResponse("AT,OK")
+
+        then:
+
+            written() == "AT+SEND=4\r\nQUJD"
+
+        when:
+
+            channel.onResponse(AtCommandChannel.SENDING)
+
+        then:
+
+            !frame.done
+            written() == ""
+
+        when:
+
+            channel.onResponse(AtCommandChannel.SENDED)
+
+        then:
+
+            frame.getNow(null) == AtCommandChannel.SENDED
+            written() == "AT+ADDR?\r\n"
+            !next.done
+    }
+
+    def "an exchange stops at the first failing command"() {
+
+        when:
+
+            def frame = channel.sendAll(command("AT+DEST=0065"), command("AT+SEND=999"), data("QUJD".bytes))
+            channel.onResponse("AT,OK")
+            channel.onResponse("ERR:PARA")
+
+        then:
+
+            frame.getNow(null) == "ERR:PARA"
+            written() == "AT+DEST=0065\r\nAT+SEND=999\r\n"
+            channel.queuedCommands == 0
+    }
+
+    def "a command without response times out and the channel resyncs before the next command is written"() {
+
+        when:
+
+            def lost = channel.send("AT+DEST=0065")
+            def next = channel.send("AT")
+            lost.get(5, TimeUnit.SECONDS)
+
+        then:
+
+            def e = thrown(ExecutionException)
+            e.cause instanceof TimeoutException
+            !next.done
+            written() == "AT+DEST=0065\r\nAT+ADDR?\r\n"
+
+        when:
+
+            channel.onResponse("AT,OK")
+
+        then:
+
+            !next.done
+            written() == ""
+
+        when:
+
+            channel.onResponse("AT,0065,OK")
+
+        then:
+
+            !next.done
+            written() == "AT\r\n"
+
+        when:
+
+            channel.onResponse("AT,OK")
+
+        then:
+
+            next.getNow(null) == "AT,OK"
+    }
+
+    def "the late response to a lost query is not taken for the next one"() {
+
+        when:
+
+            def lost = channel.send("AT+RSSI?")
+            def next = channel.send("AT+ADDR?")
+            lost.handle { r, e -> e }.get(5, TimeUnit.SECONDS)
+
+        then:
+
+            written() == "AT+RSSI?\r\nAT\r\n"
+
+        when:
+
+            channel.onResponse("AT,-063,OK")
+            channel.onResponse("AT,OK")
+            channel.onResponse("AT,0065,OK")
+
+        then:
+
+            next.getNow(null) == "AT,0065,OK"
+            written() == "AT+ADDR?\r\n"
+    }
+
+    def "queued commands fail once the modem doesn't answer the probe either"() {
+
+        when:
+
+            def lost = channel.send("AT+DEST=0065")
+            def next = channel.send("AT")
+            next.handle { r, e -> e }.get(5, TimeUnit.SECONDS)
+
+        then:
+
+            lost.completedExceptionally
+            next.completedExceptionally
+            written() == "AT+DEST=0065\r\nAT+ADDR?\r\nAT\r\n"
+    }
+
+    def "lines arriving while no command is waiting or that are no response are unsolicited"() {
+
+        expect:
+
+            !channel.onResponse("AT,WAKEUP")
+
+        when:
+
+            def addr = channel.send("AT+ADDR?")
+
+        then:
+
+            !channel.onResponse("AT,WAKEUP")
+            !addr.done
+            channel.onResponse("AT,0065,OK")
+            addr.getNow(null) == "AT,0065,OK"
+    }
+
+    def "setting a register to the value the modem already has is skipped"() {
+
+        when:
+
+            channel.sendAll(command("AT+DEST=0065"), command("AT+SEND=4"), data("abcd".bytes))
+            channel.onResponse("AT,OK")
+            channel.onResponse("AT,OK")
+            channel.onResponse("AT,SENDED")
+            written()
+            def frame = channel.sendAll(command("AT+DEST=0065"), command("AT+SEND=4"), data("efgh".bytes))
+
+        then:
+
+            written() == "AT+SEND=4\r\n"
+            channel.skippedCommands == 1
+
+        when:
+
+            channel.onResponse("AT,OK")
+            channel.onResponse("AT,SENDED")
+
+        then:
+
+            frame.getNow(null) == "AT,SENDED"
+            written() == "efgh"
+            channel.registers.destination == "0065"
+    }
+
+    def "a skipped command completes without being written"() {
+
+        when:
+
+            channel.send("AT+CFG=433000000,20,6,10,1,1,0,0,0,0,3000,8,4")
+            channel.onResponse("AT,OK")
+            written()
+            def cfg = channel.send("at+cfg=433000000,20,6,10,1,1,0,0,0,0,3000,8,4")
+
+        then:
+
+            cfg.getNow(null) == "AT,OK"
+            written() == ""
+            channel.queuedCommands == 0
+    }
+
+    def "the registers are decided when the command is written, not when it is queued"() {
+
+        when:
+
+            channel.send("AT+DEST=0065")
+            def second = channel.send("AT+DEST=0065")
+            channel.onResponse("AT,OK")
+
+        then:
+
+            second.getNow(null) == "AT,OK"
+            written() == "AT+DEST=0065\r\n"
+    }
+
+    def "queried registers are mirrored as well"() {
+
+        when:
+
+            channel.send("AT+ADDR?")
+            channel.onResponse("AT,0065,OK")
+
+        then:
+
+            channel.registers.address == "0065"
+            channel.registers.isCurrent("AT+ADDR=0065")
+    }
+
+    def "errors and resets invalidate the registers"() {
+
+        when:
+
+            channel.send("AT+DEST=0065")
+            channel.onResponse("AT,OK")
+            channel.send("AT+RX")
+            channel.onResponse("AT,OK")
+
+        then:
+
+            channel.registers.destination == "0065"
+            channel.registers.receiving
+
+        when:
+
+            channel.send("AT+CFG=1")
+            channel.onResponse("ERR:PARA")
+
+        then:
+
+            channel.registers.destination == null
+            channel.registers.receiving == null
+
+        when:
+
+            channel.send("AT+DEST=0065")
+            channel.onResponse("AT,OK")
+            channel.send("AT+RST")
+            channel.onResponse("AT,OK")
+            written()
+            channel.send("AT+DEST=0065")
+
+        then:
+
+            written() == "AT+DEST=0065\r\n"
+    }
+}
@@ -0,0 +1,54 @@
+package lora
+
+import spock.lang.Specification
+
+class Base64DecoderSpec extends Specification {
+
+    def "slices decode like java.util.Base64"() {
+
+        given:
+
+            def encoded = ("LR,0065,00," + Base64.encoder.encodeToString(data as byte[])).getBytes("US-ASCII")
+            def target = new byte[64]
+
+        when:
+
+            def count = Base64Decoder.decode(encoded, 11, encoded.length - 11, target)
+
+        then:
+
+            count == data.size()
+            Arrays.copyOf(target, count) == data as byte[]
+
+        where:
+
+            data << [[1], [1, 2], [1, 2, 3], [-1, 0, 127, -128, 64], (0..47).collect { it * 5 }]
+    }
+
+    def "unpadded input is accepted"() {
+
+        given:
+
+            def target = new byte[8]
+
+        expect:
+
+            Base64Decoder.decode("aGk".getBytes("US-ASCII"), 0, 3, target) == 2
+            new String(target, 0, 2, "US-ASCII") == "hi"
+    }
+
+    def "invalid input is rejected"() {
+
+        when:
+
+            Base64Decoder.decode(input.getBytes("US-ASCII"), 0, input.length(), new byte[64])
+
+        then:
+
+            thrown(RuntimeException)
+
+        where:
+
+            input << ["aGVs*G8=", "a", "aGVsbG8===", "AGVSBG8=".padRight(200, "A")]
+    }
+}
@@ -0,0 +1,224 @@
+package lora
+
+import aodv.RouteReply
+import aodv.RouteRequest
+import aodv.UserData
+import spock.lang.Specification
+import spock.lang.TempDir
+import spock.lang.Timeout
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.CountDownLatch
+
+import static aodv.Utils.*
+
+class FrameCaptureLogSpec extends Specification {
+
+    static int HOP_1 = 0x0101
+    static int HOP_2 = 0x0102
+    static int HOP_3 = 0x0103
+    static int HOP_5 = 0x0105
+
+    @TempDir
+    Path dir
+
+    def "captured frames are read back in order"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            def log = new FrameCaptureLog(file)
+
+        when:
+
+            log.capture(1000, FrameCaptureLog.INBOUND, HOP_1, -63, [9, 1, 2, 3, 4] as byte[], 1, 3)
+            log.capture(1005, FrameCaptureLog.OUTBOUND, BROADCAST_ADDRESS, FrameCaptureLog.UNKNOWN_RSSI, [5] as byte[], 0, 1)
+            log.close()
+
+        then:
+
+            def frames = readAll(file)
+            frames*.timestamp == [1000L, 1005L]
+            frames*.direction == [FrameCaptureLog.INBOUND, FrameCaptureLog.OUTBOUND]
+            frames*.hop == [HOP_1, BROADCAST_ADDRESS]
+            frames*.rssi == [-63, FrameCaptureLog.UNKNOWN_RSSI]
+            frames*.payload == [[1, 2, 3] as byte[], [5] as byte[]]
+            log.droppedFrames == 0
+    }
+
+    def "torn last record is cut off before appending"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            def log = new FrameCaptureLog(file)
+            log.capture(1000, FrameCaptureLog.INBOUND, HOP_1, -63, [1, 2, 3] as byte[], 0, 3)
+            log.close()
+            Files.write(file, [0, 0, 0] as byte[], StandardOpenOption.APPEND)
+
+        when:
+
+            log = new FrameCaptureLog(file)
+            log.capture(2000, FrameCaptureLog.INBOUND, HOP_2, -70, [4] as byte[], 0, 1)
+            log.close()
+
+        then:
+
+            readAll(file)*.timestamp == [1000L, 2000L]
+    }
+
+    @Timeout(10)
+    def "close doesn't wait for a writer that failed with frames queued"() {
+
+        given:
+
+            def writing = new CountDownLatch(1)
+            def failing = new CountDownLatch(1)
+            def stream = new OutputStream() {
+
+                @Override
+                void write(int b) throws IOException {
+                    writing.countDown()
+                    failing.await()
+                    throw new IOException("Disk full")
+                }
+
+                @Override
+                void write(byte[] b, int off, int len) throws IOException {
+                    write(0)
+                }
+            }
+            def log = new FrameCaptureLog(stream)
+            log.capture(1000, FrameCaptureLog.INBOUND, HOP_1, -63, [1] as byte[], 0, 1)
+            writing.await()
+            (1..FrameCaptureLog.QUEUE_CAPACITY).each { log.capture(1000 + it, FrameCaptureLog.INBOUND, HOP_1, -63, [1] as byte[], 0, 1) }
+
+        when:
+
+            failing.countDown()
+            log.close()
+
+        then:
+
+            def e = thrown(IOException)
+            e.message == "Disk full"
+
+        when:
+
+            log.capture(9000, FrameCaptureLog.INBOUND, HOP_1, -63, [1] as byte[], 0, 1)
+
+        then:
+
+            log.droppedFrames == 1
+    }
+
+    def "capture of another format is rejected"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            Files.write(file, "not a capture".bytes)
+
+        when:
+
+            new FrameCaptureLog(file)
+
+        then:
+
+            def e = thrown(RuntimeException)
+            e.message == "Failed to read capture: Invalid magic"
+    }
+
+    def "replay feeds the received frames through a router on virtual time"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            def log = new FrameCaptureLog(file)
+            def request = new RouteRequest(0, 1, HOP_3, 0, true, HOP_1, 1).serialize()
+            def data = new UserData(HOP_5, "test".bytes).serialize()
+            def reply = new RouteReply(MY_ROUTE_TIMEOUT, HOP_5, 1, HOP_3, 0).serialize()
+            log.capture(1000, FrameCaptureLog.INBOUND, HOP_1, FrameCaptureLog.UNKNOWN_RSSI, request, 0, request.length)
+            log.capture(1010, FrameCaptureLog.OUTBOUND, HOP_1, FrameCaptureLog.UNKNOWN_RSSI, reply, 0, reply.length)
+            log.capture(2000, FrameCaptureLog.INBOUND, HOP_1, FrameCaptureLog.UNKNOWN_RSSI, data, 0, data.length)
+            log.capture(2500, FrameCaptureLog.INBOUND, HOP_2, FrameCaptureLog.UNKNOWN_RSSI, reply, 0, reply.length)
+            log.capture(2600, FrameCaptureLog.INBOUND, HOP_2, FrameCaptureLog.UNKNOWN_RSSI, [0xFF] as byte[], 0, 1)
+            log.close()
+
+        when:
+
+            def replay = new CaptureReplay(HOP_3, 1000)
+            FrameCaptureLog.read(file) { replay.replay(it) }
+
+        then:
+
+            replay.replayedFrames == 4
+            replay.capturedSends == 1
+            replay.malformedFrames == 1
+            replay.stats.routeRepliesSent == 1
+            replay.stats.discoveriesSucceeded == 1
+            replay.stats.@discoveryLatency.max == 500
+            replay.stats.userDataSent == 1
+            replay.sentFrames == replay.stats.routeRepliesSent + replay.stats.routeRequestsSent + replay.stats.userDataSent
+    }
+
+    def "replay feeds the captured RSSI samples and the originated frames through the router"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            def log = new FrameCaptureLog(file)
+            def data = new UserData(HOP_5, "test".bytes).serialize()
+            log.capture(1000, FrameCaptureLog.LINK_QUALITY, HOP_1, -63, new byte[0], 0, 0)
+            log.capture(1500, FrameCaptureLog.ORIGINATED, HOP_3, FrameCaptureLog.UNKNOWN_RSSI, data, 0, data.length)
+            log.close()
+
+        when:
+
+            def replay = new CaptureReplay(HOP_3, 1000)
+            FrameCaptureLog.read(file) { replay.replay(it) }
+
+        then:
+
+            replay.@router.linkQuality.getRssi(HOP_1) == -63
+            replay.replayedFrames == 1
+            replay.stats.routeRequestsSent == 1
+            replay.stats.discoveriesStarted == 1
+    }
+
+    def "capture of the previous version is upgraded when appended to"() {
+
+        given:
+
+            def file = dir.resolve("node.cap")
+            def stream = new DataOutputStream(Files.newOutputStream(file))
+            stream.writeInt(FrameCaptureLog.MAGIC)
+            stream.writeByte(1)
+            stream.writeLong(1000)
+            stream.writeByte(FrameCaptureLog.INBOUND)
+            stream.writeShort(HOP_1)
+            stream.writeShort(FrameCaptureLog.UNKNOWN_RSSI)
+            stream.writeByte(1)
+            stream.writeByte(4)
+            stream.close()
+
+        when:
+
+            def log = new FrameCaptureLog(file)
+            log.capture(2000, FrameCaptureLog.LINK_QUALITY, HOP_1, -63, new byte[0], 0, 0)
+            log.close()
+
+        then:
+
+            Files.readAllBytes(file)[4] == FrameCaptureLog.VERSION
+            readAll(file)*.direction == [FrameCaptureLog.INBOUND, FrameCaptureLog.LINK_QUALITY]
+    }
+
+    def readAll(Path file) {
+        def frames = []
+        FrameCaptureLog.read(file) { frames << it }
+        frames
+    }
+}
@@ -0,0 +1,140 @@
+package lora
+
+import spock.lang.Specification
+
+class LineFramerSpec extends Specification {
+
+    def lines = []
+
+    def framer = new LineFramer(24, { byte[] buffer, int offset, int length -> lines << new String(buffer, offset, length, "US-ASCII") } as LineFramer.LineHandler)
+
+    def accept(String text) {
+        def bytes = text.getBytes("US-ASCII")
+        framer.accept(bytes, 0, bytes.length)
+    }
+
+    def "lines are split at CR and LF and trimmed"() {
+
+        when:
+
+            accept("AT,OK\r\n AT,SENDING \r\nAT,SENDED\n")
+
+        then:
+
+            lines == ["AT,OK", "AT,SENDING", "AT,SENDED"]
+    }
+
+    def "partial lines are completed by later chunks"() {
+
+        when:
+
+            accept("LR,0065,")
+            accept("04,aGVq")
+
+        then:
+
+            lines == []
+
+        when:
+
+            accept("\r\nAT")
+
+        then:
+
+            lines == ["LR,0065,04,aGVq"]
+
+        when:
+
+            accept(",OK\r\n")
+
+        then:
+
+            lines == ["LR,0065,04,aGVq", "AT,OK"]
+    }
+
+    def "case is preserved"() {
+
+        when:
+
+            accept("LR,0065,08,aGVsbG8=\r\n")
+
+        then:
+
+            lines == ["LR,0065,08,aGVsbG8="]
+    }
+
+    def "lines longer than the buffer are dropped"() {
+
+        when:
+
+            accept("0123456789abcdefghijklmnopqrstuvwxyz\r\nAT,OK\r\n")
+
+        then:
+
+            lines == ["AT,OK"]
+            framer.droppedLines == 1
+    }
+
+    def "the framer is filled straight from a source"() {
+
+        given:
+
+            def input = new ByteArrayInputStream("AT,-063,OK\r\nERR:PARA\r\n".getBytes("US-ASCII"))
+
+        when:
+
+            while (framer.fill({ byte[] buffer, int offset, int length -> input.read(buffer, offset, length) } as LineFramer.Source) > 0) {
+            }
+
+        then:
+
+            lines == ["AT,-063,OK", "ERR:PARA"]
+    }
+
+    def "raw bytes are classified and parsed without decoding"() {
+
+        given:
+
+            def bytes = "LR,00A5,04,QUJD".getBytes("US-ASCII")
+
+        expect:
+
+            LineFramer.startsWith(bytes, 0, bytes.length, "LR,".getBytes("US-ASCII"))
+            !LineFramer.startsWith(bytes, 0, bytes.length, "AT,".getBytes("US-ASCII"))
+            LineFramer.indexOf(bytes, 3, bytes.length, (byte) ',') == 7
+            LineFramer.parseHex(bytes, 3, 7) == 0xA5
+            LineFramer.parseHex(bytes, 0, 2) == -1
+    }
+
+    def "binary frames are handed out by length even if they contain line breaks"() {
+
+        given:
+
+            def binary = new LineFramer(24, { byte[] buffer, int offset, int available ->
+                if (available < 1) {
+                    return LineFramer.UNDECIDED
+                }
+                if (buffer[offset] != (byte) '#') {
+                    return LineFramer.TEXT
+                }
+                return available < 2 ? LineFramer.UNDECIDED : 2 + buffer[offset + 1]
+            } as LineFramer.FrameLength, { byte[] buffer, int offset, int length -> lines << Arrays.copyOfRange(buffer, offset, offset + length) } as LineFramer.LineHandler)
+
+        when:
+
+            binary.accept([35] as byte[], 0, 1)
+            binary.accept([4, 13, 10, 32] as byte[], 0, 4)
+
+        then:
+
+            lines == []
+
+        when:
+
+            binary.accept([0, 13, 10, 65, 84, 13, 10] as byte[], 0, 7)
+
+        then:
+
+            lines == [[35, 4, 13, 10, 32, 0] as byte[], "AT".bytes]
+    }
+}
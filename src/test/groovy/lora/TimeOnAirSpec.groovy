@@ -0,0 +1,65 @@
+package lora
+
+import spock.lang.Specification
+
+class TimeOnAirSpec extends Specification {
+
+    def "time on air follows the datasheet formula"() {
+
+        expect:
+
+            new TimeOnAir(spreadingFactor, 125_000, 1, 8, true, true).getMicros(payloadLength) == micros
+
+        where:
+
+            spreadingFactor | payloadLength || micros
+            7               | 10            || 41_216
+            7               | 250           || 389_376
+            12              | 10            || 991_232                                                                             // Low data rate optimization
+            10              | 0             || 206_848
+    }
+
+    def "modulation parameters are taken from the modem config"() {
+
+        expect:
+
+            TimeOnAir.fromConfig(config).getMicros(10) == micros
+
+        where:
+
+            config                                          || micros
+            "433000000,20,7,7,1,1,0,0,0,0,3000,8,8"         || 41_216                                                              // Same as the SF7 case above
+            "433000000,20,6,10,1,1,0,0,0,0,3000,8,4"        || 512_000
+            "433000000,20,6,10,1,1,1,0,0,0,3000,8,4"        || 430_080                                                             // Implicit header
+    }
+
+    def "invalid modem configs are rejected"() {
+
+        when:
+
+            TimeOnAir.fromConfig(config)
+
+        then:
+
+            def e = thrown(RuntimeException)
+            e.message == message
+
+        where:
+
+            config                                          || message
+            "1"                                             || "Invalid config (1)"
+            "433000000,20,10,10,1,1,0,0,0,0,3000,8,4"       || "Invalid bandwidth (10)"
+            "433000000,20,x,10,1,1,0,0,0,0,3000,8,4"        || "Invalid config (433000000,20,x,10,1,1,0,0,0,0,3000,8,4)"
+    }
+
+    def "invalid modulation parameters are rejected"() {
+
+        when:
+
+            new TimeOnAir(13, 125_000, 1, 8, true, true)
+
+        then:
+
+            thrown(RuntimeException)
+    }
+}
@@ -0,0 +1,147 @@
+package lora
+
+import sim.VirtualClock
+import sim.VirtualScheduler
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+
+import static lora.TransmitScheduler.Priority.CONTROL
+import static lora.TransmitScheduler.Priority.DATA
+
+class TransmitSchedulerSpec extends Specification {
+
+    def scheduler = new VirtualScheduler(new VirtualClock(0))
+
+    def timeOnAir = new TimeOnAir(7, 125_000, 1, 8, true, true)
+
+    def transmitted = []
+
+    def pending = []
+
+    def transmitter = { byte[] payload, int destination ->
+        transmitted << payload.length
+        def future = new CompletableFuture()
+        pending << future
+        return future
+    } as TransmitScheduler.Transmitter
+
+    def transmitScheduler = new TransmitScheduler(timeOnAir, 0.01, 100_000, 4, scheduler, scheduler.clock, transmitter)
+
+    def limited = new TransmitScheduler(timeOnAir, 0.01, 10_000, 4, scheduler, scheduler.clock, transmitter)
+
+    def completeNext() {
+        pending.remove(0).complete("AT,SENDED")
+    }
+
+    def "one frame is on air at a time and control frames overtake waiting data"() {
+
+        when:
+
+            transmitScheduler.submit(new byte[10], 1, DATA)
+            transmitScheduler.submit(new byte[11], 1, DATA)
+            transmitScheduler.submit(new byte[12], 1, CONTROL)
+
+        then:
+
+            transmitted == [10]
+            transmitScheduler.getQueuedFrames(DATA) == 1
+            transmitScheduler.getQueuedFrames(CONTROL) == 1
+
+        when:
+
+            completeNext()
+            completeNext()
+
+        then:
+
+            transmitted == [10, 12, 11]
+    }
+
+    def "frames wait until the duty cycle budget covers their time on air"() {
+
+        given:
+
+            def micros = timeOnAir.getMicros(10)
+
+        when:
+
+            2.times { limited.submit(new byte[10], 1, DATA); completeNext() }
+
+        then:
+
+            transmitted == [10, 10]
+            limited.availableMicros == 100_000 - 2 * micros
+
+        when:
+
+            limited.submit(new byte[10], 1, DATA)
+
+        then:
+
+            transmitted == [10, 10]
+
+        when:
+
+            scheduler.runFor((long)Math.ceil((micros - limited.availableMicros) / 0.01 / 1000) - 1)
+
+        then:
+
+            transmitted == [10, 10]
+
+        when:
+
+            scheduler.runFor(1)
+
+        then:
+
+            transmitted == [10, 10, 10]
+            limited.airtimeMicros == 3 * micros
+    }
+
+    def "frames are dropped when their queue is full or they exceed the budget"() {
+
+        when:
+
+            def accepted = (0..<6).collect { limited.submit(new byte[10], 1, DATA) }
+
+        then:
+
+            accepted == [true, true, true, true, true, false]
+            limited.submit(new byte[1], 1, CONTROL)
+            !limited.submit(new byte[250], 1, CONTROL)
+            limited.droppedFrames == 2
+    }
+
+    def "a failed transmission frees the modem for the next frame"() {
+
+        when:
+
+            transmitScheduler.submit(new byte[10], 1, DATA)
+            transmitScheduler.submit(new byte[11], 1, DATA)
+            pending.remove(0).completeExceptionally(new IOException())
+
+        then:
+
+            transmitted == [10, 11]
+    }
+
+    def "frames submitted after a config change are charged the new time on air"() {
+
+        given:
+
+            def slower = TimeOnAir.fromConfig("433000000,20,6,10,1,1,0,0,0,0,3000,8,4")
+
+        when:
+
+            transmitScheduler.submit(new byte[10], 1, DATA)
+            completeNext()
+            transmitScheduler.setTimeOnAir(slower)
+            transmitScheduler.submit(new byte[10], 1, DATA)
+            completeNext()
+
+        then:
+
+            transmitScheduler.airtimeMicros == timeOnAir.getMicros(10) + slower.getMicros(10)
+    }
+}
@@ -0,0 +1,103 @@
+package sim
+
+import spock.lang.Specification
+
+class SimulationSpec extends Specification {
+
+    def "virtual scheduler runs events in time order and advances the clock"() {
+
+        given:
+
+            def clock = new VirtualClock(1000)
+            def scheduler = new VirtualScheduler(clock)
+            def executed = []
+
+            scheduler.schedule({ executed << clock.millis() } as Runnable, 200)
+            scheduler.schedule({ executed << clock.millis() } as Runnable, 100)
+            scheduler.schedule({ executed << -1 } as Runnable, 150).cancel()
+
+        when:
+
+            scheduler.runFor(500)
+
+        then:
+
+            executed == [1100, 1200]
+            clock.millis() == 1500
+            scheduler.pendingEvents == 0
+    }
+
+    def "packets are delivered across a line topology on virtual time"() {
+
+        given:
+
+            def simulation = new Simulation(Topology.line(5), 50, 0.0, 1)
+            simulation.addFlow(0, 4, 1000, 10000)
+
+        when:
+
+            def stats = simulation.run(40000)
+
+        then:
+
+            stats.packetsSent == 10
+            stats.packetsDelivered == 10
+            stats.discoveriesCompleted >= 1
+            stats.getDiscoveryLatencyPercentile(100) >= 8 * 50
+            simulation.scheduler.clock.millis() == 40000
+    }
+
+    def "small packets sharing a next hop are aggregated into fewer frames"() {
+
+        given:
+
+            def plain = new Simulation(Topology.line(5), 50, 0.0, 1)
+            def aggregated = new Simulation(Topology.line(5), 50, 0.0, 1, 100)
+            [plain, aggregated].each { simulation ->
+                4.times { simulation.addFlow(0, 4, 200, 10000) }
+            }
+
+        when:
+
+            def plainStats = plain.run(40000)
+            def aggregatedStats = aggregated.run(40000)
+
+        then:
+
+            plainStats.packetsDelivered == 200
+            aggregatedStats.packetsDelivered == 200
+            aggregatedStats.dataFrames < plainStats.dataFrames / 2
+    }
+
+    def "topologies connect the expected neighbors"() {
+
+        expect:
+
+            Topology.line(3).getNeighbors(1) as List == [0, 2]
+            Topology.grid(3, 3).getNeighbors(4) as Set == [1, 3, 5, 7] as Set
+            Topology.randomGeometric(20, 2.0, new Random(1)).averageDegree == 19
+    }
+
+    def "a failed relay is reported by a route error and the flow is repaired"() {
+
+        given:
+
+            def simulation = new Simulation(Topology.grid(3, 3), 50, 0.0, 1)
+            simulation.addFlow(0, 8, 1000, 30000)
+            simulation.run(10000)
+            def routes = simulation.getNode(0).router.routes
+            def firstHop = Medium.toIndex(routes.getNextHop(routes.find(Medium.toAddress(8))))
+            def secondHop = simulation.getNode(firstHop).router.routes.with { getNextHop(find(Medium.toAddress(8))) }
+
+        when:
+
+            simulation.failNode(Medium.toIndex(secondHop), 10000)
+            def stats = simulation.run(30000)
+
+        then:
+
+            stats.errorFrames >= 1
+            stats.packetsSent == 30
+            stats.packetsDelivered >= 28
+    }
+}
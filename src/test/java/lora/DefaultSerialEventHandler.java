@@ -4,7 +4,7 @@ import java.nio.ByteBuffer;
 
 public class DefaultSerialEventHandler implements SerialEventHandler {
 
-    private final StringBuilder commandBuilder = new StringBuilder();
+    private final LineFramer framer = new LineFramer(512, (buffer, offset, length) -> handleCommand(LineFramer.toString(buffer, offset, length)));
 
     private boolean sendMode;
 
@@ -40,18 +40,7 @@ public class DefaultSerialEventHandler implements SerialEventHandler {
     }
 
     protected void handleCommandEvent(byte[] bytes) {
-        final String[] parts = new String(bytes).split("(?<=\n)");
-        for (String part : parts) {
-            final int idx = part.indexOf('\n');
-            if (idx >= 0) {
-                commandBuilder.append(part, 0, idx);
-                handleCommand(commandBuilder.toString().toUpperCase().trim());
-                commandBuilder.setLength(0);
-                commandBuilder.append(part, idx + 1, part.length());
-            } else {
-                commandBuilder.append(part);
-            }
-        }
+        framer.accept(bytes, 0, bytes.length);
     }
 
     protected void handleSendBytes(byte[] bytes) {
@@ -79,7 +79,7 @@ public class LoraSimulator extends DefaultSerialEventHandler {
     @Override
     protected void handleCommand(String command) {
         System.out.print("Received command: " + command);
-        final String commandName = StringUtils.substringBefore(command, "=");
+        final String commandName = StringUtils.substringBefore(command, "=").toUpperCase();                                     // Only the name, parameters may be case sensitive
         final Function<String, String> handler = commands.getOrDefault(commandName, this::errCmd);
         final String reply = handler.apply(command);
         System.out.println(", Replying with: " + reply);